@@ -1,9 +1,16 @@
 package com.arash.ariani.actuator;
 
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.policy.LoggingPolicyResolver;
 import com.arash.ariani.properties.RequestLoggingProperties;
+import com.arash.ariani.sink.ExchangeFilter;
+import com.arash.ariani.sink.RecentExchangesSink;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
 import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
@@ -13,9 +20,18 @@ import java.util.Map;
 @Endpoint(id = "requestlogging")
 public class RequestLoggingEndpoint {
     private final RequestLoggingProperties properties;
+    private final ObjectProvider<LoggingPolicyResolver> policyResolver;
+    private final ObjectProvider<RequestLoggingMetrics> metrics;
+    private final ObjectProvider<RecentExchangesSink> recentExchanges;
 
-    public RequestLoggingEndpoint(RequestLoggingProperties properties) {
+    public RequestLoggingEndpoint(RequestLoggingProperties properties,
+                                  ObjectProvider<LoggingPolicyResolver> policyResolver,
+                                  ObjectProvider<RequestLoggingMetrics> metrics,
+                                  ObjectProvider<RecentExchangesSink> recentExchanges) {
         this.properties = properties;
+        this.policyResolver = policyResolver;
+        this.metrics = metrics;
+        this.recentExchanges = recentExchanges;
     }
 
     @ReadOperation
@@ -32,9 +48,41 @@ public class RequestLoggingEndpoint {
         config.put("maskingPatterns", properties.getMaskingPatterns());
         config.put("maskFields", properties.getMaskFields());
         config.put("enableAnsiColor", properties.isEnableAnsiColor());
+        config.put("format", properties.getFormat());
         return config;
     }
 
+    /**
+     * {@code stages}: what the request logging costs per exchange, broken down by stage. Unavailable without
+     * a meter registry.
+     * <p>
+     * {@code recent}: the last exchanges as they were logged, newest first, optionally filtered by status
+     * ({@code 404} or {@code 4xx}), minimum status, route (a path or Ant-style pattern), minimum duration
+     * in milliseconds and correlation id. Unavailable if no recent exchanges are kept.
+     */
+    @ReadOperation
+    public Map<String, Object> getSection(@Selector String section, @Nullable String status,
+                                          @Nullable Integer minStatus, @Nullable String route,
+                                          @Nullable Long minDuration, @Nullable String correlationId,
+                                          @Nullable Integer limit) {
+        if ("stages".equals(section)) {
+            RequestLoggingMetrics available = metrics.getIfAvailable();
+            return available != null ? available.stageBreakdown() : null;
+        }
+        if ("recent".equals(section)) {
+            RecentExchangesSink sink = recentExchanges.getIfAvailable();
+            if (sink == null) {
+                return null;
+            }
+            ExchangeFilter filter = new ExchangeFilter(status, minStatus, route, minDuration, correlationId);
+            Map<String, Object> recent = new HashMap<>();
+            recent.put("capacity", sink.getCapacity());
+            recent.put("exchanges", sink.recent(filter, limit != null ? limit : sink.getCapacity()));
+            return recent;
+        }
+        return null;
+    }
+
     @WriteOperation
     public Map<String, Object> updateConfiguration(Boolean enabled, String maskFields) {
         if (enabled != null) {
@@ -43,6 +91,7 @@ public class RequestLoggingEndpoint {
         if (maskFields != null) {
             properties.setMaskFields(maskFields);
         }
+        policyResolver.ifAvailable(LoggingPolicyResolver::invalidate);
         return getConfiguration();
     }
 } 
\ No newline at end of file
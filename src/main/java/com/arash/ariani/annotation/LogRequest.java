@@ -48,6 +48,18 @@ public @interface LogRequest {
      */
     int maxBodyLength() default 1000;
 
+    /**
+     * Share of successful exchanges to log, between 0 and 1. Failed exchanges are always logged.
+     * Negative means the global {@code request.logging.sample-rate}.
+     */
+    double sampleRate() default -1;
+
+    /**
+     * Most successful exchanges to log per second. Failed exchanges are always logged.
+     * Zero means no limit, negative the global {@code request.logging.route-rate-limit}.
+     */
+    double rateLimit() default -1;
+
     /**
      * Custom message to be included in the log
      */
@@ -1,18 +1,43 @@
 package com.arash.ariani.config;
 
+import com.arash.ariani.filter.CaptureMemory;
 import com.arash.ariani.filter.RequestLoggingFilter;
 import com.arash.ariani.interceptor.RequestLoggingInterceptor;
+import com.arash.ariani.masking.MaskingEngine;
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.policy.LoggingPolicyResolver;
 import com.arash.ariani.properties.RequestLoggingProperties;
+import com.arash.ariani.sink.CrashRingSink;
+import com.arash.ariani.sink.FileRequestLogSink;
+import com.arash.ariani.sink.LiveTailServlet;
+import com.arash.ariani.sink.LiveTailSink;
+import com.arash.ariani.sink.LogEventRenderer;
+import com.arash.ariani.sink.RecentExchangesSink;
+import com.arash.ariani.sink.RequestLogSink;
+import com.arash.ariani.sink.Slf4jRequestLogSink;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
+@AutoConfigureAfter(name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @ConditionalOnWebApplication
 @EnableConfigurationProperties(RequestLoggingProperties.class)
 @ConditionalOnProperty(prefix = "request.logging", name = "enabled", matchIfMissing = true)
@@ -26,8 +51,75 @@ public class RequestLoggingAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public RequestLoggingInterceptor requestLoggingInterceptor(RequestLoggingProperties properties) {
-        return new RequestLoggingInterceptor(properties);
+    public LoggingPolicyResolver loggingPolicyResolver(RequestLoggingProperties properties,
+                                                       ObjectProvider<RequestLoggingMetrics> metrics) {
+        return new LoggingPolicyResolver(properties, new MaskingEngine(properties, metrics.getIfAvailable()));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RequestLoggingInterceptor requestLoggingInterceptor(RequestLoggingProperties properties,
+                                                               LoggingPolicyResolver policyResolver,
+                                                               ObjectProvider<RequestLoggingMetrics> metrics,
+                                                               ObjectProvider<RequestLogSink> sinks) {
+        List<RequestLogSink> configured = new ArrayList<>(sinks.orderedStream().toList());
+        if (configured.stream().allMatch(RequestLoggingAutoConfiguration::isCopy)) {
+            configured.add(0, new Slf4jRequestLogSink(properties));
+        }
+        return new RequestLoggingInterceptor(properties, policyResolver, metrics.getIfAvailable(), configured);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "request.logging", name = "file-path")
+    public FileRequestLogSink fileRequestLogSink(RequestLoggingProperties properties) throws IOException {
+        FileRequestLogSink.Options options = new FileRequestLogSink.Options()
+                .bufferSize(properties.getFileBufferSize())
+                .flushRecords(properties.getFileFlushRecords())
+                .flushInterval(properties.getFileFlushInterval())
+                .fsync(properties.getFileFsync())
+                .maxSegmentSize(properties.getFileMaxSegmentSize())
+                .maxSegments(properties.getFileMaxSegments());
+        return new FileRequestLogSink(Path.of(properties.getFilePath()), new LogEventRenderer(properties), options);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "request.logging", name = "crash-ring-path")
+    public CrashRingSink crashRingSink(RequestLoggingProperties properties) throws IOException {
+        return new CrashRingSink(Path.of(properties.getCrashRingPath()), properties.getCrashRingSlots(),
+                properties.getCrashRingSlotSize());
+    }
+
+    @Bean
+    @ConditionalOnExpression("${request.logging.recent-exchanges:0} > 0")
+    public RecentExchangesSink recentExchangesSink(RequestLoggingProperties properties) {
+        return new RecentExchangesSink(properties.getRecentExchanges(), properties.getRecentExchangesMaxFieldLength());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "request.logging", name = "live-tail", havingValue = "true")
+    public LiveTailSink liveTailSink(RequestLoggingProperties properties,
+                                     ObjectProvider<RequestLoggingMetrics> metrics) {
+        return new LiveTailSink(properties.getLiveTailMaxSubscribers(), properties.getLiveTailQueueSize(),
+                properties.getLiveTailMaxFieldLength(), properties.getLiveTailExcludeHeaders(), metrics.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "request.logging", name = "live-tail", havingValue = "true")
+    public ServletRegistrationBean<LiveTailServlet> liveTailServletRegistration(RequestLoggingProperties properties,
+                                                                                LiveTailSink liveTailSink) {
+        ServletRegistrationBean<LiveTailServlet> registration =
+                new ServletRegistrationBean<>(new LiveTailServlet(liveTailSink), properties.getLiveTailPath());
+        registration.setName("requestLoggingLiveTail");
+        registration.setAsyncSupported(true);
+        return registration;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CaptureMemory captureMemory(RequestLoggingProperties properties,
+                                       ObjectProvider<RequestLoggingMetrics> metrics) {
+        return new CaptureMemory(properties.getCaptureChunkSize(), properties.isCaptureDirectBuffers(),
+                properties.getCaptureMemoryBudget(), metrics.getIfAvailable());
     }
 
     @Bean
@@ -42,4 +134,26 @@ public class RequestLoggingAutoConfiguration {
     public RequestLoggingConfiguration requestLoggingConfiguration() {
         return new RequestLoggingConfiguration();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Whether the sink keeps or streams a copy of the log rather than being where the log goes.
+     */
+    private static boolean isCopy(RequestLogSink sink) {
+        return sink instanceof CrashRingSink || sink instanceof RecentExchangesSink || sink instanceof LiveTailSink;
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnBean(MeterRegistry.class)
+        public RequestLoggingMetrics requestLoggingMetrics(MeterRegistry meterRegistry,
+                                                           RequestLoggingProperties properties) {
+            RequestLoggingMetrics metrics = new RequestLoggingMetrics(meterRegistry);
+            metrics.setStageSampleRate(properties.getMetricsStageSampleRate());
+            return metrics;
+        }
+    }
+}
@@ -33,9 +33,6 @@ public class RequestLoggingConfiguration implements WebMvcConfigurer {
     @Autowired
     public void setProperties(RequestLoggingProperties properties) {
         this.properties = properties;
-        if (this.interceptor == null) {
-            this.interceptor = new RequestLoggingInterceptor(properties);
-        }
         if (this.sourceClass != null) {
             configureFromAnnotation();
         }
@@ -0,0 +1,103 @@
+package com.arash.ariani.event;
+
+import com.arash.ariani.util.LoggingUtils;
+import java.io.IOException;
+
+/**
+ * Stands in for a run of identical exchanges that were collapsed into one record. The common slots
+ * describe the first exchange of the run, the counts and durations only the duplicates after it.
+ */
+public class AggregateLogEvent extends LogEvent {
+    private String method;
+    private String uri;
+    private int status;
+    private long count;
+    private long minDuration;
+    private long maxDuration;
+    private long avgDuration;
+
+    @Override
+    public void appendField(LogField field, Appendable out) throws IOException {
+        switch (field) {
+            case METHOD -> appendNullable(out, method);
+            case URI -> appendNullable(out, uri);
+            case STATUS -> LoggingUtils.appendLong(out, status);
+            case COUNT -> LoggingUtils.appendLong(out, count);
+            case MIN_DURATION -> LoggingUtils.appendLong(out, minDuration);
+            case MAX_DURATION -> LoggingUtils.appendLong(out, maxDuration);
+            case AVG_DURATION -> LoggingUtils.appendLong(out, avgDuration);
+            default -> super.appendField(field, out);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        method = null;
+        uri = null;
+        status = 0;
+        count = 0;
+        minDuration = 0;
+        maxDuration = 0;
+        avgDuration = 0;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Number of duplicates collapsed into this record, not counting the first exchange.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getMinDuration() {
+        return minDuration;
+    }
+
+    public void setMinDuration(long minDuration) {
+        this.minDuration = minDuration;
+    }
+
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+
+    public void setMaxDuration(long maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    public long getAvgDuration() {
+        return avgDuration;
+    }
+
+    public void setAvgDuration(long avgDuration) {
+        this.avgDuration = avgDuration;
+    }
+}
@@ -0,0 +1,41 @@
+package com.arash.ariani.event;
+
+import java.io.IOException;
+
+/**
+ * A complete HTTP exchange rendered as a single record. The common slots (timestamp, level,
+ * thread, ...) describe the record itself; request and response specific values are read from
+ * the nested events.
+ */
+public class ExchangeLogEvent extends LogEvent {
+    private final RequestLogEvent request = new RequestLogEvent();
+    private final ResponseLogEvent response = new ResponseLogEvent();
+
+    @Override
+    public void appendField(LogField field, Appendable out) throws IOException {
+        switch (field) {
+            case METHOD, URI, PARAMETERS -> request.appendField(field, out);
+            case STATUS, DURATION, STACK_SAMPLES -> response.appendField(field, out);
+            case REQUEST_HEADERS -> request.appendField(LogField.HEADERS, out);
+            case REQUEST_BODY -> request.appendField(LogField.BODY, out);
+            case RESPONSE_HEADERS -> response.appendField(LogField.HEADERS, out);
+            case RESPONSE_BODY -> response.appendField(LogField.BODY, out);
+            default -> super.appendField(field, out);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        request.reset();
+        response.reset();
+    }
+
+    public RequestLogEvent getRequest() {
+        return request;
+    }
+
+    public ResponseLogEvent getResponse() {
+        return response;
+    }
+}
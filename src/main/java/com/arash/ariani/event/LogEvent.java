@@ -0,0 +1,179 @@
+package com.arash.ariani.event;
+
+import com.arash.ariani.template.LoggingTemplate;
+import com.arash.ariani.util.LoggingUtils;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Mutable carrier for the values rendered into a single log line. Instances are meant to be
+ * reused: populate the slots, render, then {@link #reset()}.
+ */
+public abstract class LogEvent {
+    private LoggingTemplate template;
+    private long timestamp;
+    private String level;
+    private boolean ansiColor;
+    private String pid;
+    private String thread;
+    private String logger;
+    private String correlationId;
+    private String headers;
+    private Map<String, String> headerMap;
+    private String body;
+
+    /**
+     * Appends the value of the given field, or nothing if this event has no such slot or it is unset.
+     */
+    public void appendField(LogField field, Appendable out) throws IOException {
+        switch (field) {
+            case TIMESTAMP -> {
+                if (timestamp > 0) {
+                    LoggingUtils.appendTimestamp(out, timestamp);
+                }
+            }
+            case LEVEL -> {
+                if (level != null) {
+                    LoggingUtils.appendColorized(out, level, ansiColor);
+                }
+            }
+            case PID -> appendNullable(out, pid);
+            case THREAD -> appendNullable(out, thread);
+            case LOGGER -> appendNullable(out, logger);
+            case CORRELATION_ID -> appendNullable(out, correlationId);
+            case HEADERS -> appendNullable(out, headers);
+            case BODY -> appendNullable(out, body);
+            default -> {
+                // not a slot of this event type
+            }
+        }
+    }
+
+    protected static void appendNullable(Appendable out, String value) throws IOException {
+        if (value != null) {
+            out.append(value);
+        }
+    }
+
+    /**
+     * Renders the event with its template, so that it can be passed to a logger as a plain argument.
+     */
+    @Override
+    public String toString() {
+        return template != null ? template.format(this) : super.toString();
+    }
+
+    public void reset() {
+        template = null;
+        timestamp = 0L;
+        level = null;
+        ansiColor = false;
+        pid = null;
+        thread = null;
+        logger = null;
+        correlationId = null;
+        headers = null;
+        headerMap = null;
+        body = null;
+    }
+
+    /**
+     * Template used by {@link #toString()} and by encoders that render the event themselves.
+     */
+    public LoggingTemplate getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(LoggingTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Epoch milliseconds at which the event was created.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public void setLevel(String level) {
+        this.level = level;
+    }
+
+    public boolean isAnsiColor() {
+        return ansiColor;
+    }
+
+    public void setAnsiColor(boolean ansiColor) {
+        this.ansiColor = ansiColor;
+    }
+
+    public String getPid() {
+        return pid;
+    }
+
+    public void setPid(String pid) {
+        this.pid = pid;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public void setThread(String thread) {
+        this.thread = thread;
+    }
+
+    public String getLogger() {
+        return logger;
+    }
+
+    public void setLogger(String logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Id shared by all records of one HTTP exchange.
+     */
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public String getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(String headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * The captured headers by name, for structured output, or {@code null} if they were not captured.
+     */
+    public Map<String, String> getHeaderMap() {
+        return headerMap;
+    }
+
+    public void setHeaderMap(Map<String, String> headerMap) {
+        this.headerMap = headerMap;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+}
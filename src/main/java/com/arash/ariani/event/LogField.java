@@ -0,0 +1,57 @@
+package com.arash.ariani.event;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fixed slots of a {@link LogEvent}, addressable from a template by their placeholder name.
+ */
+public enum LogField {
+    TIMESTAMP("timestamp"),
+    LEVEL("level"),
+    PID("pid"),
+    THREAD("thread"),
+    LOGGER("logger"),
+    CORRELATION_ID("correlationId"),
+    METHOD("method"),
+    URI("uri"),
+    HEADERS("headers"),
+    PARAMETERS("parameters"),
+    STATUS("status"),
+    DURATION("duration"),
+    BODY("body"),
+    REQUEST_HEADERS("requestHeaders"),
+    REQUEST_BODY("requestBody"),
+    RESPONSE_HEADERS("responseHeaders"),
+    RESPONSE_BODY("responseBody"),
+    COUNT("count"),
+    MIN_DURATION("minDuration"),
+    MAX_DURATION("maxDuration"),
+    AVG_DURATION("avgDuration"),
+    STACK_SAMPLES("stackSamples");
+
+    private static final Map<String, LogField> BY_PLACEHOLDER = new HashMap<>();
+
+    static {
+        for (LogField field : values()) {
+            BY_PLACEHOLDER.put(field.placeholder, field);
+        }
+    }
+
+    private final String placeholder;
+
+    LogField(String placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * @return the field for the given placeholder name, or {@code null} if there is none
+     */
+    public static LogField forPlaceholder(String placeholder) {
+        return BY_PLACEHOLDER.get(placeholder);
+    }
+}
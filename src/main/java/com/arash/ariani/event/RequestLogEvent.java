@@ -0,0 +1,65 @@
+package com.arash.ariani.event;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class RequestLogEvent extends LogEvent {
+    private String method;
+    private String uri;
+    private String parameters;
+    private Map<String, String[]> parameterMap;
+
+    @Override
+    public void appendField(LogField field, Appendable out) throws IOException {
+        switch (field) {
+            case METHOD -> appendNullable(out, method);
+            case URI -> appendNullable(out, uri);
+            case PARAMETERS -> appendNullable(out, parameters);
+            default -> super.appendField(field, out);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        method = null;
+        uri = null;
+        parameters = null;
+        parameterMap = null;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * The masked parameters by name, for structured output, or {@code null} if they were not captured.
+     */
+    public Map<String, String[]> getParameterMap() {
+        return parameterMap;
+    }
+
+    public void setParameterMap(Map<String, String[]> parameterMap) {
+        this.parameterMap = parameterMap;
+    }
+}
@@ -0,0 +1,108 @@
+package com.arash.ariani.event;
+
+import com.arash.ariani.util.LoggingUtils;
+import java.io.IOException;
+import java.util.List;
+
+public class ResponseLogEvent extends LogEvent {
+    /**
+     * Marks an unset duration, e.g. when timing is disabled.
+     */
+    public static final long NO_DURATION = -1L;
+
+    private int status;
+    private String error;
+    private long duration = NO_DURATION;
+    private List<StackSample> stackSamples = List.of();
+
+    @Override
+    public void appendField(LogField field, Appendable out) throws IOException {
+        switch (field) {
+            case STATUS -> {
+                LoggingUtils.appendLong(out, status);
+                if (error != null) {
+                    out.append(" (Error: ").append(error).append(')');
+                }
+            }
+            case DURATION -> {
+                if (duration != NO_DURATION) {
+                    LoggingUtils.appendLong(out, duration);
+                }
+            }
+            case STACK_SAMPLES -> appendStackSamples(out);
+            default -> super.appendField(field, out);
+        }
+    }
+
+    /**
+     * Appends one block per sample, each line ending with a line break, or nothing if there are no samples.
+     */
+    private void appendStackSamples(Appendable out) throws IOException {
+        for (int i = 0; i < stackSamples.size(); i++) {
+            StackSample sample = stackSamples.get(i);
+            out.append("Stack sample ");
+            LoggingUtils.appendLong(out, i + 1);
+            out.append('/');
+            LoggingUtils.appendLong(out, stackSamples.size());
+            out.append(" after ");
+            LoggingUtils.appendLong(out, sample.elapsedMillis());
+            out.append("ms:\n");
+            for (StackTraceElement frame : sample.frames()) {
+                out.append("\tat ").append(frame.toString()).append('\n');
+            }
+            if (sample.truncated()) {
+                out.append("\t...\n");
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        status = 0;
+        error = null;
+        duration = NO_DURATION;
+        stackSamples = List.of();
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Message of the exception that ended the exchange, if any.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Duration of the exchange in milliseconds, or {@link #NO_DURATION}.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Stacks of the serving thread taken while the exchange was slow, oldest first; empty if none were taken.
+     */
+    public List<StackSample> getStackSamples() {
+        return stackSamples;
+    }
+
+    public void setStackSamples(List<StackSample> stackSamples) {
+        this.stackSamples = stackSamples;
+    }
+}
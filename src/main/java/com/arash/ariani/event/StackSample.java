@@ -0,0 +1,11 @@
+package com.arash.ariani.event;
+
+/**
+ * Stack of the thread serving a slow exchange, taken while the exchange was still running.
+ *
+ * @param elapsedMillis time since the exchange started when the stack was taken
+ * @param frames        innermost frame first, possibly cut to the configured depth
+ * @param truncated     whether frames were cut
+ */
+public record StackSample(long elapsedMillis, StackTraceElement[] frames, boolean truncated) {
+}
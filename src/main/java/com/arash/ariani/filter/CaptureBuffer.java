@@ -0,0 +1,162 @@
+package com.arash.ariani.filter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Keeps the first {@code limit} bytes written to it and counts the rest. The bytes are kept in
+ * chunks taken from a {@link CaptureMemory} as they are needed and handed back by {@link #release()}.
+ * If no chunk is available within the memory budget the capture is marked degraded: writes are still
+ * counted, but the exchange should be logged without its body.
+ */
+public final class CaptureBuffer {
+    private final int limit;
+    private final CaptureMemory memory;
+    private ByteBuffer[] chunks = new ByteBuffer[2];
+    private int chunkCount;
+    private int size;
+    private long totalSize;
+    private boolean degraded;
+    private boolean released;
+
+    public CaptureBuffer(int limit) {
+        this(limit, CaptureMemory.UNBOUNDED);
+    }
+
+    public CaptureBuffer(int limit, CaptureMemory memory) {
+        this.limit = Math.max(0, limit);
+        this.memory = memory;
+    }
+
+    public void write(int b) {
+        totalSize++;
+        if (size < limit) {
+            ByteBuffer chunk = writableChunk();
+            if (chunk != null) {
+                chunk.put((byte) b);
+                size++;
+            }
+        }
+    }
+
+    public void write(byte[] b, int off, int len) {
+        totalSize += len;
+        int remaining = Math.min(len, limit - size);
+        while (remaining > 0) {
+            ByteBuffer chunk = writableChunk();
+            if (chunk == null) {
+                return;
+            }
+            int count = Math.min(remaining, chunk.remaining());
+            chunk.put(b, off, count);
+            off += count;
+            remaining -= count;
+            size += count;
+        }
+    }
+
+    private ByteBuffer writableChunk() {
+        if (chunkCount > 0 && chunks[chunkCount - 1].hasRemaining()) {
+            return chunks[chunkCount - 1];
+        }
+        if (degraded || released) {
+            return null;
+        }
+        ByteBuffer chunk = memory.acquireChunk();
+        if (chunk == null) {
+            degraded = true;
+            memory.recordDegraded();
+            return null;
+        }
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = chunk;
+        return chunk;
+    }
+
+    /**
+     * Discards everything captured so far, e.g. when the response buffer is reset.
+     */
+    public void reset() {
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i].clear();
+        }
+        size = 0;
+        totalSize = 0;
+    }
+
+    /**
+     * Hands the chunks back to the pool; anything written afterwards is only counted.
+     */
+    public void release() {
+        for (int i = 0; i < chunkCount; i++) {
+            memory.releaseChunk(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        size = 0;
+        released = true;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Number of captured bytes, at most the limit.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of bytes that passed through, including those beyond the limit.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public boolean isTruncated() {
+        return totalSize > size;
+    }
+
+    /**
+     * Whether capturing stopped early because the memory budget was exhausted.
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * The captured bytes in one array, which may be longer than {@link #size()}. A body that fits into
+     * a single heap chunk is returned without copying.
+     */
+    public byte[] array() {
+        if (chunkCount == 1 && chunks[0].hasArray() && chunks[0].arrayOffset() == 0) {
+            return chunks[0].array();
+        }
+        return toByteArray();
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[size];
+        copyTo(bytes);
+        return bytes;
+    }
+
+    /**
+     * Copies the captured bytes to the start of {@code target}, which must hold at least {@link #size()} bytes.
+     *
+     * @return the number of bytes copied
+     */
+    public int copyTo(byte[] target) {
+        int position = 0;
+        for (int i = 0; i < chunkCount && position < size; i++) {
+            int count = Math.min(chunks[i].position(), size - position);
+            chunks[i].get(0, target, position, count);
+            position += count;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,100 @@
+package com.arash.ariani.filter;
+
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.util.ObjectPool;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size chunks that captured bodies are assembled from, and the node-wide budget they are
+ * drawn against. A chunk counts against the budget from the moment a capture takes it until the
+ * exchange is over; when the budget is exhausted captures stop taking chunks and the exchange is
+ * logged without bodies instead of adding to heap pressure.
+ */
+public class CaptureMemory {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024;
+    public static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+
+    /**
+     * Heap chunks without a budget, for wrappers created outside of the filter.
+     */
+    static final CaptureMemory UNBOUNDED = new CaptureMemory(DEFAULT_CHUNK_SIZE, false, Long.MAX_VALUE, null);
+
+    private static final int MAX_POOLED_CHUNKS = 256;
+
+    private final int chunkSize;
+    private final boolean direct;
+    private final long budget;
+    private final RequestLoggingMetrics metrics;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final ObjectPool<ByteBuffer> chunks;
+
+    /**
+     * @param direct whether chunks are allocated outside of the heap
+     * @param budget the most bytes all in-flight captures may hold together
+     * @param metrics metrics to count degraded captures on, or {@code null} if metrics are unavailable
+     */
+    public CaptureMemory(int chunkSize, boolean direct, long budget, RequestLoggingMetrics metrics) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Capture chunk size must be positive, got " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.direct = direct;
+        this.budget = budget;
+        this.metrics = metrics;
+        int pooled = (int) Math.max(1, Math.min(MAX_POOLED_CHUNKS, budget / chunkSize));
+        this.chunks = new ObjectPool<>(pooled, this::allocate);
+        if (metrics != null) {
+            metrics.registerCaptureMemory(reservedBytes::get);
+        }
+    }
+
+    private ByteBuffer allocate() {
+        return direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+    }
+
+    /**
+     * @return an empty chunk, or {@code null} if taking one would exceed the budget
+     */
+    ByteBuffer acquireChunk() {
+        long current;
+        do {
+            current = reservedBytes.get();
+            if (current + chunkSize > budget) {
+                return null;
+            }
+        } while (!reservedBytes.compareAndSet(current, current + chunkSize));
+        return chunks.acquire();
+    }
+
+    void releaseChunk(ByteBuffer chunk) {
+        chunk.clear();
+        chunks.release(chunk);
+        reservedBytes.addAndGet(-chunkSize);
+    }
+
+    void recordDegraded() {
+        if (metrics != null) {
+            metrics.incrementCaptureDegraded();
+        }
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Bytes currently held by in-flight captures.
+     */
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+}
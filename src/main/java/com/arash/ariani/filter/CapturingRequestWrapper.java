@@ -0,0 +1,151 @@
+package com.arash.ariani.filter;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.util.WebUtils;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Request wrapper that copies the first bytes read from the body into a {@link CaptureBuffer}.
+ * Unlike {@link org.springframework.web.util.ContentCachingRequestWrapper} it never holds more than
+ * the capture limit, however large the body is.
+ */
+public class CapturingRequestWrapper extends HttpServletRequestWrapper {
+    private final CaptureBuffer capture;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+    private boolean parametersCaptured;
+
+    public CapturingRequestWrapper(HttpServletRequest request, int limit) {
+        this(request, limit, CaptureMemory.UNBOUNDED);
+    }
+
+    public CapturingRequestWrapper(HttpServletRequest request, int limit, CaptureMemory memory) {
+        super(request);
+        this.capture = new CaptureBuffer(limit, memory);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream = new CapturingInputStream(super.getInputStream());
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            String encoding = getCharacterEncoding();
+            reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? encoding : WebUtils.DEFAULT_CHARACTER_ENCODING));
+        }
+        return reader;
+    }
+
+    /**
+     * The captured body. Form posts consumed through {@code getParameter} never pass through the
+     * input stream, so their parameters are captured in encoded form instead.
+     */
+    public CaptureBuffer getCapture() {
+        if (capture.getTotalSize() == 0 && !parametersCaptured && isFormPost()) {
+            parametersCaptured = true;
+            captureParameters();
+        }
+        return capture;
+    }
+
+    /**
+     * Hands the captured chunks back once the exchange has been logged.
+     */
+    public void release() {
+        capture.release();
+    }
+
+    private boolean isFormPost() {
+        String contentType = getContentType();
+        return contentType != null && contentType.contains(MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+                && HttpMethod.POST.matches(getMethod());
+    }
+
+    private void captureParameters() {
+        String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+        StringBuilder form = new StringBuilder();
+        try {
+            for (Map.Entry<String, String[]> entry : getParameterMap().entrySet()) {
+                for (String value : entry.getValue()) {
+                    if (!form.isEmpty()) {
+                        form.append('&');
+                    }
+                    form.append(URLEncoder.encode(entry.getKey(), encoding));
+                    if (value != null) {
+                        form.append('=').append(URLEncoder.encode(value, encoding));
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to capture form parameters", ex);
+        }
+        byte[] bytes = form.toString().getBytes(StandardCharsets.ISO_8859_1);
+        capture.write(bytes, 0, bytes.length);
+    }
+
+    private class CapturingInputStream extends ServletInputStream {
+        private final ServletInputStream delegate;
+
+        CapturingInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) {
+                capture.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = delegate.read(b, off, len);
+            if (count > 0) {
+                capture.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public int readLine(byte[] b, int off, int len) throws IOException {
+            int count = delegate.readLine(b, off, len);
+            if (count > 0) {
+                capture.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+}
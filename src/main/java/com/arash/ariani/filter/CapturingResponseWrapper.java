@@ -0,0 +1,137 @@
+package com.arash.ariani.filter;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Response wrapper that writes straight through to the client while copying the first bytes into
+ * a {@link CaptureBuffer}. Unlike {@link org.springframework.web.util.ContentCachingResponseWrapper}
+ * nothing is held back, so the response streams as it is written and needs no copying at the end.
+ */
+public class CapturingResponseWrapper extends HttpServletResponseWrapper {
+    private final CaptureBuffer capture;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public CapturingResponseWrapper(HttpServletResponse response, int limit) {
+        this(response, limit, CaptureMemory.UNBOUNDED);
+    }
+
+    public CapturingResponseWrapper(HttpServletResponse response, int limit, CaptureMemory memory) {
+        super(response);
+        this.capture = new CaptureBuffer(limit, memory);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called on this response");
+        }
+        return outputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called on this response");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(outputStream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    private ServletOutputStream outputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        flushWriter();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        capture.reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        capture.reset();
+    }
+
+    /**
+     * The captured body, including anything still pending in the writer.
+     */
+    public CaptureBuffer getCapture() {
+        flushWriter();
+        return capture;
+    }
+
+    /**
+     * Hands the captured chunks back once the exchange has been logged.
+     */
+    public void release() {
+        capture.release();
+    }
+
+    /**
+     * Pushes characters the writer still holds to the client; the container only flushes its own writer.
+     */
+    void flushWriter() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private class CapturingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+
+        CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            capture.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            capture.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
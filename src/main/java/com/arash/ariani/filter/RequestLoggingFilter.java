@@ -1,32 +1,133 @@
 package com.arash.ariani.filter;
 
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.metrics.Stage;
+import com.arash.ariani.policy.BodyCapture;
+import com.arash.ariani.policy.LoggingPolicyResolver;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 import java.io.IOException;
 
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
 public class RequestLoggingFilter extends OncePerRequestFilter {
 
+    /**
+     * Bytes captured per body when no resolver is available to derive the limit from the policies.
+     */
+    static final int DEFAULT_CAPTURE_LIMIT = 64 * 1024;
+
+    private LoggingPolicyResolver policyResolver;
+    private CaptureMemory captureMemory = new CaptureMemory(
+            CaptureMemory.DEFAULT_CHUNK_SIZE, false, CaptureMemory.DEFAULT_BUDGET, null);
+    private RequestLoggingMetrics metrics;
+
+    /**
+     * Without a resolver every request and response body is captured.
+     */
+    @Autowired(required = false)
+    public void setPolicyResolver(LoggingPolicyResolver policyResolver) {
+        this.policyResolver = policyResolver;
+    }
+
+    @Autowired(required = false)
+    public void setCaptureMemory(CaptureMemory captureMemory) {
+        this.captureMemory = captureMemory;
+    }
+
+    /**
+     * Without metrics the capture stage is not timed.
+     */
+    @Autowired(required = false)
+    public void setMetrics(RequestLoggingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        
-        ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
-        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
 
+        BodyCapture capture = policyResolver != null ? policyResolver.bodyCaptureFor(request) : BodyCapture.BOTH;
+        if (capture == BodyCapture.NONE) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean timed = metrics != null && metrics.sampleStages();
+        long start = timed ? System.nanoTime() : 0;
+        int limit = policyResolver != null ? policyResolver.getCaptureLimit() : DEFAULT_CAPTURE_LIMIT;
+        CapturingRequestWrapper requestWrapper = capture.capturesRequest()
+                ? new CapturingRequestWrapper(request, limit, captureMemory) : null;
+        CapturingResponseWrapper responseWrapper = capture.capturesResponse()
+                ? new CapturingResponseWrapper(response, limit, captureMemory) : null;
+        HttpServletRequest requestToUse = requestWrapper != null ? requestWrapper : request;
+        // Only the filter's own work counts, not the time spent down the chain
+        long overhead = timed ? System.nanoTime() - start : 0;
         try {
-            filterChain.doFilter(requestWrapper, responseWrapper);
+            filterChain.doFilter(requestToUse, responseWrapper != null ? responseWrapper : response);
         } finally {
-            responseWrapper.copyBodyToResponse();
+            start = timed ? System.nanoTime() : 0;
+            if (requestToUse.isAsyncStarted()) {
+                // The exchange is logged when the async processing completes, so keep the chunks until then
+                requestToUse.getAsyncContext().addListener(new ReleaseListener(requestWrapper, responseWrapper));
+            } else {
+                if (responseWrapper != null) {
+                    responseWrapper.flushWriter();
+                }
+                release(requestWrapper, responseWrapper);
+            }
+            if (timed) {
+                metrics.recordStage(Stage.CAPTURE, overhead + System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static void release(CapturingRequestWrapper requestWrapper, CapturingResponseWrapper responseWrapper) {
+        if (requestWrapper != null) {
+            requestWrapper.release();
+        }
+        if (responseWrapper != null) {
+            responseWrapper.release();
+        }
+    }
+
+    private static class ReleaseListener implements AsyncListener {
+        private final CapturingRequestWrapper requestWrapper;
+        private final CapturingResponseWrapper responseWrapper;
+
+        ReleaseListener(CapturingRequestWrapper requestWrapper, CapturingResponseWrapper responseWrapper) {
+            this.requestWrapper = requestWrapper;
+            this.responseWrapper = responseWrapper;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (responseWrapper != null) {
+                responseWrapper.flushWriter();
+            }
+            release(requestWrapper, responseWrapper);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
         }
     }
 } 
\ No newline at end of file
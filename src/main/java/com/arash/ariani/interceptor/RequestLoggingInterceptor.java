@@ -1,36 +1,163 @@
 package com.arash.ariani.interceptor;
 
-import com.arash.ariani.annotation.LogRequest;
+import com.arash.ariani.event.AggregateLogEvent;
+import com.arash.ariani.event.ExchangeLogEvent;
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+import com.arash.ariani.event.StackSample;
+import com.arash.ariani.filter.CapturingRequestWrapper;
+import com.arash.ariani.filter.CapturingResponseWrapper;
+import com.arash.ariani.masking.MaskingEngine;
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.metrics.RouteMetrics;
+import com.arash.ariani.metrics.Stage;
+import com.arash.ariani.pipeline.AsyncLogPipeline;
+import com.arash.ariani.pipeline.DuplicateAggregator;
+import com.arash.ariani.pipeline.ExchangeSnapshot;
+import com.arash.ariani.pipeline.SlowRequestWatchdog;
+import com.arash.ariani.policy.Admission;
+import com.arash.ariani.policy.LoggingPolicy;
+import com.arash.ariani.policy.LoggingPolicyResolver;
+import com.arash.ariani.policy.TailSampler;
 import com.arash.ariani.properties.RequestLoggingProperties;
+import com.arash.ariani.properties.RequestLoggingProperties.TailDetail;
+import com.arash.ariani.sink.RequestLogSink;
+import com.arash.ariani.sink.Slf4jRequestLogSink;
 import com.arash.ariani.template.LoggingTemplate;
 import com.arash.ariani.util.LoggingUtils;
+import com.arash.ariani.util.ObjectPool;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.web.method.HandlerMethod;
-import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
-import java.nio.charset.StandardCharsets;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.util.WebUtils;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.time.Instant;
-import java.util.Arrays;
 
-public class RequestLoggingInterceptor implements HandlerInterceptor {
+/**
+ * Logs the exchanges of handler methods that have logging enabled.
+ *
+ * <p>The background threads of the async pipeline, the duplicate aggregator and the slow request
+ * watchdog are started by {@link #start()}, not by the constructor, so an interceptor that the
+ * application context never starts owns no threads. Until it is started, and after it is stopped,
+ * exchanges are logged on the servlet thread. It starts before the web server and stops after it, so
+ * the exchanges drained during graceful shutdown still go through the pipeline.
+ */
+public class RequestLoggingInterceptor implements AsyncHandlerInterceptor, SmartLifecycle, DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(RequestLoggingInterceptor.class);
     private final RequestLoggingProperties properties;
     private static final String START_TIME = "requestStartTime";
+    private static final String CORRELATION_ID = "correlationId";
+    private static final String START_NANOS = RequestLoggingInterceptor.class.getName() + ".startNanos";
+    private static final String IN_FLIGHT = RequestLoggingInterceptor.class.getName() + ".inFlight";
+    private static final String LOGGER_NAME = RequestLoggingInterceptor.class.getName();
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    private static final int EVENT_POOL_SIZE = 4 * Runtime.getRuntime().availableProcessors();
+    private static final ObjectPool<RequestLogEvent> REQUEST_EVENTS = new ObjectPool<>(EVENT_POOL_SIZE, RequestLogEvent::new);
+    private static final ObjectPool<ResponseLogEvent> RESPONSE_EVENTS = new ObjectPool<>(EVENT_POOL_SIZE, ResponseLogEvent::new);
+    private static final ObjectPool<ExchangeLogEvent> EXCHANGE_EVENTS = new ObjectPool<>(EVENT_POOL_SIZE, ExchangeLogEvent::new);
+    private static final ObjectPool<ExchangeSnapshot> SNAPSHOTS = new ObjectPool<>(EVENT_POOL_SIZE, ExchangeSnapshot::new);
     private final LoggingTemplate[] templates;
+    private final LoggingTemplate exchangeTemplate;
+    private final LoggingTemplate summaryTemplate;
+    private final LoggingTemplate aggregateTemplate;
+    private final LoggingPolicyResolver policyResolver;
+    private final List<RequestLogSink> sinks;
+    private final RequestLoggingMetrics metrics;
+    private final TailSampler tailSampler;
+
+    /**
+     * Latency and response meters per route, or {@code null} without metrics.
+     */
+    private final RouteMetrics routeMetrics;
+
+    /**
+     * Background pipeline the exchanges are handed to, or {@code null} if they are logged on the servlet thread.
+     */
+    private final AsyncLogPipeline pipeline;
+
+    /**
+     * Collapses repeated identical exchanges, or {@code null} if every exchange is logged.
+     */
+    private final DuplicateAggregator aggregator;
+
+    /**
+     * Samples the stacks of slow exchanges, or {@code null} if they are not watched.
+     */
+    private final SlowRequestWatchdog watchdog;
+
+    private volatile boolean running;
 
     public RequestLoggingInterceptor(RequestLoggingProperties properties) {
+        this(properties, (RequestLoggingMetrics) null);
+    }
+
+    /**
+     * @param metrics metrics to report masking to, or {@code null} if metrics are unavailable
+     */
+    public RequestLoggingInterceptor(RequestLoggingProperties properties, RequestLoggingMetrics metrics) {
+        this(properties, new LoggingPolicyResolver(properties, new MaskingEngine(properties, metrics)), metrics);
+    }
+
+    public RequestLoggingInterceptor(RequestLoggingProperties properties, LoggingPolicyResolver policyResolver) {
+        this(properties, policyResolver, null);
+    }
+
+    /**
+     * @param metrics metrics to report pipeline drops and rejected exchanges to, or {@code null} if metrics
+     *                are unavailable
+     */
+    public RequestLoggingInterceptor(RequestLoggingProperties properties, LoggingPolicyResolver policyResolver,
+                                     RequestLoggingMetrics metrics) {
+        this(properties, policyResolver, metrics, Collections.emptyList());
+    }
+
+    /**
+     * @param sinks where the events go; SLF4J if empty
+     */
+    public RequestLoggingInterceptor(RequestLoggingProperties properties, LoggingPolicyResolver policyResolver,
+                                     RequestLoggingMetrics metrics, List<RequestLogSink> sinks) {
         this.properties = properties;
-        this.templates = new LoggingTemplate.Builder().build();
+        this.policyResolver = policyResolver;
+        LoggingTemplate.Builder templateBuilder = new LoggingTemplate.Builder();
+        this.templates = templateBuilder.build();
+        this.exchangeTemplate = templateBuilder.buildExchange();
+        this.summaryTemplate = templateBuilder.buildSummary();
+        this.aggregateTemplate = templateBuilder.buildAggregate();
+        this.sinks = sinks.isEmpty() ? List.of(new Slf4jRequestLogSink(properties)) : List.copyOf(sinks);
+        this.metrics = metrics;
+        this.tailSampler = new TailSampler(properties);
+        this.routeMetrics = metrics != null
+                ? metrics.routeMetrics(properties.getMetricsMaxRoutes(), properties.getMetricsSloBuckets())
+                : null;
+        this.aggregator = properties.isAggregateDuplicates()
+                ? new DuplicateAggregator(properties.getAggregationWindow(), properties.getAggregationMaxEntries(),
+                        this::logDuplicates, metrics)
+                : null;
+        this.watchdog = properties.isSlowRequestWatchdog()
+                ? new SlowRequestWatchdog(properties.getSlowRequestThreshold(), properties.getSlowRequestSampleInterval(),
+                        properties.getSlowRequestSamples(), properties.getSlowRequestMaxDepth())
+                : null;
+        this.pipeline = properties.isAsyncLogging()
+                ? new AsyncLogPipeline(properties.getAsyncBufferSize(), properties.getAsyncWorkers(),
+                        properties.getAsyncBackpressure(), properties.getAsyncBlockTimeout(),
+                        properties.getAsyncSampleRate(), this::log, metrics)
+                : null;
     }
 
     @Override
@@ -38,177 +165,506 @@ public class RequestLoggingInterceptor implements HandlerInterceptor {
         if (!(handler instanceof HandlerMethod)) {
             return true;
         }
+        if (routeMetrics != null) {
+            request.setAttribute(START_NANOS, System.nanoTime());
+        }
+        if (!policyResolver.resolve((HandlerMethod) handler).isEnabled()) {
+            return true;
+        }
 
         request.setAttribute(START_TIME, System.currentTimeMillis());
+        if (watchdog != null) {
+            request.setAttribute(IN_FLIGHT, watchdog.watch());
+        }
         String correlationId = LoggingUtils.generateCorrelationId();
-        request.setAttribute("correlationId", correlationId);
+        request.setAttribute(CORRELATION_ID, correlationId);
         return true;
     }
 
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
-        if (!(handler instanceof HandlerMethod)) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
             return;
         }
 
-        HandlerMethod handlerMethod = (HandlerMethod) handler;
-        LogRequest logRequest = AnnotationUtils.findAnnotation(handlerMethod.getMethod(), LogRequest.class);
+        if (routeMetrics != null) {
+            Long startNanos = (Long) request.getAttribute(START_NANOS);
+            if (startNanos != null) {
+                // An exception that no resolver handled still turns into a server error
+                routeMetrics.forRequest(request)
+                        .record(System.nanoTime() - startNanos, ex != null ? 500 : response.getStatus());
+            }
+        }
 
-        if (logRequest == null && !properties.isEnabled()) {
+        // Stop watching before anything else, also for exchanges that end up not being logged
+        List<StackSample> stackSamples = finishWatch(request);
+        LoggingPolicy policy = policyResolver.resolve(handlerMethod);
+        if (!policy.isEnabled()) {
             return;
         }
 
-        logRequest(request, logRequest);
-        logResponse(request, response, logRequest, ex);
+        Timer.Sample sample = metrics != null ? metrics.startTimer() : null;
+        try {
+            logExchange(request, response, policy, ex, stackSamples);
+        } finally {
+            if (sample != null) {
+                metrics.stopTimer(sample);
+            }
+        }
     }
 
-    private void logRequest(HttpServletRequest request, LogRequest logRequest) {
-        Map<String, Object> values = new HashMap<>();
-        values.put("timestamp", LoggingUtils.formatTimestamp(Instant.now()));
-        values.put("level", LoggingUtils.colorize("INFO", properties.isEnableAnsiColor()));
-        values.put("pid", System.getProperty("PID", "????"));
-        values.put("thread", Thread.currentThread().getName());
-        values.put("logger", this.getClass().getName());
-        values.put("method", request.getMethod());
-        values.put("uri", request.getRequestURI());
+    /**
+     * The servlet thread is released while the handler completes asynchronously; it must not be sampled
+     * while it serves other requests. The exchange is watched again once it is dispatched back.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        finishWatch(request);
+    }
+
+    private List<StackSample> finishWatch(HttpServletRequest request) {
+        if (watchdog == null) {
+            return List.of();
+        }
+        SlowRequestWatchdog.InFlight inFlight = (SlowRequestWatchdog.InFlight) request.getAttribute(IN_FLIGHT);
+        if (inFlight == null) {
+            return List.of();
+        }
+        request.removeAttribute(IN_FLIGHT);
+        return watchdog.finish(inFlight);
+    }
+
+    private void logExchange(HttpServletRequest request, HttpServletResponse response, LoggingPolicy policy,
+                             Exception ex, List<StackSample> stackSamples) {
+        boolean error = ex != null || response.getStatus() >= 500;
+        TailDetail detail = tailSampler.decide(error, elapsed(request));
+        if (tailSampler.isEnabled() && metrics != null) {
+            metrics.incrementTailDecisions(detail.name().toLowerCase(Locale.ROOT));
+        }
+        if (detail == TailDetail.NONE) {
+            return;
+        }
+
+        Admission admission = policyResolver.admit(policy, error);
+        if (!admission.isLogged()) {
+            if (metrics != null) {
+                metrics.incrementAdmissionRejected(admission.getReason());
+            }
+            return;
+        }
 
-        boolean shouldIncludeHeaders = logRequest != null ? logRequest.includeHeaders() : properties.isIncludeHeaders();
-        if (shouldIncludeHeaders) {
-            String headers = getHeaders(request, logRequest);
-            values.put("headers", headers.isEmpty() ? "-" : headers);
+        if (metrics != null) {
+            metrics.incrementTotalRequests();
+        }
+        boolean summary = detail == TailDetail.SUMMARY;
+        boolean timed = metrics != null && metrics.sampleStages();
+        if (pipeline != null && pipeline.isRunning()) {
+            long sequence = pipeline.claim();
+            if (sequence >= 0) {
+                try {
+                    // Bodies are copied because the capture buffers are released when the exchange ends
+                    ExchangeSnapshot snapshot = pipeline.get(sequence);
+                    snapshot(snapshot, request, response, policy, ex, summary, true, timed);
+                    snapshot.setStackSamples(stackSamples);
+                } finally {
+                    pipeline.publish(sequence);
+                }
+            }
+            return;
         }
 
-        boolean shouldIncludeParams = logRequest != null ? logRequest.includeParameters() : properties.isIncludeParameters();
-        if (shouldIncludeParams) {
-            String parameters = getParameters(request);
-            values.put("parameters", parameters.isEmpty() ? "-" : parameters);
+        ExchangeSnapshot snapshot = SNAPSHOTS.acquire();
+        try {
+            snapshot(snapshot, request, response, policy, ex, summary, false, timed);
+            snapshot.setStackSamples(stackSamples);
+            log(Collections.singletonList(snapshot));
+        } finally {
+            snapshot.reset();
+            SNAPSHOTS.release(snapshot);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (pipeline != null) {
+            pipeline.start();
+        }
+        if (aggregator != null) {
+            aggregator.start();
         }
+        if (watchdog != null) {
+            watchdog.start();
+        }
+        running = true;
+    }
 
-        boolean shouldIncludeBody = logRequest != null ? logRequest.includeRequestBody() : properties.isIncludeRequestBody();
-        if (shouldIncludeBody && request instanceof ContentCachingRequestWrapper) {
-            String body = getRequestBody((ContentCachingRequestWrapper) request);
-            values.put("body", body != null && !body.isEmpty() ? maskSensitiveData(body, logRequest) : "-");
-        } else {
-            values.put("body", "-");
+    /**
+     * Drains the pipeline, closes the open duplicate runs and stops every background thread. The
+     * threads are not restarted by a later {@link #start()}.
+     */
+    @Override
+    public synchronized void stop() {
+        if (pipeline != null) {
+            pipeline.shutdown(SHUTDOWN_TIMEOUT);
+        }
+        if (aggregator != null) {
+            aggregator.shutdown();
+        }
+        if (watchdog != null) {
+            watchdog.shutdown();
         }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Override
+    public void destroy() {
+        // Not stopped by the context if it was never started, or if it is used outside of one
+        stop();
+    }
+
+    /**
+     * Milliseconds since {@link #preHandle}, or {@code -1} if the start was not recorded.
+     */
+    private static long elapsed(HttpServletRequest request) {
+        Long startTime = (Long) request.getAttribute(START_TIME);
+        return startTime != null ? System.currentTimeMillis() - startTime : -1;
+    }
 
-        log.info(templates[0].format(values));
+    private void snapshot(ExchangeSnapshot snapshot, HttpServletRequest request, HttpServletResponse response,
+                          LoggingPolicy policy, Exception ex, boolean summary, boolean copyBodies, boolean timed) {
+        if (!timed) {
+            snapshot(snapshot, request, response, policy, ex, summary, copyBodies);
+            return;
+        }
+        long start = System.nanoTime();
+        snapshot(snapshot, request, response, policy, ex, summary, copyBodies);
+        snapshot.setTimed(true);
+        metrics.recordStage(Stage.SNAPSHOT, System.nanoTime() - start);
     }
 
-    private void logResponse(HttpServletRequest request, HttpServletResponse response, LogRequest logRequest, Exception ex) {
-        Map<String, Object> values = new HashMap<>();
-        values.put("timestamp", LoggingUtils.formatTimestamp(Instant.now()));
-        String level = ex != null ? "ERROR" : "INFO";
-        values.put("level", LoggingUtils.colorize(level, properties.isEnableAnsiColor()));
-        values.put("pid", System.getProperty("PID", "????"));
-        values.put("thread", Thread.currentThread().getName());
-        values.put("logger", this.getClass().getName());
-        values.put("status", response.getStatus() + (ex != null ? " (Error: " + ex.getMessage() + ")" : ""));
+    /**
+     * Takes everything the log needs from the servlet request and response, without masking or rendering.
+     * A summary takes neither headers, parameters nor bodies.
+     */
+    private void snapshot(ExchangeSnapshot snapshot, HttpServletRequest request, HttpServletResponse response,
+                          LoggingPolicy policy, Exception ex, boolean summary, boolean copyBodies) {
+        snapshot.setPolicy(policy);
+        snapshot.setTimestamp(System.currentTimeMillis());
+        snapshot.setThread(Thread.currentThread().getName());
+        snapshot.setCorrelationId((String) request.getAttribute(CORRELATION_ID));
+        snapshot.setMethod(request.getMethod());
+        snapshot.setUri(request.getRequestURI());
+        snapshot.setStatus(response.getStatus());
+        if (ex != null) {
+            snapshot.setFailed(true);
+            snapshot.setError(String.valueOf(ex.getMessage()));
+        }
 
-        boolean shouldIncludeTiming = logRequest != null ? logRequest.includeTiming() : properties.isIncludeTiming();
-        if (shouldIncludeTiming) {
+        if (summary) {
+            snapshot.setSummary(true);
             Long startTime = (Long) request.getAttribute(START_TIME);
             if (startTime != null) {
-                values.put("duration", String.valueOf(System.currentTimeMillis() - startTime));
+                snapshot.setDuration(snapshot.getTimestamp() - startTime);
             }
+            return;
         }
 
-        values.put("headers", "-"); // Default value for headers
+        if (policy.isIncludeHeaders()) {
+            snapshot.markHeadersCaptured();
+            Enumeration<String> headerNames = request.getHeaderNames();
+            while (headerNames.hasMoreElements()) {
+                String header = headerNames.nextElement();
+                if (!policy.isExcludedHeader(header)) {
+                    snapshot.addHeader(header, request.getHeader(header));
+                }
+            }
+        }
 
-        boolean shouldIncludeBody = logRequest != null ? logRequest.includeResponseBody() : properties.isIncludeResponseBody();
-        if (shouldIncludeBody && response instanceof ContentCachingResponseWrapper) {
-            String body = getResponseBody((ContentCachingResponseWrapper) response);
-            values.put("body", !body.isEmpty() ? maskSensitiveData(body, logRequest) : "-");
-        } else {
-            values.put("body", "-");
+        if (policy.isIncludeParameters()) {
+            snapshot.markParametersCaptured();
+            request.getParameterMap().forEach(snapshot::addParameter);
         }
 
-        if (ex != null) {
-            log.error(templates[1].format(values));
-        } else {
-            log.info(templates[1].format(values));
+        if (policy.isIncludeTiming()) {
+            Long startTime = (Long) request.getAttribute(START_TIME);
+            if (startTime != null) {
+                snapshot.setDuration(snapshot.getTimestamp() - startTime);
+            }
+        }
+
+        if (policy.isIncludeRequestBody()) {
+            CapturingRequestWrapper capturingRequest = WebUtils.getNativeRequest(request, CapturingRequestWrapper.class);
+            if (capturingRequest != null) {
+                snapshot.getRequestBody().capture(capturingRequest.getCapture(), copyBodies);
+            }
+        }
+
+        if (policy.isIncludeResponseBody()) {
+            CapturingResponseWrapper capturingResponse = WebUtils.getNativeResponse(response, CapturingResponseWrapper.class);
+            if (capturingResponse != null) {
+                snapshot.getResponseBody().capture(capturingResponse.getCapture(), copyBodies);
+            }
         }
     }
 
-    private String getHeaders(HttpServletRequest request, LogRequest logRequest) {
-        return Collections.list(request.getHeaderNames()).stream()
-                .filter(header -> !isExcludedHeader(header, logRequest))
-                .collect(Collectors.toMap(
-                        header -> header,
-                        request::getHeader,
-                        (v1, v2) -> v1
-                )).toString();
+    /**
+     * Masks the snapshots into events and hands them to the sinks as one batch, on the servlet thread
+     * or on a pipeline worker.
+     */
+    private void log(List<ExchangeSnapshot> snapshots) {
+        boolean combined = properties.isExchangeMode() || properties.getFormat() == RequestLoggingProperties.Format.JSON;
+        List<LogEvent> batch = new ArrayList<>(combined ? snapshots.size() : 2 * snapshots.size());
+        boolean timed = false;
+        try {
+            for (int i = 0; i < snapshots.size(); i++) {
+                ExchangeSnapshot snapshot = snapshots.get(i);
+                long start = snapshot.isTimed() ? System.nanoTime() : 0;
+                timed |= snapshot.isTimed();
+                if (snapshot.isSummary() || combined) {
+                    ExchangeLogEvent event = exchangeEvent(snapshot);
+                    if (snapshot.isSummary()) {
+                        event.setTemplate(summaryTemplate);
+                    }
+                    if (snapshot.isTimed()) {
+                        metrics.recordStage(Stage.MASK, System.nanoTime() - start);
+                    }
+                    if (collapse(snapshot, event.getRequest(), event.getResponse())) {
+                        release(event);
+                    } else {
+                        batch.add(event);
+                    }
+                } else {
+                    RequestLogEvent request = requestEvent(snapshot);
+                    ResponseLogEvent response = responseEvent(snapshot);
+                    if (snapshot.isTimed()) {
+                        metrics.recordStage(Stage.MASK, System.nanoTime() - start);
+                    }
+                    if (collapse(snapshot, request, response)) {
+                        release(request);
+                        release(response);
+                    } else {
+                        batch.add(request);
+                        batch.add(response);
+                    }
+                }
+            }
+            if (timed) {
+                // A batch is timed as a whole; it holds a single exchange unless the pipeline drained several
+                long start = System.nanoTime();
+                write(batch);
+                metrics.recordStage(Stage.WRITE, System.nanoTime() - start);
+            } else {
+                write(batch);
+            }
+        } finally {
+            for (int i = 0; i < batch.size(); i++) {
+                release(batch.get(i));
+            }
+        }
     }
 
-    private boolean isExcludedHeader(String header, LogRequest logRequest) {
-        if (logRequest != null && logRequest.excludeHeaders().length > 0) {
-            return Arrays.asList(logRequest.excludeHeaders()).contains(header);
+    /**
+     * Whether the exchange repeats one logged moments ago and is only counted towards its aggregate.
+     */
+    private boolean collapse(ExchangeSnapshot snapshot, RequestLogEvent request, ResponseLogEvent response) {
+        if (aggregator == null) {
+            return false;
         }
-        return properties.getExcludeHeaders().contains(header);
+        long fingerprint = DuplicateAggregator.fingerprint(request.getMethod(), request.getUri(), response.getStatus(),
+                response.getError(), request.getBody(), response.getBody());
+        return !aggregator.offer(fingerprint, request.getMethod(), request.getUri(), response.getStatus(),
+                snapshot.getCorrelationId(), snapshot.getTimestamp(), response.getLevel(), snapshot.getDuration());
     }
 
-    private String getParameters(HttpServletRequest request) {
-        return request.getParameterMap().entrySet().stream()
-                .collect(Collectors.toMap(
-                        entry -> maskSensitiveData(entry.getKey(), null),
-                        entry -> Arrays.stream(entry.getValue())
-                                .map(value -> maskSensitiveData(value, null))
-                                .toArray(String[]::new)
-                )).toString();
+    /**
+     * Writes one aggregate record per run of collapsed duplicates, when the aggregation window closes.
+     */
+    private void logDuplicates(List<DuplicateAggregator.Run> runs) {
+        List<LogEvent> batch = new ArrayList<>(runs.size());
+        for (DuplicateAggregator.Run run : runs) {
+            AggregateLogEvent event = new AggregateLogEvent();
+            event.setTemplate(aggregateTemplate);
+            event.setTimestamp(System.currentTimeMillis());
+            event.setLevel(run.getLevel());
+            event.setAnsiColor(properties.isEnableAnsiColor());
+            event.setPid(System.getProperty("PID", "????"));
+            event.setThread(Thread.currentThread().getName());
+            event.setLogger(LOGGER_NAME);
+            event.setCorrelationId(run.getCorrelationId());
+            event.setMethod(run.getMethod());
+            event.setUri(run.getUri());
+            event.setStatus(run.getStatus());
+            event.setCount(run.getCount());
+            event.setMinDuration(run.getMinDuration());
+            event.setAvgDuration(run.getAvgDuration());
+            event.setMaxDuration(run.getMaxDuration());
+            batch.add(event);
+        }
+        write(batch);
     }
 
-    private String getRequestBody(ContentCachingRequestWrapper request) {
-        byte[] content = request.getContentAsByteArray();
-        if (content.length == 0) return "";
-        
-        int length = Math.min(content.length, properties.getMaxBodyLength());
-        try {
-            return new String(content, 0, length, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            log.warn("Failed to read request body", e);
-            return "";
+    private void write(List<LogEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < sinks.size(); i++) {
+            try {
+                sinks.get(i).write(batch);
+            } catch (RuntimeException e) {
+                log.warn("Request log sink {} failed", sinks.get(i).getClass().getName(), e);
+                if (metrics != null) {
+                    metrics.incrementErrors();
+                }
+            }
+        }
+    }
+
+    private ExchangeLogEvent exchangeEvent(ExchangeSnapshot snapshot) {
+        ExchangeLogEvent event = EXCHANGE_EVENTS.acquire();
+        populateRequestEvent(event.getRequest(), snapshot);
+        populateResponseEvent(event.getResponse(), snapshot);
+        ResponseLogEvent responseEvent = event.getResponse();
+        event.setTemplate(exchangeTemplate);
+        event.setTimestamp(responseEvent.getTimestamp());
+        event.setLevel(responseEvent.getLevel());
+        event.setAnsiColor(responseEvent.isAnsiColor());
+        event.setPid(responseEvent.getPid());
+        event.setThread(responseEvent.getThread());
+        event.setLogger(responseEvent.getLogger());
+        event.setCorrelationId(responseEvent.getCorrelationId());
+        return event;
+    }
+
+    private RequestLogEvent requestEvent(ExchangeSnapshot snapshot) {
+        RequestLogEvent event = REQUEST_EVENTS.acquire();
+        populateRequestEvent(event, snapshot);
+        return event;
+    }
+
+    private ResponseLogEvent responseEvent(ExchangeSnapshot snapshot) {
+        ResponseLogEvent event = RESPONSE_EVENTS.acquire();
+        populateResponseEvent(event, snapshot);
+        return event;
+    }
+
+    private static void release(LogEvent event) {
+        event.reset();
+        if (event instanceof ExchangeLogEvent exchange) {
+            EXCHANGE_EVENTS.release(exchange);
+        } else if (event instanceof RequestLogEvent request) {
+            REQUEST_EVENTS.release(request);
+        } else if (event instanceof ResponseLogEvent response) {
+            RESPONSE_EVENTS.release(response);
+        }
+    }
+
+    private void populateRequestEvent(RequestLogEvent event, ExchangeSnapshot snapshot) {
+        LoggingPolicy policy = snapshot.getPolicy();
+        event.setTemplate(templates[0]);
+        event.setTimestamp(snapshot.getTimestamp());
+        event.setLevel("INFO");
+        event.setAnsiColor(properties.isEnableAnsiColor());
+        event.setPid(System.getProperty("PID", "????"));
+        event.setThread(snapshot.getThread());
+        event.setLogger(LOGGER_NAME);
+        event.setCorrelationId(snapshot.getCorrelationId());
+        event.setMethod(snapshot.getMethod());
+        event.setUri(snapshot.getUri());
+
+        if (snapshot.isHeadersCaptured()) {
+            Map<String, String> headers = getHeaders(snapshot);
+            event.setHeaderMap(headers);
+            event.setHeaders(headers.isEmpty() ? "-" : headers.toString());
+        }
+
+        if (snapshot.isParametersCaptured()) {
+            Map<String, String[]> parameters = getParameters(snapshot);
+            event.setParameterMap(parameters);
+            event.setParameters(parameters.isEmpty() ? "-" : parameters.toString());
+        }
+
+        String body = getBody(snapshot.getRequestBody(), policy, "request");
+        event.setBody(!body.isEmpty() ? body : "-");
+    }
+
+    private void populateResponseEvent(ResponseLogEvent event, ExchangeSnapshot snapshot) {
+        event.setTemplate(templates[1]);
+        event.setTimestamp(snapshot.getTimestamp());
+        event.setLevel(snapshot.isFailed() ? "ERROR" : "INFO");
+        event.setAnsiColor(properties.isEnableAnsiColor());
+        event.setPid(System.getProperty("PID", "????"));
+        event.setThread(snapshot.getThread());
+        event.setLogger(LOGGER_NAME);
+        event.setCorrelationId(snapshot.getCorrelationId());
+        event.setStatus(snapshot.getStatus());
+        event.setError(snapshot.getError());
+
+        if (snapshot.getDuration() != ExchangeSnapshot.NO_DURATION) {
+            event.setDuration(snapshot.getDuration());
+        }
+
+        event.setHeaders("-"); // Default value for headers
+        event.setStackSamples(snapshot.getStackSamples());
+
+        String body = getBody(snapshot.getResponseBody(), snapshot.getPolicy(), "response");
+        event.setBody(!body.isEmpty() ? body : "-");
+    }
+
+    private static Map<String, String> getHeaders(ExchangeSnapshot snapshot) {
+        List<String> names = snapshot.getHeaderNames();
+        List<String> values = snapshot.getHeaderValues();
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            headers.putIfAbsent(names.get(i), values.get(i));
+        }
+        return headers;
+    }
+
+    private Map<String, String[]> getParameters(ExchangeSnapshot snapshot) {
+        List<String> names = snapshot.getParameterNames();
+        List<String[]> values = snapshot.getParameterValues();
+        Map<String, String[]> parameters = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            parameters.put(maskSensitiveData(names.get(i)), Arrays.stream(values.get(i))
+                    .map(this::maskSensitiveData)
+                    .toArray(String[]::new));
         }
+        return parameters;
     }
 
-    private String getResponseBody(ContentCachingResponseWrapper response) {
-        byte[] content = response.getContentAsByteArray();
-        if (content.length == 0) return "";
-        
-        int length = Math.min(content.length, properties.getMaxBodyLength());
+    private String getBody(ExchangeSnapshot.Body body, LoggingPolicy policy, String kind) {
+        if (body.getLength() == 0) return "";
+
         try {
-            String body = new String(content, 0, length, StandardCharsets.UTF_8);
-            response.copyBodyToResponse();
-            return body;
+            return maskBody(body.getBytes(), body.getLength(), policy);
         } catch (Exception e) {
-            log.warn("Failed to read response body", e);
+            log.warn("Failed to read " + kind + " body", e);
             return "";
         }
     }
 
-    private String maskSensitiveData(String content, LogRequest logRequest) {
-        if (content == null) return null;
-        
-        String maskedContent = content;
-        
-        // Apply annotation-level masking patterns
-        if (logRequest != null) {
-            for (String maskPattern : logRequest.maskPatterns()) {
-                String[] parts = maskPattern.split(":");
-                if (parts.length >= 2) {
-                    String pattern = "\"" + parts[0] + "\":\"[^\"]*\"";
-                    String replacement = "\"" + parts[0] + "\":\"" + (parts.length > 2 ? parts[2] : "***") + "\"";
-                    maskedContent = maskedContent.replaceAll(pattern, replacement);
-                }
-            }
-        }
-        
-        // Apply global masking patterns
-        for (RequestLoggingProperties.MaskingPattern pattern : properties.getMaskingPatterns()) {
-            if (pattern.getPattern() != null && pattern.getReplacement() != null) {
-                maskedContent = maskedContent.replaceAll(pattern.getPattern(), pattern.getReplacement());
-            }
-        }
-        
-        return maskedContent;
+    /**
+     * Masks the raw captured bytes; JSON bodies are masked without decoding the whole payload first.
+     */
+    private String maskBody(byte[] content, int length, LoggingPolicy policy) {
+        return policy.getMasker().mask(content, 0, length, policy.getMaxBodyLength());
+    }
+
+    private String maskSensitiveData(String content) {
+        return policyResolver.getMaskingEngine().globalMasker().mask(content);
     }
-} 
\ No newline at end of file
+}
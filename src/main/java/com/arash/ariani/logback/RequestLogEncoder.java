@@ -0,0 +1,64 @@
+package com.arash.ariani.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.encoder.EncoderBase;
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.util.LoggingUtils;
+import java.nio.ByteBuffer;
+
+/**
+ * Logback encoder that renders request/response {@link LogEvent}s directly into the appender's
+ * output bytes, skipping the intermediate message string. Other events are written as their
+ * formatted message. Enable {@code request.logging.deferred-rendering} and attach it to a
+ * synchronous appender, e.g.:
+ * <pre>
+ * &lt;appender name="REQUESTS" class="ch.qos.logback.core.FileAppender"&gt;
+ *     &lt;file&gt;requests.log&lt;/file&gt;
+ *     &lt;encoder class="com.arash.ariani.logback.RequestLogEncoder"/&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ */
+public class RequestLogEncoder extends EncoderBase<ILoggingEvent> {
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        StringBuilder buffer = LoggingUtils.acquireStringBuilder();
+        try {
+            LogEvent logEvent = findLogEvent(event);
+            if (logEvent != null) {
+                logEvent.getTemplate().formatTo(logEvent, buffer);
+            } else {
+                buffer.append(event.getFormattedMessage());
+            }
+            if (buffer.length() == 0 || buffer.charAt(buffer.length() - 1) != '\n') {
+                buffer.append(CoreConstants.LINE_SEPARATOR);
+            }
+
+            byte[] bytes = new byte[LoggingUtils.utf8Length(buffer)];
+            LoggingUtils.encodeUtf8(buffer, ByteBuffer.wrap(bytes));
+            return bytes;
+        } finally {
+            LoggingUtils.releaseStringBuilder(buffer);
+        }
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    private static LogEvent findLogEvent(ILoggingEvent event) {
+        Object[] arguments = event.getArgumentArray();
+        if (arguments != null && arguments.length == 1 && arguments[0] instanceof LogEvent logEvent
+                && logEvent.getTemplate() != null) {
+            return logEvent;
+        }
+        return null;
+    }
+}
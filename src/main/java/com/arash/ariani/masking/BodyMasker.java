@@ -0,0 +1,72 @@
+package com.arash.ariani.masking;
+
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Combines field rules and free-form pattern rules. A {@link KeywordPrefilter} first finds in one
+ * scan which rules could match the raw bytes, and masking is skipped entirely when none can.
+ * Bodies that are JSON get their fields masked by a single streaming pass over the raw bytes,
+ * after which only the free-form patterns run on the result; all other content goes through the
+ * regular expressions for every candidate rule.
+ */
+public class BodyMasker implements Masker {
+    private final JsonFieldMasker jsonFieldMasker;
+    private final RegexMasker allRulesMasker;
+    private final int fieldCount;
+    private final KeywordPrefilter prefilter;
+    private final RequestLoggingMetrics metrics;
+
+    /**
+     * @param jsonFieldMasker masker for the field rules, {@code null} if there are none
+     * @param allRulesMasker  masker applying the {@code fieldCount} field rules followed by the
+     *                        pattern rules to arbitrary text
+     * @param prefilter       prefilter over the rules of {@code allRulesMasker}, {@code null} to scan
+     *                        with every rule
+     */
+    public BodyMasker(JsonFieldMasker jsonFieldMasker, RegexMasker allRulesMasker, int fieldCount,
+                      KeywordPrefilter prefilter, RequestLoggingMetrics metrics) {
+        this.jsonFieldMasker = jsonFieldMasker;
+        this.allRulesMasker = allRulesMasker;
+        this.fieldCount = fieldCount;
+        this.prefilter = prefilter;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String mask(String content) {
+        return allRulesMasker.mask(content);
+    }
+
+    @Override
+    public String mask(byte[] content, int offset, int length, int maxLength) {
+        long candidates = -1L;
+        if (prefilter != null) {
+            candidates = prefilter.scan(content, offset, length);
+            if (metrics != null) {
+                if (candidates == 0L) {
+                    metrics.incrementPrefilterSkips();
+                } else {
+                    metrics.incrementPrefilterHits();
+                }
+            }
+            if (candidates == 0L) {
+                return decode(content, offset, length, maxLength);
+            }
+        }
+
+        boolean fieldCandidates = fieldCount >= Long.SIZE || (candidates & ((1L << fieldCount) - 1)) != 0L;
+        if (jsonFieldMasker != null && fieldCandidates) {
+            String masked = jsonFieldMasker.mask(content, offset, length, maxLength);
+            if (masked != null) {
+                // Skipped by index rather than by clearing their bits, which would not cover field rules past the 64th
+                return allRulesMasker.mask(masked, candidates, fieldCount);
+            }
+        }
+        return allRulesMasker.mask(decode(content, offset, length, maxLength), candidates);
+    }
+
+    private static String decode(byte[] content, int offset, int length, int maxLength) {
+        return new String(content, offset, Math.min(length, maxLength), StandardCharsets.UTF_8);
+    }
+}
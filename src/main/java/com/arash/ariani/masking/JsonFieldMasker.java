@@ -0,0 +1,151 @@
+package com.arash.ariani.masking;
+
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.util.LoggingUtils;
+import com.arash.ariani.util.StringBuilderWriter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Masks JSON fields in a single streaming pass over the raw UTF-8 bytes. Field names are matched
+ * against a precomputed set, so the cost depends on the body size only, not on the number of
+ * fields. Rules are either plain names, matching at any depth, or dotted paths such as
+ * {@code card.number} matching from the document root; arrays are transparent to paths.
+ */
+public class JsonFieldMasker {
+    private final JsonFactory jsonFactory;
+    private final Map<String, String> anyDepth = new HashMap<>();
+    private final PathNode root = new PathNode();
+    private final RequestLoggingMetrics metrics;
+
+    /**
+     * @param replacements replacement per field name or dotted path
+     */
+    public JsonFieldMasker(JsonFactory jsonFactory, Map<String, String> replacements, RequestLoggingMetrics metrics) {
+        this.jsonFactory = jsonFactory;
+        this.metrics = metrics;
+        replacements.forEach((field, replacement) -> {
+            if (field.indexOf('.') < 0) {
+                anyDepth.put(field, replacement);
+                return;
+            }
+            PathNode node = root;
+            for (String segment : field.split("\\.")) {
+                node = node.children.computeIfAbsent(segment, key -> new PathNode());
+            }
+            node.replacement = replacement;
+        });
+    }
+
+    public boolean isEmpty() {
+        return anyDepth.isEmpty() && root.children.isEmpty();
+    }
+
+    /**
+     * Masks the given JSON and stops once {@code maxLength} characters were produced. Input that
+     * ends early, e.g. because capture was capped, yields the masked prefix.
+     *
+     * @return the masked JSON, or {@code null} if the content is not JSON
+     */
+    public String mask(byte[] content, int offset, int length, int maxLength) {
+        if (!startsLikeJson(content, offset, length)) {
+            return null;
+        }
+
+        StringBuilder buffer = LoggingUtils.acquireStringBuilder();
+        int masked = 0;
+        try (JsonParser parser = jsonFactory.createParser(content, offset, length);
+             JsonGenerator generator = jsonFactory.createGenerator(new StringBuilderWriter(buffer))) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != null
+                        && buffer.length() + Math.max(0, generator.getOutputBuffered()) < maxLength) {
+                    if (token == JsonToken.FIELD_NAME) {
+                        String name = parser.currentName();
+                        String replacement = replacementFor(name, (PathNode) parser.getParsingContext().getCurrentValue());
+                        generator.writeFieldName(name);
+                        if (replacement != null) {
+                            JsonToken value = parser.nextToken();
+                            if (value != null && value.isStructStart()) {
+                                parser.skipChildren();
+                            }
+                            generator.writeString(replacement);
+                            masked++;
+                        }
+                        continue;
+                    }
+                    if (token.isStructStart()) {
+                        trackPath(parser.getParsingContext());
+                    }
+                    generator.copyCurrentEvent(parser);
+                }
+            } catch (JsonEOFException e) {
+                // Truncated input: keep what was masked so far
+            }
+            generator.flush();
+
+            if (buffer.length() > maxLength) {
+                buffer.setLength(maxLength);
+            }
+            if (masked > 0 && metrics != null) {
+                metrics.incrementMaskedFields(masked);
+            }
+            return buffer.toString();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            LoggingUtils.releaseStringBuilder(buffer);
+        }
+    }
+
+    private String replacementFor(String name, PathNode parent) {
+        if (parent != null) {
+            PathNode node = parent.children.get(name);
+            if (node != null && node.replacement != null) {
+                return node.replacement;
+            }
+        }
+        return anyDepth.get(name);
+    }
+
+    /**
+     * Stores the path node of a newly entered object or array in its parsing context, so that
+     * paths are followed without building any strings.
+     */
+    private void trackPath(JsonStreamContext context) {
+        JsonStreamContext parent = context.getParent();
+        PathNode node;
+        if (parent == null || parent.inRoot()) {
+            node = root;
+        } else {
+            PathNode parentNode = (PathNode) parent.getCurrentValue();
+            node = parentNode == null ? null
+                    : parent.inObject() ? parentNode.children.get(parent.getCurrentName()) : parentNode;
+        }
+        context.setCurrentValue(node);
+    }
+
+    private static boolean startsLikeJson(byte[] content, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            byte b = content[i];
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                continue;
+            }
+            return b == '{' || b == '[';
+        }
+        return false;
+    }
+
+    private static final class PathNode {
+        private final Map<String, PathNode> children = new HashMap<>();
+        private String replacement;
+    }
+}
@@ -0,0 +1,116 @@
+package com.arash.ariani.masking;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton over bytes telling in one linear scan which masking rules could match.
+ * Keywords are matched ASCII case-insensitively, so the result is a superset of the rules whose
+ * field name occurs in the content. Supports up to 64 rules, one bit each.
+ */
+public class KeywordPrefilter {
+    public static final int MAX_RULES = Long.SIZE;
+
+    /**
+     * Dense transition table with failure links already folded in.
+     */
+    private final int[][] transitions;
+    private final long[] outputs;
+    private final long alwaysMatching;
+
+    /**
+     * @param keywords keyword per rule, {@code null} for rules that cannot be prefiltered and
+     *                 therefore always match
+     */
+    public KeywordPrefilter(List<String> keywords) {
+        if (keywords.size() > MAX_RULES) {
+            throw new IllegalArgumentException("At most " + MAX_RULES + " rules can be prefiltered");
+        }
+
+        List<int[]> gotos = new ArrayList<>();
+        List<Long> outs = new ArrayList<>();
+        gotos.add(newState());
+        outs.add(0L);
+        long always = 0L;
+        for (int rule = 0; rule < keywords.size(); rule++) {
+            String keyword = keywords.get(rule);
+            if (keyword == null || keyword.isEmpty()) {
+                always |= 1L << rule;
+                continue;
+            }
+            int state = 0;
+            for (byte b : keyword.getBytes(StandardCharsets.UTF_8)) {
+                int symbol = fold(b);
+                if (gotos.get(state)[symbol] < 0) {
+                    gotos.get(state)[symbol] = gotos.size();
+                    gotos.add(newState());
+                    outs.add(0L);
+                }
+                state = gotos.get(state)[symbol];
+            }
+            outs.set(state, outs.get(state) | (1L << rule));
+        }
+
+        this.transitions = gotos.toArray(new int[0][]);
+        this.outputs = new long[outs.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = outs.get(i);
+        }
+        this.alwaysMatching = always;
+        buildFailureLinks();
+    }
+
+    /**
+     * @return bit {@code i} set if rule {@code i} could match the content
+     */
+    public long scan(byte[] content, int offset, int length) {
+        long matches = alwaysMatching;
+        int state = 0;
+        for (int i = offset; i < offset + length; i++) {
+            state = transitions[state][fold(content[i])];
+            matches |= outputs[state];
+        }
+        return matches;
+    }
+
+    private void buildFailureLinks() {
+        int[] failure = new int[transitions.length];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < 256; symbol++) {
+            int next = transitions[0][symbol];
+            if (next < 0) {
+                transitions[0][symbol] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            outputs[state] |= outputs[failure[state]];
+            for (int symbol = 0; symbol < 256; symbol++) {
+                int next = transitions[state][symbol];
+                if (next < 0) {
+                    transitions[state][symbol] = transitions[failure[state]][symbol];
+                } else {
+                    failure[next] = transitions[failure[state]][symbol];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[256];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b & 0xFF;
+    }
+}
@@ -0,0 +1,27 @@
+package com.arash.ariani.masking;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replaces sensitive values in logged content. Implementations are immutable and thread-safe.
+ */
+public interface Masker {
+
+    /**
+     * Masker that returns content unchanged.
+     */
+    Masker NONE = content -> content;
+
+    /**
+     * @return the masked content, or the same instance if nothing matched
+     */
+    String mask(String content);
+
+    /**
+     * Masks a captured UTF-8 body, producing at most {@code maxLength} characters. The default
+     * implementation decodes the first {@code maxLength} bytes and delegates to {@link #mask(String)}.
+     */
+    default String mask(byte[] content, int offset, int length, int maxLength) {
+        return mask(new String(content, offset, Math.min(length, maxLength), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,151 @@
+package com.arash.ariani.masking;
+
+import com.arash.ariani.annotation.LogRequest;
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import com.arash.ariani.util.LoggingUtils;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles masking rules once per configuration snapshot and hands out cached {@link Masker}s.
+ * A snapshot is rebuilt when the masking patterns or mask fields of the properties are replaced,
+ * e.g. through the actuator endpoint, or when {@link #invalidate()} is called.
+ */
+public class MaskingEngine {
+    private final RequestLoggingProperties properties;
+    private final RequestLoggingMetrics metrics;
+    private volatile Snapshot snapshot;
+
+    public MaskingEngine(RequestLoggingProperties properties, RequestLoggingMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Masker applying the globally configured rules only.
+     */
+    public Masker globalMasker() {
+        return current().globalMasker;
+    }
+
+    /**
+     * Masker applying the rules of the given annotation followed by the global rules.
+     */
+    public Masker maskerFor(LogRequest logRequest) {
+        Snapshot current = current();
+        if (logRequest == null || logRequest.maskPatterns().length == 0) {
+            return current.globalMasker;
+        }
+        return current.annotationMaskers.computeIfAbsent(logRequest, annotation -> {
+            Map<String, String> fields = annotationFields(annotation);
+            current.globalFields.forEach(fields::putIfAbsent);
+            return createMasker(fields, current.patternRules, metrics);
+        });
+    }
+
+    /**
+     * Forces the rules to be recompiled on next use, e.g. after masking patterns were modified in place.
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null || current.maskingPatterns != properties.getMaskingPatterns()
+                || current.maskFields != properties.getMaskFields()) {
+            current = new Snapshot(properties.getMaskingPatterns(), properties.getMaskFields(), metrics);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Field rules are applied first, in order, followed by the free-form pattern rules. Pattern
+     * rules are prefiltered on their field name; those without one are always applied.
+     */
+    static Masker createMasker(Map<String, String> fields, List<RegexMasker.Rule> patternRules,
+                               RequestLoggingMetrics metrics) {
+        if (fields.isEmpty() && patternRules.isEmpty()) {
+            return Masker.NONE;
+        }
+        List<RegexMasker.Rule> allRules = new ArrayList<>();
+        fields.forEach((field, replacement) -> allRules.add(RegexMasker.Rule.forField(field, replacement)));
+        allRules.addAll(patternRules);
+
+        KeywordPrefilter prefilter = null;
+        if (allRules.size() <= KeywordPrefilter.MAX_RULES) {
+            List<String> keywords = new ArrayList<>();
+            for (RegexMasker.Rule rule : allRules) {
+                // Dotted paths show up in the body as their last segment only
+                String fieldName = rule.fieldName();
+                keywords.add(fieldName == null ? null : fieldName.substring(fieldName.lastIndexOf('.') + 1));
+            }
+            prefilter = new KeywordPrefilter(keywords);
+        }
+
+        JsonFieldMasker jsonFieldMasker = fields.isEmpty() ? null
+                : new JsonFieldMasker(LoggingUtils.jsonFactory(), fields, metrics);
+        return new BodyMasker(jsonFieldMasker, new RegexMasker(allRules, metrics), fields.size(), prefilter, metrics);
+    }
+
+    /**
+     * Parses {@link LogRequest#maskPatterns()} entries of the form {@code field:pattern[:replacement]}.
+     */
+    static Map<String, String> annotationFields(LogRequest logRequest) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (String maskPattern : logRequest.maskPatterns()) {
+            String[] parts = maskPattern.split(":");
+            if (parts.length >= 2) {
+                fields.putIfAbsent(parts[0], parts.length > 2 ? parts[2] : "***");
+            }
+        }
+        return fields;
+    }
+
+    static Map<String, String> globalFields(String maskFields) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        if (maskFields != null) {
+            for (String field : maskFields.split(",")) {
+                if (!field.isBlank()) {
+                    fields.putIfAbsent(field.trim(), "***");
+                }
+            }
+        }
+        return fields;
+    }
+
+    static List<RegexMasker.Rule> patternRules(List<RequestLoggingProperties.MaskingPattern> maskingPatterns) {
+        List<RegexMasker.Rule> rules = new ArrayList<>();
+        for (RequestLoggingProperties.MaskingPattern pattern : maskingPatterns) {
+            if (pattern.getPattern() != null && pattern.getReplacement() != null) {
+                rules.add(new RegexMasker.Rule(pattern.getFieldName(), Pattern.compile(pattern.getPattern()),
+                        pattern.getReplacement()));
+            }
+        }
+        return rules;
+    }
+
+    private static final class Snapshot {
+        private final List<RequestLoggingProperties.MaskingPattern> maskingPatterns;
+        private final String maskFields;
+        private final Map<String, String> globalFields;
+        private final List<RegexMasker.Rule> patternRules;
+        private final Masker globalMasker;
+        private final Map<LogRequest, Masker> annotationMaskers = new ConcurrentHashMap<>();
+
+        private Snapshot(List<RequestLoggingProperties.MaskingPattern> maskingPatterns, String maskFields,
+                         RequestLoggingMetrics metrics) {
+            this.maskingPatterns = maskingPatterns;
+            this.maskFields = maskFields;
+            this.globalFields = globalFields(maskFields);
+            this.patternRules = patternRules(maskingPatterns);
+            this.globalMasker = createMasker(globalFields, patternRules, metrics);
+        }
+    }
+}
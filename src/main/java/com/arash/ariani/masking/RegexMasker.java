@@ -0,0 +1,114 @@
+package com.arash.ariani.masking;
+
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.util.LoggingUtils;
+import com.arash.ariani.util.ObjectPool;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies a fixed list of precompiled rules in order. {@link Matcher}s are pooled and reset
+ * onto each input instead of being created per call.
+ */
+public class RegexMasker implements Masker {
+    private static final int MATCHER_POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final Rule[] rules;
+    private final RequestLoggingMetrics metrics;
+    private final ObjectPool<Matcher[]> matchers;
+
+    public RegexMasker(List<Rule> rules, RequestLoggingMetrics metrics) {
+        this.rules = rules.toArray(new Rule[0]);
+        this.metrics = metrics;
+        this.matchers = new ObjectPool<>(MATCHER_POOL_SIZE, this::createMatchers);
+    }
+
+    public List<Rule> getRules() {
+        return List.of(rules);
+    }
+
+    @Override
+    public String mask(String content) {
+        return mask(content, -1L);
+    }
+
+    /**
+     * Applies only the rules whose bit is set in {@code ruleMask}, e.g. as found by a {@link KeywordPrefilter}.
+     * Rules past the 64th are always applied.
+     */
+    public String mask(String content, long ruleMask) {
+        return mask(content, ruleMask, 0);
+    }
+
+    /**
+     * Like {@link #mask(String, long)}, but skips the rules before {@code firstRule}, e.g. field rules that
+     * were already applied to the content.
+     */
+    public String mask(String content, long ruleMask, int firstRule) {
+        if (content == null || content.isEmpty() || firstRule >= rules.length
+                || ruleMask == 0L && rules.length <= Long.SIZE) {
+            return content;
+        }
+
+        Matcher[] ruleMatchers = matchers.acquire();
+        StringBuilder buffer = LoggingUtils.acquireStringBuilder();
+        try {
+            String masked = content;
+            int replacements = 0;
+            for (int i = firstRule; i < rules.length; i++) {
+                if (i < Long.SIZE && (ruleMask & (1L << i)) == 0) {
+                    continue;
+                }
+                Matcher matcher = ruleMatchers[i].reset(masked);
+                if (!matcher.find()) {
+                    continue;
+                }
+                buffer.setLength(0);
+                do {
+                    matcher.appendReplacement(buffer, rules[i].replacement());
+                    replacements++;
+                } while (matcher.find());
+                matcher.appendTail(buffer);
+                masked = buffer.toString();
+            }
+            if (replacements > 0 && metrics != null) {
+                metrics.incrementMaskedFields(replacements);
+            }
+            return masked;
+        } finally {
+            for (Matcher matcher : ruleMatchers) {
+                // Drop the reference to the content so pooled matchers don't retain bodies
+                matcher.reset("");
+            }
+            matchers.release(ruleMatchers);
+            LoggingUtils.releaseStringBuilder(buffer);
+        }
+    }
+
+    private Matcher[] createMatchers() {
+        Matcher[] created = new Matcher[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            created[i] = rules[i].pattern().matcher("");
+        }
+        return created;
+    }
+
+    /**
+     * A compiled pattern and its replacement, which may refer to groups as in {@link Matcher#replaceAll(String)}.
+     *
+     * @param fieldName JSON field the rule targets, or {@code null} if it is a free-form pattern
+     */
+    public record Rule(String fieldName, Pattern pattern, String replacement) {
+
+        /**
+         * Masks the string value of a JSON field with a literal replacement.
+         */
+        public static Rule forField(String fieldName, String replacement) {
+            String quotedName = Pattern.quote("\"" + fieldName + "\"");
+            return new Rule(fieldName,
+                    Pattern.compile(quotedName + "\\s*:\\s*\"(?:[^\"\\\\]|\\\\.)*\""),
+                    Matcher.quoteReplacement("\"" + fieldName + "\":\"" + replacement + "\""));
+        }
+    }
+}
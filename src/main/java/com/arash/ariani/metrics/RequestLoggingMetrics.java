@@ -1,18 +1,42 @@
 package com.arash.ariani.metrics;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 @Component
 public class RequestLoggingMetrics {
     private final Counter totalRequestsCounter;
     private final Counter maskedFieldsCounter;
     private final Timer requestProcessingTimer;
     private final Counter errorCounter;
+    private final Counter prefilterHitCounter;
+    private final Counter prefilterSkipCounter;
+    private final Counter captureDegradedCounter;
+    private final Counter aggregatedCounter;
+    private final Counter liveTailDropCounter;
+    private final Map<String, Counter> pipelineDropCounters = new HashMap<>();
+    private final Map<String, Counter> admissionRejectCounters = new HashMap<>();
+    private final Map<String, Counter> tailDecisionCounters = new HashMap<>();
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final MeterRegistry registry;
+    private volatile double stageSampleRate = 0.1;
 
     public RequestLoggingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
         this.totalRequestsCounter = Counter.builder("request.logger.total")
                 .description("Total number of requests logged")
                 .register(registry);
@@ -28,6 +52,60 @@ public class RequestLoggingMetrics {
         this.errorCounter = Counter.builder("request.logger.errors")
                 .description("Number of errors during request logging")
                 .register(registry);
+
+        this.prefilterHitCounter = Counter.builder("request.logger.masking.prefilter")
+                .description("Bodies scanned by the masking prefilter, by whether masking could be skipped")
+                .tag("result", "hit")
+                .register(registry);
+
+        this.prefilterSkipCounter = Counter.builder("request.logger.masking.prefilter")
+                .description("Bodies scanned by the masking prefilter, by whether masking could be skipped")
+                .tag("result", "skip")
+                .register(registry);
+
+        Gauge.builder("request.logger.masking.prefilter.skip.ratio", this, RequestLoggingMetrics::prefilterSkipRatio)
+                .description("Share of scanned bodies for which masking was skipped entirely")
+                .register(registry);
+
+        this.captureDegradedCounter = Counter.builder("request.logger.capture.degraded")
+                .description("Exchanges logged without bodies because the capture memory budget was exhausted")
+                .register(registry);
+
+        this.aggregatedCounter = Counter.builder("request.logger.aggregated")
+                .description("Duplicate exchanges collapsed into an aggregate record instead of being logged")
+                .register(registry);
+
+        this.liveTailDropCounter = Counter.builder("request.logger.tail.dropped")
+                .description("Exchanges not streamed to a live tail subscriber because it did not keep up")
+                .register(registry);
+
+        for (String reason : new String[] {"newest", "oldest", "timeout", "sampled"}) {
+            pipelineDropCounters.put(reason, Counter.builder("request.logger.pipeline.dropped")
+                    .description("Exchanges dropped by the asynchronous logging pipeline, by backpressure reason")
+                    .tag("reason", reason)
+                    .register(registry));
+        }
+
+        for (String reason : new String[] {"sampled", "route-limit", "global-limit"}) {
+            admissionRejectCounters.put(reason, Counter.builder("request.logger.admission.rejected")
+                    .description("Successful exchanges not logged because of sampling or rate limits, by reason")
+                    .tag("reason", reason)
+                    .register(registry));
+        }
+
+        for (String detail : new String[] {"full", "summary", "none"}) {
+            tailDecisionCounters.put(detail, Counter.builder("request.logger.tail.decisions")
+                    .description("Exchanges by how much of them tail sampling logged")
+                    .tag("detail", detail)
+                    .register(registry));
+        }
+
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("request.logger.stage")
+                    .description("Time the request logging spends per stage, on sampled exchanges")
+                    .tag("stage", stage.getTag())
+                    .register(registry));
+        }
     }
 
     public void incrementTotalRequests() {
@@ -38,6 +116,135 @@ public class RequestLoggingMetrics {
         maskedFieldsCounter.increment();
     }
 
+    public void incrementMaskedFields(int count) {
+        maskedFieldsCounter.increment(count);
+    }
+
+    public void incrementPrefilterHits() {
+        prefilterHitCounter.increment();
+    }
+
+    public void incrementPrefilterSkips() {
+        prefilterSkipCounter.increment();
+    }
+
+    private double prefilterSkipRatio() {
+        double skips = prefilterSkipCounter.count();
+        double total = skips + prefilterHitCounter.count();
+        return total == 0 ? 0 : skips / total;
+    }
+
+    public void incrementCaptureDegraded() {
+        captureDegradedCounter.increment();
+    }
+
+    public void incrementAggregated() {
+        aggregatedCounter.increment();
+    }
+
+    public void incrementLiveTailDrops() {
+        liveTailDropCounter.increment();
+    }
+
+    /**
+     * Reports the bytes currently held by in-flight body captures.
+     */
+    public void registerCaptureMemory(Supplier<Number> reservedBytes) {
+        Gauge.builder("request.logger.capture.memory.used", reservedBytes)
+                .description("Bytes held by in-flight body captures")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * @param reason one of {@code newest}, {@code oldest}, {@code timeout} or {@code sampled}
+     */
+    public void incrementPipelineDrops(String reason) {
+        pipelineDropCounters.get(reason).increment();
+    }
+
+    /**
+     * @param reason one of {@code sampled}, {@code route-limit} or {@code global-limit}
+     */
+    public void incrementAdmissionRejected(String reason) {
+        admissionRejectCounters.get(reason).increment();
+    }
+
+    /**
+     * @param detail one of {@code full}, {@code summary} or {@code none}
+     */
+    public void incrementTailDecisions(String detail) {
+        tailDecisionCounters.get(detail).increment();
+    }
+
+    /**
+     * Reports the number of exchanges waiting in the asynchronous logging pipeline.
+     */
+    public void registerPipelineDepth(Supplier<Number> depth) {
+        Gauge.builder("request.logger.pipeline.depth", depth)
+                .description("Exchanges waiting to be logged by the asynchronous pipeline")
+                .register(registry);
+    }
+
+    /**
+     * Creates the per-route meters, registered in this registry as routes are first seen.
+     *
+     * @param maxRoutes              distinct routes to keep apart before the rest share one
+     * @param serviceLevelObjectives bucket boundaries of the latency histograms
+     */
+    public RouteMetrics routeMetrics(int maxRoutes, List<Duration> serviceLevelObjectives) {
+        return new RouteMetrics(registry, maxRoutes, serviceLevelObjectives);
+    }
+
+    public double getStageSampleRate() {
+        return stageSampleRate;
+    }
+
+    /**
+     * @param stageSampleRate share of exchanges whose stages are timed, from 0 to 1
+     */
+    public void setStageSampleRate(double stageSampleRate) {
+        this.stageSampleRate = stageSampleRate;
+    }
+
+    /**
+     * Decides whether the stages of an exchange are timed. Callers take {@link System#nanoTime()} around
+     * a stage only if this returned {@code true}, so unsampled exchanges pay for neither the clock nor
+     * the timer.
+     */
+    public boolean sampleStages() {
+        double rate = stageSampleRate;
+        return rate >= 1 || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    public void recordStage(Stage stage, long durationNanos) {
+        stageTimers.get(stage).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Count, mean and max of every stage in microseconds, plus the sum of the means: what the request
+     * logging costs a typical exchange.
+     */
+    public Map<String, Object> stageBreakdown() {
+        Map<String, Object> stages = new LinkedHashMap<>();
+        double totalMean = 0;
+        for (Stage stage : Stage.values()) {
+            Timer timer = stageTimers.get(stage);
+            double mean = timer.mean(TimeUnit.MICROSECONDS);
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", timer.count());
+            values.put("meanMicros", mean);
+            values.put("maxMicros", timer.max(TimeUnit.MICROSECONDS));
+            stages.put(stage.getTag(), values);
+            totalMean += mean;
+        }
+        Map<String, Object> breakdown = new LinkedHashMap<>();
+        breakdown.put("sampleRate", stageSampleRate);
+        breakdown.put("stages", stages);
+        breakdown.put("totalMeanMicros", totalMean);
+        return breakdown;
+    }
+
     public Timer.Sample startTimer() {
         return Timer.start();
     }
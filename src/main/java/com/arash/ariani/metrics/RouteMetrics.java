@@ -0,0 +1,113 @@
+package com.arash.ariani.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms and response counts per route, tagged with the mapping template (e.g.
+ * {@code /users/{id}}) rather than the raw URI. The meters of a template are resolved the first time
+ * it is matched and cached by template, so recording never touches the registry, and a handler mapped
+ * to several paths gets meters for each of them. Once {@code maxRoutes} distinct routes have meters,
+ * further templates share the {@value #OTHER_ROUTE} route, which keeps the number of meters bounded.
+ * Requests that carry no template are recorded under {@value #UNKNOWN_ROUTE}.
+ */
+public final class RouteMetrics {
+    public static final String OTHER_ROUTE = "OTHER";
+    static final String UNKNOWN_ROUTE = "UNKNOWN";
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final MeterRegistry registry;
+    private final int maxRoutes;
+    private final Duration[] serviceLevelObjectives;
+    private volatile Map<String, Route> routes = new HashMap<>();
+    private int distinctRoutes;
+    private Route other;
+    private volatile Route unknown;
+
+    RouteMetrics(MeterRegistry registry, int maxRoutes, List<Duration> serviceLevelObjectives) {
+        this.registry = registry;
+        this.maxRoutes = maxRoutes;
+        this.serviceLevelObjectives = serviceLevelObjectives.toArray(new Duration[0]);
+    }
+
+    /**
+     * Meters of the route the request was mapped to.
+     */
+    public Route forRequest(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null) {
+            // Not cached against a template, so a later request that carries one is still told apart
+            Route route = unknown;
+            return route != null ? route : registerUnknown();
+        }
+        String template = pattern.toString();
+        Route route = routes.get(template);
+        return route != null ? route : register(template);
+    }
+
+    private synchronized Route register(String template) {
+        Route route = routes.get(template);
+        if (route != null) {
+            return route;
+        }
+        if (distinctRoutes < maxRoutes) {
+            distinctRoutes++;
+            route = new Route(template);
+        } else {
+            if (other == null) {
+                other = new Route(OTHER_ROUTE);
+            }
+            route = other;
+        }
+        Map<String, Route> updated = new HashMap<>(routes);
+        updated.put(template, route);
+        routes = updated;
+        return route;
+    }
+
+    private synchronized Route registerUnknown() {
+        if (unknown == null) {
+            unknown = new Route(UNKNOWN_ROUTE);
+        }
+        return unknown;
+    }
+
+    public final class Route {
+        private final String name;
+        private final Timer latency;
+        private final Counter[] responses = new Counter[STATUS_CLASSES.length];
+
+        private Route(String name) {
+            this.name = name;
+            this.latency = Timer.builder("request.logger.route.latency")
+                    .description("Latency of requests by route, with service level objective buckets")
+                    .tag("route", name)
+                    .serviceLevelObjectives(serviceLevelObjectives)
+                    .register(registry);
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                responses[i] = Counter.builder("request.logger.route.responses")
+                        .description("Responses by route and status class")
+                        .tag("route", name)
+                        .tag("status", STATUS_CLASSES[i])
+                        .register(registry);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void record(long durationNanos, int status) {
+            latency.record(durationNanos, TimeUnit.NANOSECONDS);
+            responses[Math.min(Math.max(status / 100, 1), STATUS_CLASSES.length) - 1].increment();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.arash.ariani.metrics;
+
+/**
+ * Steps of the logging hot path whose cost is measured separately.
+ */
+public enum Stage {
+    /**
+     * Wrapping the request and response for body capture, and flushing and releasing the capture buffers.
+     */
+    CAPTURE("capture"),
+
+    /**
+     * Extracting headers, parameters and bodies from the servlet request and response.
+     */
+    SNAPSHOT("snapshot"),
+
+    /**
+     * Decoding and masking bodies, parameters and headers into log events.
+     */
+    MASK("mask"),
+
+    /**
+     * Rendering and emitting the events through the sinks.
+     */
+    WRITE("write");
+
+    private final String tag;
+
+    Stage(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
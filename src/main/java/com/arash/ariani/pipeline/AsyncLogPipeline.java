@@ -0,0 +1,242 @@
+package com.arash.ariani.pipeline;
+
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.properties.RequestLoggingProperties.Backpressure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hands exchange snapshots from servlet threads to background workers through a {@link LogRingBuffer},
+ * so that masking, rendering and writing the log no longer add to response latency. When the ring is
+ * full the configured {@link Backpressure} decides what gets dropped; every drop is counted.
+ */
+public class AsyncLogPipeline {
+    private static final Logger log = LoggerFactory.getLogger(AsyncLogPipeline.class);
+
+    static final String DROPPED_NEWEST = "newest";
+    static final String DROPPED_OLDEST = "oldest";
+    static final String DROPPED_TIMEOUT = "timeout";
+    static final String DROPPED_SAMPLED = "sampled";
+
+    private static final int SPINS_BEFORE_PARKING = 64;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final int DROP_OLDEST_ATTEMPTS = 8;
+
+    /**
+     * Most snapshots a worker drains before handing them to the handler as one batch.
+     */
+    static final int MAX_BATCH_SIZE = 64;
+
+    private final LogRingBuffer<ExchangeSnapshot> ring;
+    private final Backpressure backpressure;
+    private final long blockTimeoutNanos;
+    private final double sampleRate;
+    private final Consumer<List<ExchangeSnapshot>> handler;
+    private final RequestLoggingMetrics metrics;
+    private final Thread[] workers;
+    private volatile boolean running;
+
+    /**
+     * @param handler renders and emits a batch of snapshots in the order they were taken; called on the
+     *                worker threads, and the snapshots are recycled once it returns
+     * @param metrics metrics to count drops on, or {@code null} if metrics are unavailable
+     */
+    public AsyncLogPipeline(int capacity, int workerCount, Backpressure backpressure, Duration blockTimeout,
+                            double sampleRate, Consumer<List<ExchangeSnapshot>> handler, RequestLoggingMetrics metrics) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("At least one logging worker is required, got " + workerCount);
+        }
+        this.ring = new LogRingBuffer<>(capacity, ExchangeSnapshot::new);
+        this.backpressure = backpressure;
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.sampleRate = sampleRate;
+        this.handler = handler;
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.registerPipelineDepth(ring::size);
+        }
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::work, "request-log-worker-" + (i + 1));
+            workers[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Starts the workers; until then {@link #claim()} drops every exchange. Called once, by the owner's
+     * lifecycle rather than the constructor, so a pipeline that is never started owns no threads.
+     */
+    public synchronized void start() {
+        if (running || workers[0].getState() != Thread.State.NEW) {
+            return;
+        }
+        running = true;
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Claims a slot for the next snapshot, applying the backpressure policy when the ring is full.
+     *
+     * @return the sequence of the claimed slot, or {@code -1} if the exchange is dropped
+     */
+    public long claim() {
+        if (!running) {
+            return -1;
+        }
+        switch (backpressure) {
+            case DROP_OLDEST:
+                return claimDroppingOldest();
+            case BLOCK:
+                return claimBlocking();
+            case SAMPLE:
+                if (ring.size() >= ring.capacity() / 2 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+                    dropped(DROPPED_SAMPLED);
+                    return -1;
+                }
+                return claimDroppingNewest();
+            default:
+                return claimDroppingNewest();
+        }
+    }
+
+    private long claimDroppingNewest() {
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            dropped(DROPPED_NEWEST);
+        }
+        return sequence;
+    }
+
+    private long claimDroppingOldest() {
+        for (int attempt = 0; attempt < DROP_OLDEST_ATTEMPTS; attempt++) {
+            long sequence = ring.tryClaim();
+            if (sequence >= 0) {
+                return sequence;
+            }
+            long oldest = ring.tryConsume();
+            if (oldest >= 0) {
+                ring.get(oldest).reset();
+                ring.release(oldest);
+                dropped(DROPPED_OLDEST);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        // The oldest entries are all being written or rendered right now
+        dropped(DROPPED_NEWEST);
+        return -1;
+    }
+
+    private long claimBlocking() {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (true) {
+            long sequence = ring.tryClaim();
+            if (sequence >= 0) {
+                return sequence;
+            }
+            if (System.nanoTime() - deadline >= 0 || !running) {
+                dropped(DROPPED_TIMEOUT);
+                return -1;
+            }
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+        }
+    }
+
+    public ExchangeSnapshot get(long sequence) {
+        return ring.get(sequence);
+    }
+
+    public void publish(long sequence) {
+        ring.publish(sequence);
+    }
+
+    private void dropped(String reason) {
+        if (metrics != null) {
+            metrics.incrementPipelineDrops(reason);
+        }
+    }
+
+    private void work() {
+        // Swapped into the ring for each consumed snapshot, so slots are free again while rendering runs
+        ExchangeSnapshot[] spares = new ExchangeSnapshot[MAX_BATCH_SIZE];
+        for (int i = 0; i < spares.length; i++) {
+            spares[i] = new ExchangeSnapshot();
+        }
+        List<ExchangeSnapshot> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        int idle = 0;
+        while (running || ring.size() > 0) {
+            while (batch.size() < MAX_BATCH_SIZE) {
+                long sequence = ring.tryConsume();
+                if (sequence < 0) {
+                    break;
+                }
+                batch.add(ring.exchange(sequence, spares[batch.size()]));
+                ring.release(sequence);
+            }
+            if (batch.isEmpty()) {
+                if (!running) {
+                    // Only slots still being filled remain; their producers see running == false next time
+                    Thread.onSpinWait();
+                } else if (++idle < SPINS_BEFORE_PARKING) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                continue;
+            }
+            idle = 0;
+            try {
+                handler.accept(batch);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to log requests", ex);
+            } finally {
+                for (int i = 0; i < batch.size(); i++) {
+                    ExchangeSnapshot snapshot = batch.get(i);
+                    snapshot.reset();
+                    spares[i] = snapshot;
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting snapshots and waits for the workers to drain what was already queued.
+     */
+    public void shutdown(Duration timeout) {
+        running = false;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Thread worker : workers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                try {
+                    worker.join(TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Approximate number of snapshots waiting to be logged.
+     */
+    public int getDepth() {
+        return ring.size();
+    }
+}
@@ -0,0 +1,268 @@
+package com.arash.ariani.pipeline;
+
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collapses identical exchanges that repeat within a short window, e.g. a client stuck in a retry
+ * loop. The first exchange of a run is logged in full; the ones after it are only counted, and
+ * reported as one {@link Run} when the window closes.
+ *
+ * <p>Exchanges are identified by a 64-bit fingerprint of method, URI, status, error and masked bodies.
+ * Open runs are kept in a concurrent map of at most {@code maxRuns} entries; a background thread
+ * closes expired runs every window, so memory stays flat however many distinct exchanges there are.
+ * While the map is full, new exchanges are simply logged in full.
+ */
+public final class DuplicateAggregator {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long windowNanos;
+    private final int maxRuns;
+    private final Consumer<List<Run>> handler;
+    private final RequestLoggingMetrics metrics;
+    private final Map<Long, Run> runs = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * @param handler receives closed runs that collapsed at least one duplicate, on a background thread
+     * @param metrics metrics to count collapsed exchanges in, or {@code null} if metrics are unavailable
+     */
+    public DuplicateAggregator(Duration window, int maxRuns, Consumer<List<Run>> handler, RequestLoggingMetrics metrics) {
+        this.windowNanos = window.toNanos();
+        this.maxRuns = maxRuns;
+        this.handler = handler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts the background thread that closes expired runs. Until then runs are only closed when a
+     * later exchange finds them expired, or on {@link #shutdown()}.
+     */
+    public synchronized void start() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-log-aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> sweep(false), windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the exchange and tells whether it has to be logged.
+     *
+     * @return {@code true} for the first exchange of a run, {@code false} if it was collapsed into one
+     */
+    public boolean offer(long fingerprint, String method, String uri, int status, String correlationId,
+                         long timestamp, String level, long duration) {
+        long now = System.nanoTime();
+        Run run = runs.get(fingerprint);
+        if (run != null && run.matches(method, uri, status) && run.add(now, duration)) {
+            if (metrics != null) {
+                metrics.incrementAggregated();
+            }
+            return false;
+        }
+        if (run == null && runs.size() >= maxRuns) {
+            return true;
+        }
+        Run started = new Run(now + windowNanos, method, uri, status, correlationId, timestamp, level);
+        if (run == null) {
+            run = runs.putIfAbsent(fingerprint, started);
+            if (run != null && run.matches(method, uri, status) && run.add(now, duration)) {
+                // Another thread started the same run first
+                if (metrics != null) {
+                    metrics.incrementAggregated();
+                }
+                return false;
+            }
+            return true;
+        }
+        if (run.matches(method, uri, status) && runs.replace(fingerprint, run, started)) {
+            // The run expired before the sweeper got to it; close it here so its counts aren't lost
+            close(List.of(run));
+        }
+        return true;
+    }
+
+    /**
+     * Closes every open run and stops the background thread.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (sweeper != null) {
+                sweeper.shutdownNow();
+            }
+        }
+        sweep(true);
+    }
+
+    int getOpenRuns() {
+        return runs.size();
+    }
+
+    void sweep(boolean all) {
+        long now = System.nanoTime();
+        List<Run> closed = new ArrayList<>();
+        for (Iterator<Run> it = runs.values().iterator(); it.hasNext(); ) {
+            Run run = it.next();
+            if (all || now - run.expiresAt >= 0) {
+                it.remove();
+                closed.add(run);
+            }
+        }
+        close(closed);
+    }
+
+    private void close(List<Run> closed) {
+        List<Run> collapsed = new ArrayList<>(closed.size());
+        for (Run run : closed) {
+            if (run.seal() > 0) {
+                collapsed.add(run);
+            }
+        }
+        if (!collapsed.isEmpty()) {
+            handler.accept(collapsed);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the given values; {@code null} values hash like empty ones.
+     */
+    public static long fingerprint(String method, String uri, int status, String error, String requestBody,
+                                   String responseBody) {
+        long hash = FNV_OFFSET;
+        hash = hash(hash, method);
+        hash = hash(hash, uri);
+        hash = (hash ^ status) * FNV_PRIME;
+        hash = hash(hash, error);
+        hash = hash(hash, requestBody);
+        return hash(hash, responseBody);
+    }
+
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Separator, so that ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xFFFF) * FNV_PRIME;
+    }
+
+    /**
+     * Duplicates of one exchange within a window. The first exchange's details are kept to describe
+     * the run; the counts cover only the duplicates after it.
+     */
+    public static final class Run {
+        private final long expiresAt;
+        private final String method;
+        private final String uri;
+        private final int status;
+        private final String correlationId;
+        private final long timestamp;
+        private final String level;
+        private long count;
+        private long minDuration = Long.MAX_VALUE;
+        private long maxDuration = Long.MIN_VALUE;
+        private long timed;
+        private long totalDuration;
+        private boolean sealed;
+
+        Run(long expiresAt, String method, String uri, int status, String correlationId, long timestamp,
+            String level) {
+            this.expiresAt = expiresAt;
+            this.method = method;
+            this.uri = uri;
+            this.status = status;
+            this.correlationId = correlationId;
+            this.timestamp = timestamp;
+            this.level = level;
+        }
+
+        boolean matches(String method, String uri, int status) {
+            return this.status == status && Objects.equals(this.method, method) && Objects.equals(this.uri, uri);
+        }
+
+        /**
+         * Counts a duplicate, unless the run has expired or was already closed.
+         */
+        synchronized boolean add(long now, long duration) {
+            if (sealed || now - expiresAt >= 0) {
+                return false;
+            }
+            count++;
+            if (duration >= 0) {
+                minDuration = Math.min(minDuration, duration);
+                maxDuration = Math.max(maxDuration, duration);
+                totalDuration += duration;
+                timed++;
+            }
+            return true;
+        }
+
+        /**
+         * Stops counting, so that a duplicate racing with the sweep is logged in full instead of lost.
+         */
+        synchronized long seal() {
+            sealed = true;
+            return count;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Correlation id of the first exchange, which was logged in full.
+         */
+        public String getCorrelationId() {
+            return correlationId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getLevel() {
+            return level;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getMinDuration() {
+            return minDuration == Long.MAX_VALUE ? 0 : minDuration;
+        }
+
+        public synchronized long getMaxDuration() {
+            return maxDuration == Long.MIN_VALUE ? 0 : maxDuration;
+        }
+
+        public synchronized long getAvgDuration() {
+            return timed == 0 ? 0 : totalDuration / timed;
+        }
+    }
+}
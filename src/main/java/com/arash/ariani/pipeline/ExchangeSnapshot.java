@@ -0,0 +1,288 @@
+package com.arash.ariani.pipeline;
+
+import com.arash.ariani.event.StackSample;
+import com.arash.ariani.filter.CaptureBuffer;
+import com.arash.ariani.policy.LoggingPolicy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The raw facts of a finished exchange, taken on the servlet thread so that masking and rendering can
+ * happen later, possibly on another thread. Instances are preallocated and reused; {@link #reset()}
+ * clears them but keeps their collections and body arrays for the next exchange.
+ */
+public final class ExchangeSnapshot {
+    public static final long NO_DURATION = -1;
+
+    private LoggingPolicy policy;
+    private long timestamp;
+    private String thread;
+    private String correlationId;
+    private String method;
+    private String uri;
+    private boolean headersCaptured;
+    private final List<String> headerNames = new ArrayList<>();
+    private final List<String> headerValues = new ArrayList<>();
+    private boolean parametersCaptured;
+    private final List<String> parameterNames = new ArrayList<>();
+    private final List<String[]> parameterValues = new ArrayList<>();
+    private final Body requestBody = new Body();
+    private final Body responseBody = new Body();
+    private int status;
+    private boolean failed;
+    private String error;
+    private long duration = NO_DURATION;
+    private boolean summary;
+    private boolean timed;
+    private List<StackSample> stackSamples = List.of();
+
+    public LoggingPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(LoggingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Completion time of the exchange in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Name of the thread that served the exchange.
+     */
+    public String getThread() {
+        return thread;
+    }
+
+    public void setThread(String thread) {
+        this.thread = thread;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public boolean isHeadersCaptured() {
+        return headersCaptured;
+    }
+
+    public void addHeader(String name, String value) {
+        headersCaptured = true;
+        headerNames.add(name);
+        headerValues.add(value);
+    }
+
+    public void markHeadersCaptured() {
+        headersCaptured = true;
+    }
+
+    public List<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    public List<String> getHeaderValues() {
+        return headerValues;
+    }
+
+    public boolean isParametersCaptured() {
+        return parametersCaptured;
+    }
+
+    public void addParameter(String name, String[] values) {
+        parametersCaptured = true;
+        parameterNames.add(name);
+        parameterValues.add(values);
+    }
+
+    public void markParametersCaptured() {
+        parametersCaptured = true;
+    }
+
+    public List<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    public List<String[]> getParameterValues() {
+        return parameterValues;
+    }
+
+    public Body getRequestBody() {
+        return requestBody;
+    }
+
+    public Body getResponseBody() {
+        return responseBody;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Whether the handler completed with an exception.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void setFailed(boolean failed) {
+        this.failed = failed;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Whether only a one-line summary is logged, without headers, parameters or bodies.
+     */
+    public boolean isSummary() {
+        return summary;
+    }
+
+    public void setSummary(boolean summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * Whether the exchange was sampled to have the cost of its logging stages measured.
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * Stacks taken by the {@link SlowRequestWatchdog} while the exchange ran; empty unless it was slow.
+     */
+    public List<StackSample> getStackSamples() {
+        return stackSamples;
+    }
+
+    public void setStackSamples(List<StackSample> stackSamples) {
+        this.stackSamples = stackSamples;
+    }
+
+    public void reset() {
+        policy = null;
+        timestamp = 0;
+        thread = null;
+        correlationId = null;
+        method = null;
+        uri = null;
+        headersCaptured = false;
+        headerNames.clear();
+        headerValues.clear();
+        parametersCaptured = false;
+        parameterNames.clear();
+        parameterValues.clear();
+        requestBody.reset();
+        responseBody.reset();
+        status = 0;
+        failed = false;
+        error = null;
+        duration = NO_DURATION;
+        summary = false;
+        timed = false;
+        stackSamples = List.of();
+    }
+
+    /**
+     * A captured body, either referencing the capture buffer or copied out of it.
+     */
+    public static final class Body {
+        /**
+         * Larger copy arrays are dropped on reset instead of being kept for the next exchange.
+         */
+        private static final int MAX_RETAINED_LENGTH = 64 * 1024;
+
+        private byte[] bytes;
+        private int length;
+        private byte[] owned;
+
+        /**
+         * Takes the captured bytes. With {@code copy} they are copied into an array owned by the
+         * snapshot, so that the capture may be released before the snapshot is rendered.
+         */
+        public void capture(CaptureBuffer capture, boolean copy) {
+            if (capture.isDegraded() || capture.size() == 0) {
+                bytes = null;
+                length = 0;
+                return;
+            }
+            if (!copy) {
+                bytes = capture.array();
+                length = capture.size();
+                return;
+            }
+            if (owned == null || owned.length < capture.size()) {
+                owned = new byte[capture.size()];
+            }
+            length = capture.copyTo(owned);
+            bytes = owned;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        void reset() {
+            bytes = null;
+            length = 0;
+            if (owned != null && owned.length > MAX_RETAINED_LENGTH) {
+                owned = null;
+            }
+        }
+    }
+}
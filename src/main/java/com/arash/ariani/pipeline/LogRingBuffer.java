@@ -0,0 +1,124 @@
+package com.arash.ariani.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Bounded multi-producer multi-consumer ring of preallocated entries (Vyukov's queue). Each slot
+ * carries a sequence number that tells producers and consumers whose turn it is, so claiming a slot is
+ * a single CAS and entries are filled and read in place without any allocation.
+ * <p>
+ * Producers call {@link #tryClaim()}, fill {@link #get(long)} and {@link #publish(long)}; consumers
+ * call {@link #tryConsume()}, read the entry and {@link #release(long)} it.
+ */
+public class LogRingBuffer<T> {
+    private final Object[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public LogRingBuffer(int capacity, Supplier<T> factory) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ring buffer capacity must be positive, got " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.entries = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return the sequence of a free slot now owned by the caller, or {@code -1} if the ring is full
+     */
+    public long tryClaim() {
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get((int) position & mask) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Hands a claimed and filled slot to the consumers.
+     */
+    public void publish(long sequence) {
+        sequences.lazySet((int) sequence & mask, sequence + 1);
+    }
+
+    /**
+     * @return the sequence of the oldest published entry now owned by the caller, or {@code -1} if
+     *         there is none
+     */
+    public long tryConsume() {
+        long position = head.get();
+        while (true) {
+            long difference = sequences.get((int) position & mask) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Frees a consumed slot for the producers.
+     */
+    public void release(long sequence) {
+        sequences.lazySet((int) sequence & mask, sequence + entries.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(long sequence) {
+        return (T) entries[(int) sequence & mask];
+    }
+
+    /**
+     * Swaps the entry of a consumed slot for a spare one, so that the slot can be released before the
+     * entry is processed. Only the owner of the slot may call this.
+     *
+     * @return the entry that was in the slot
+     */
+    @SuppressWarnings("unchecked")
+    public T exchange(long sequence, T replacement) {
+        int index = (int) sequence & mask;
+        T entry = (T) entries[index];
+        entries[index] = replacement;
+        return entry;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Approximate number of claimed entries that have not been released yet.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, entries.length));
+    }
+}
@@ -0,0 +1,143 @@
+package com.arash.ariani.pipeline;
+
+import com.arash.ariani.event.StackSample;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the stacks of exchanges that run longer than a threshold, to show where slow requests spend
+ * their time without attaching a profiler.
+ *
+ * <p>Exchanges register when they start and leave when they complete; that is all a fast exchange pays
+ * for. A background thread walks the registered exchanges every sampling interval and, once one has
+ * been running longer than the threshold, takes the stack of its thread, up to a fixed number of times.
+ * The samples are handed back when the exchange completes, to be logged with it.
+ */
+public final class SlowRequestWatchdog {
+    private final long thresholdNanos;
+    private final long intervalNanos;
+    private final int maxSamples;
+    private final int maxDepth;
+    private final Set<InFlight> inFlight = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService sampler;
+
+    /**
+     * @param threshold  how long an exchange runs before its stack is sampled
+     * @param interval   time between two samples of the same exchange
+     * @param maxSamples samples taken per exchange at most
+     * @param maxDepth   frames kept per sample, innermost first
+     */
+    public SlowRequestWatchdog(Duration threshold, Duration interval, int maxSamples, int maxDepth) {
+        this.thresholdNanos = threshold.toNanos();
+        this.intervalNanos = Math.max(1, interval.toNanos());
+        this.maxSamples = maxSamples;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Starts the background thread that samples slow exchanges; until then exchanges are registered
+     * but never sampled.
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-log-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleWithFixedDelay(this::sample, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts watching the exchange served by the current thread.
+     */
+    public InFlight watch() {
+        InFlight exchange = new InFlight(Thread.currentThread(), System.nanoTime());
+        inFlight.add(exchange);
+        return exchange;
+    }
+
+    /**
+     * Stops watching the exchange.
+     *
+     * @return the samples taken while it ran, oldest first; empty if it was fast
+     */
+    public List<StackSample> finish(InFlight exchange) {
+        inFlight.remove(exchange);
+        return exchange.finish();
+    }
+
+    /**
+     * Stops the background thread; exchanges still running are no longer sampled.
+     */
+    public synchronized void shutdown() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+    }
+
+    int getInFlight() {
+        return inFlight.size();
+    }
+
+    void sample() {
+        long now = System.nanoTime();
+        for (InFlight exchange : inFlight) {
+            if (now - exchange.startNanos >= thresholdNanos) {
+                exchange.sample(now);
+            }
+        }
+    }
+
+    /**
+     * An exchange being watched.
+     */
+    public final class InFlight {
+        private final Thread thread;
+        private final long startNanos;
+        private List<StackSample> samples;
+        private long nextSampleAt;
+        private boolean finished;
+
+        private InFlight(Thread thread, long startNanos) {
+            this.thread = thread;
+            this.startNanos = startNanos;
+        }
+
+        private void sample(long now) {
+            synchronized (this) {
+                if (finished || samples != null && (samples.size() >= maxSamples || now - nextSampleAt < 0)) {
+                    return;
+                }
+            }
+            StackTraceElement[] stack = thread.getStackTrace();
+            synchronized (this) {
+                // The thread may have completed the exchange and moved on while its stack was taken
+                if (finished) {
+                    return;
+                }
+                if (samples == null) {
+                    samples = new ArrayList<>(maxSamples);
+                }
+                boolean truncated = stack.length > maxDepth;
+                samples.add(new StackSample(TimeUnit.NANOSECONDS.toMillis(now - startNanos),
+                        truncated ? Arrays.copyOf(stack, maxDepth) : stack, truncated));
+                nextSampleAt = now + intervalNanos;
+            }
+        }
+
+        private synchronized List<StackSample> finish() {
+            finished = true;
+            return samples != null ? List.copyOf(samples) : List.of();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.arash.ariani.policy;
+
+/**
+ * Whether a finished exchange gets logged, decided before anything of it is copied or masked.
+ */
+public enum Admission {
+    LOGGED(null),
+
+    /**
+     * Left out by the route's sample rate
+     */
+    SAMPLED_OUT("sampled"),
+
+    /**
+     * Over the route's rate limit
+     */
+    ROUTE_LIMITED("route-limit"),
+
+    /**
+     * Over the rate limit shared by all routes
+     */
+    GLOBAL_LIMITED("global-limit");
+
+    private final String reason;
+
+    Admission(String reason) {
+        this.reason = reason;
+    }
+
+    public boolean isLogged() {
+        return this == LOGGED;
+    }
+
+    /**
+     * Tag value the rejection is counted under, {@code null} for {@link #LOGGED}.
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,43 @@
+package com.arash.ariani.policy;
+
+/**
+ * Which bodies of an exchange have to be cached so that they can be logged after the handler ran.
+ */
+public enum BodyCapture {
+    NONE(false, false),
+    REQUEST(true, false),
+    RESPONSE(false, true),
+    BOTH(true, true);
+
+    private final boolean request;
+    private final boolean response;
+
+    BodyCapture(boolean request, boolean response) {
+        this.request = request;
+        this.response = response;
+    }
+
+    static BodyCapture of(boolean request, boolean response) {
+        if (request) {
+            return response ? BOTH : REQUEST;
+        }
+        return response ? RESPONSE : NONE;
+    }
+
+    static BodyCapture of(LoggingPolicy policy) {
+        return of(policy.isEnabled() && policy.isIncludeRequestBody(),
+                policy.isEnabled() && policy.isIncludeResponseBody());
+    }
+
+    BodyCapture union(BodyCapture other) {
+        return of(request || other.request, response || other.response);
+    }
+
+    public boolean capturesRequest() {
+        return request;
+    }
+
+    public boolean capturesResponse() {
+        return response;
+    }
+}
@@ -0,0 +1,173 @@
+package com.arash.ariani.policy;
+
+import com.arash.ariani.annotation.LogRequest;
+import com.arash.ariani.masking.Masker;
+import com.arash.ariani.masking.MaskingEngine;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * What to log for one handler, resolved once from its {@link LogRequest} annotation (method
+ * first, then type) and the global properties, so that no per-request decision has to consult
+ * either again.
+ */
+public final class LoggingPolicy {
+
+    /**
+     * Policy of handlers that are not logged at all.
+     */
+    public static final LoggingPolicy DISABLED = new LoggingPolicy(false, null, false, false, false, false, false,
+            Collections.emptySet(), 0, Masker.NONE, 1.0, null);
+
+    private final boolean enabled;
+    private final LogRequest annotation;
+    private final boolean includeHeaders;
+    private final boolean includeParameters;
+    private final boolean includeRequestBody;
+    private final boolean includeResponseBody;
+    private final boolean includeTiming;
+    private final Set<String> excludedHeaders;
+    private final int maxBodyLength;
+    private final Masker masker;
+    private final double sampleRate;
+
+    /**
+     * Rate limit of this handler, or {@code null} if it has none.
+     */
+    private final TokenBucket rateLimiter;
+
+    private LoggingPolicy(boolean enabled, LogRequest annotation, boolean includeHeaders, boolean includeParameters,
+                          boolean includeRequestBody, boolean includeResponseBody, boolean includeTiming,
+                          Set<String> excludedHeaders, int maxBodyLength, Masker masker, double sampleRate,
+                          TokenBucket rateLimiter) {
+        this.enabled = enabled;
+        this.annotation = annotation;
+        this.includeHeaders = includeHeaders;
+        this.includeParameters = includeParameters;
+        this.includeRequestBody = includeRequestBody;
+        this.includeResponseBody = includeResponseBody;
+        this.includeTiming = includeTiming;
+        this.excludedHeaders = excludedHeaders;
+        this.maxBodyLength = maxBodyLength;
+        this.masker = masker;
+        this.sampleRate = sampleRate;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Resolves the policy of a handler; annotation attributes take precedence over the properties.
+     *
+     * @param annotation the handler's annotation, or {@code null} if it has none
+     */
+    public static LoggingPolicy resolve(LogRequest annotation, RequestLoggingProperties properties,
+                                        MaskingEngine maskingEngine) {
+        if (annotation == null && !properties.isEnabled()) {
+            return DISABLED;
+        }
+        if (annotation == null) {
+            return new LoggingPolicy(true, null,
+                    properties.isIncludeHeaders(),
+                    properties.isIncludeParameters(),
+                    properties.isIncludeRequestBody(),
+                    properties.isIncludeResponseBody(),
+                    properties.isIncludeTiming(),
+                    headerSet(properties.getExcludeHeaders()),
+                    properties.getMaxBodyLength(),
+                    maskingEngine.globalMasker(),
+                    properties.getSampleRate(),
+                    rateLimiter(properties.getRouteRateLimit()));
+        }
+        return new LoggingPolicy(true, annotation,
+                annotation.includeHeaders(),
+                annotation.includeParameters(),
+                annotation.includeRequestBody(),
+                annotation.includeResponseBody(),
+                annotation.includeTiming(),
+                annotation.excludeHeaders().length > 0
+                        ? headerSet(Arrays.asList(annotation.excludeHeaders()))
+                        : headerSet(properties.getExcludeHeaders()),
+                annotation.maxBodyLength(),
+                maskingEngine.maskerFor(annotation),
+                annotation.sampleRate() >= 0 ? annotation.sampleRate() : properties.getSampleRate(),
+                rateLimiter(annotation.rateLimit() >= 0 ? annotation.rateLimit() : properties.getRouteRateLimit()));
+    }
+
+    private static TokenBucket rateLimiter(double permitsPerSecond) {
+        return permitsPerSecond > 0 ? new TokenBucket(permitsPerSecond) : null;
+    }
+
+    /**
+     * Header names are case-insensitive, and containers differ in the case they report them in.
+     */
+    private static Set<String> headerSet(Collection<String> headers) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(headers);
+        return Collections.unmodifiableSet(set);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The annotation the policy was resolved from, or {@code null} if it comes from the properties only.
+     */
+    public LogRequest getAnnotation() {
+        return annotation;
+    }
+
+    public boolean isIncludeHeaders() {
+        return includeHeaders;
+    }
+
+    public boolean isIncludeParameters() {
+        return includeParameters;
+    }
+
+    public boolean isIncludeRequestBody() {
+        return includeRequestBody;
+    }
+
+    public boolean isIncludeResponseBody() {
+        return includeResponseBody;
+    }
+
+    public boolean isIncludeTiming() {
+        return includeTiming;
+    }
+
+    public boolean isExcludedHeader(String header) {
+        return excludedHeaders.contains(header);
+    }
+
+    public int getMaxBodyLength() {
+        return maxBodyLength;
+    }
+
+    public Masker getMasker() {
+        return masker;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Samples the exchange and takes a token from the handler's rate limit, in that order, so that
+     * sampled-out exchanges don't use up the limit.
+     */
+    Admission admit() {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return Admission.SAMPLED_OUT;
+        }
+        if (rateLimiter != null && !rateLimiter.tryAcquire()) {
+            return Admission.ROUTE_LIMITED;
+        }
+        return Admission.LOGGED;
+    }
+}
@@ -0,0 +1,164 @@
+package com.arash.ariani.policy;
+
+import com.arash.ariani.annotation.LogRequest;
+import com.arash.ariani.masking.MaskingEngine;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the {@link LoggingPolicy} of every handler method, keyed by the identity of its
+ * {@link Method}. Policies of all request mappings are precomputed when the context is refreshed,
+ * so the per-request decision is a single identity lookup. The cache is copy-on-write: reads are
+ * lock-free and handlers first seen at runtime are added by publishing a new map.
+ * <p>
+ * The same refresh also builds a {@link RouteTable}, which lets the logging filter decide from the
+ * request path alone whether any body needs to be cached.
+ */
+public class LoggingPolicyResolver implements ApplicationListener<ContextRefreshedEvent> {
+    private final RequestLoggingProperties properties;
+    private final MaskingEngine maskingEngine;
+    private volatile Map<Method, LoggingPolicy> policies = new IdentityHashMap<>();
+
+    /**
+     * Bean type of every handler seen so far, to re-resolve type-level annotations on invalidation.
+     */
+    private final Map<Method, Class<?>> beanTypes = new IdentityHashMap<>();
+
+    private Map<RequestMappingInfo, Method> routes = Collections.emptyMap();
+    private volatile RouteTable routeTable = RouteTable.CAPTURE_ALL;
+
+    /**
+     * Rate limit shared by all handlers, or {@code null} if there is none.
+     */
+    private volatile TokenBucket globalRateLimiter;
+
+    public LoggingPolicyResolver(RequestLoggingProperties properties, MaskingEngine maskingEngine) {
+        this.properties = properties;
+        this.maskingEngine = maskingEngine;
+        this.globalRateLimiter = globalRateLimiter(properties);
+    }
+
+    public MaskingEngine getMaskingEngine() {
+        return maskingEngine;
+    }
+
+    public LoggingPolicy resolve(HandlerMethod handlerMethod) {
+        LoggingPolicy policy = policies.get(handlerMethod.getMethod());
+        return policy != null ? policy : register(handlerMethod);
+    }
+
+    /**
+     * Decides whether a finished exchange is logged: errors always are, everything else has to pass
+     * the handler's sampling and rate limit and then the global rate limit. Lock-free, and cheap
+     * enough to run before any part of the exchange is copied.
+     *
+     * @param error whether the exchange failed with an exception or a server error status
+     */
+    public Admission admit(LoggingPolicy policy, boolean error) {
+        if (error) {
+            return Admission.LOGGED;
+        }
+        Admission admission = policy.admit();
+        if (!admission.isLogged()) {
+            return admission;
+        }
+        TokenBucket limiter = globalRateLimiter;
+        if (limiter != null && !limiter.tryAcquire()) {
+            return Admission.GLOBAL_LIMITED;
+        }
+        return Admission.LOGGED;
+    }
+
+    /**
+     * Which bodies the handler mapped to this request will log. Until the request mappings are
+     * known, all bodies are captured.
+     */
+    public BodyCapture bodyCaptureFor(HttpServletRequest request) {
+        return routeTable.match(request);
+    }
+
+    /**
+     * How many bytes of a body to capture so that every policy can log as much as it is configured to.
+     */
+    public int getCaptureLimit() {
+        return Math.max(routeTable.getMaxBodyLength(), properties.getMaxBodyLength());
+    }
+
+    /**
+     * Drops all resolved policies and recomputes them from the current configuration. Call this
+     * after the properties or masking patterns were changed at runtime.
+     */
+    public synchronized void invalidate() {
+        maskingEngine.invalidate();
+        globalRateLimiter = globalRateLimiter(properties);
+        policies = new IdentityHashMap<>();
+        registerAll(new IdentityHashMap<>(beanTypes));
+        routeTable = buildRouteTable(routes);
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        Map<Method, Class<?>> handlers = new IdentityHashMap<>();
+        Map<RequestMappingInfo, Method> mappedRoutes = new LinkedHashMap<>();
+        for (RequestMappingHandlerMapping mapping
+                : event.getApplicationContext().getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+            mapping.getHandlerMethods().forEach((info, handlerMethod) -> {
+                handlers.put(handlerMethod.getMethod(), handlerMethod.getBeanType());
+                mappedRoutes.put(info, handlerMethod.getMethod());
+            });
+        }
+        synchronized (this) {
+            registerAll(handlers);
+            routes = mappedRoutes;
+            routeTable = buildRouteTable(mappedRoutes);
+        }
+    }
+
+    private static TokenBucket globalRateLimiter(RequestLoggingProperties properties) {
+        return properties.getRateLimit() > 0 ? new TokenBucket(properties.getRateLimit()) : null;
+    }
+
+    private RouteTable buildRouteTable(Map<RequestMappingInfo, Method> mappedRoutes) {
+        Map<Method, LoggingPolicy> current = policies;
+        Map<RequestMappingInfo, LoggingPolicy> routePolicies = new LinkedHashMap<>();
+        mappedRoutes.forEach((info, method) -> routePolicies.put(info, current.get(method)));
+        return RouteTable.build(routePolicies);
+    }
+
+    private synchronized LoggingPolicy register(HandlerMethod handlerMethod) {
+        LoggingPolicy policy = policies.get(handlerMethod.getMethod());
+        if (policy != null) {
+            return policy;
+        }
+        registerAll(Map.of(handlerMethod.getMethod(), handlerMethod.getBeanType()));
+        return policies.get(handlerMethod.getMethod());
+    }
+
+    private synchronized void registerAll(Map<Method, Class<?>> handlers) {
+        Map<Method, LoggingPolicy> updated = new IdentityHashMap<>(policies);
+        handlers.forEach((method, beanType) -> {
+            beanTypes.put(method, beanType);
+            updated.put(method, resolvePolicy(method, beanType));
+        });
+        policies = updated;
+    }
+
+    private LoggingPolicy resolvePolicy(Method method, Class<?> beanType) {
+        LogRequest annotation = AnnotationUtils.findAnnotation(method, LogRequest.class);
+        if (annotation == null) {
+            annotation = AnnotationUtils.findAnnotation(beanType, LogRequest.class);
+        }
+        return LoggingPolicy.resolve(annotation, properties, maskingEngine);
+    }
+}
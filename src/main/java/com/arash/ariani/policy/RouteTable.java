@@ -0,0 +1,125 @@
+package com.arash.ariani.policy;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.RequestPath;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.util.ServletRequestPathUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import org.springframework.web.util.pattern.PatternParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Path patterns of the request mappings whose policy logs a body, matched before the request
+ * reaches the dispatcher. Only routes that need a body are kept, so paths served by other handler
+ * mappings, such as static resources or actuator endpoints, match nothing. Mappings whose patterns
+ * cannot be matched up front apply to every request, which errs on the side of capturing.
+ */
+final class RouteTable {
+
+    /**
+     * Used until the request mappings are known: every body is captured, as before route resolution.
+     */
+    static final RouteTable CAPTURE_ALL = new RouteTable(new PathPattern[0], new BodyCapture[0], BodyCapture.BOTH, 0);
+
+    private final PathPattern[] patterns;
+    private final BodyCapture[] captures;
+    private final BodyCapture unconditional;
+    private final int maxBodyLength;
+
+    private RouteTable(PathPattern[] patterns, BodyCapture[] captures, BodyCapture unconditional, int maxBodyLength) {
+        this.patterns = patterns;
+        this.captures = captures;
+        this.unconditional = unconditional;
+        this.maxBodyLength = maxBodyLength;
+    }
+
+    static RouteTable build(Map<RequestMappingInfo, LoggingPolicy> routes) {
+        List<PathPattern> patterns = new ArrayList<>();
+        List<BodyCapture> captures = new ArrayList<>();
+        BodyCapture unconditional = BodyCapture.NONE;
+        int maxBodyLength = 0;
+
+        for (Map.Entry<RequestMappingInfo, LoggingPolicy> route : routes.entrySet()) {
+            BodyCapture capture = BodyCapture.of(route.getValue());
+            if (capture == BodyCapture.NONE) {
+                continue;
+            }
+            maxBodyLength = Math.max(maxBodyLength, route.getValue().getMaxBodyLength());
+            List<PathPattern> parsed = parsePatterns(route.getKey());
+            if (parsed == null) {
+                unconditional = unconditional.union(capture);
+                continue;
+            }
+            for (PathPattern pattern : parsed) {
+                patterns.add(pattern);
+                captures.add(capture);
+            }
+        }
+        return new RouteTable(patterns.toArray(new PathPattern[0]), captures.toArray(new BodyCapture[0]),
+                unconditional, maxBodyLength);
+    }
+
+    /**
+     * The largest body length logged by any route that captures a body.
+     */
+    int getMaxBodyLength() {
+        return maxBodyLength;
+    }
+
+    /**
+     * @return the parsed patterns, or {@code null} if the mapping has to be treated as matching any path
+     */
+    private static List<PathPattern> parsePatterns(RequestMappingInfo info) {
+        if (info.getPathPatternsCondition() != null) {
+            List<PathPattern> parsed = new ArrayList<>(info.getPathPatternsCondition().getPatterns());
+            return parsed.isEmpty() ? null : parsed;
+        }
+        // Mappings matched with AntPathMatcher; most of their patterns are valid path patterns too.
+        List<PathPattern> parsed = new ArrayList<>();
+        for (String value : info.getPatternValues()) {
+            try {
+                parsed.add(PathPatternParser.defaultInstance.parse(value));
+            } catch (PatternParseException ex) {
+                return null;
+            }
+        }
+        return parsed.isEmpty() ? null : parsed;
+    }
+
+    BodyCapture match(HttpServletRequest request) {
+        BodyCapture capture = unconditional;
+        if (capture == BodyCapture.BOTH || patterns.length == 0) {
+            return capture;
+        }
+        PathContainer path = lookupPath(request);
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].matches(path)) {
+                capture = capture.union(captures[i]);
+                if (capture == BodyCapture.BOTH) {
+                    break;
+                }
+            }
+        }
+        return capture;
+    }
+
+    /**
+     * The path the dispatcher matches its mappings against: without the context path and, when the
+     * dispatcher is mapped to a path prefix such as {@code /api/*}, without that prefix either. The path
+     * is parsed the way the dispatcher will parse it, but not left cached on the request.
+     */
+    private static PathContainer lookupPath(HttpServletRequest request) {
+        RequestPath previous = ServletRequestPathUtils.hasParsedRequestPath(request)
+                ? ServletRequestPathUtils.getParsedRequestPath(request)
+                : null;
+        try {
+            return ServletRequestPathUtils.parseAndCache(request).pathWithinApplication();
+        } finally {
+            ServletRequestPathUtils.setParsedRequestPath(previous, request);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.arash.ariani.policy;
+
+import com.arash.ariani.properties.RequestLoggingProperties;
+import com.arash.ariani.properties.RequestLoggingProperties.TailDetail;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides after completion how much of an exchange to log. Failed and slow exchanges are logged in
+ * full; all others at the configured baseline, typically a one-line summary, so that normal traffic
+ * is never masked or rendered.
+ *
+ * <p>An exchange is slow if it took longer than the fixed threshold, or than the configured
+ * percentile of recent durations. Durations are counted in a log-linear histogram of atomic
+ * counters (four buckets per power of two, so within 25%). Every {@link #WINDOW} the percentile
+ * is recomputed from the histogram, which then starts over; until a window with enough
+ * exchanges has passed, only the fixed threshold applies.
+ */
+public final class TailSampler {
+    static final Duration WINDOW = Duration.ofSeconds(30);
+    static final int MIN_SAMPLES = 100;
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final boolean enabled;
+    private final TailDetail baseline;
+    private final long slowThresholdMillis;
+    private final double slowPercentile;
+    private final long windowNanos;
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLong windowEnd;
+    private volatile long percentileThresholdMillis = Long.MAX_VALUE;
+
+    public TailSampler(RequestLoggingProperties properties) {
+        this(properties.isTailSampling(), properties.getTailSamplingLevel(), properties.getTailSamplingSlowThreshold(),
+                properties.getTailSamplingSlowPercentile(), WINDOW);
+    }
+
+    TailSampler(boolean enabled, TailDetail baseline, Duration slowThreshold, double slowPercentile, Duration window) {
+        this.enabled = enabled;
+        this.baseline = baseline;
+        this.slowThresholdMillis = slowThreshold != null && !slowThreshold.isZero()
+                ? slowThreshold.toMillis() : Long.MAX_VALUE;
+        this.slowPercentile = slowPercentile;
+        this.windowNanos = window.toNanos();
+        this.windowEnd = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param error    whether the exchange failed with an exception or a server error status
+     * @param duration how long the exchange took in milliseconds, negative if unknown
+     */
+    public TailDetail decide(boolean error, long duration) {
+        if (!enabled) {
+            return TailDetail.FULL;
+        }
+        if (duration >= 0 && slowPercentile > 0) {
+            record(duration);
+        }
+        if (error || duration > slowThresholdMillis || duration > percentileThresholdMillis) {
+            return TailDetail.FULL;
+        }
+        return baseline;
+    }
+
+    /**
+     * Duration above which exchanges count as slow by percentile, {@link Long#MAX_VALUE} while unknown.
+     */
+    public long getPercentileThresholdMillis() {
+        return percentileThresholdMillis;
+    }
+
+    private void record(long duration) {
+        histogram.incrementAndGet(bucket(duration));
+        long end = windowEnd.get();
+        long now = System.nanoTime();
+        if (now - end >= 0 && windowEnd.compareAndSet(end, now + windowNanos)) {
+            rotate();
+        }
+    }
+
+    /**
+     * Recomputes the percentile threshold from the window that just ended and clears the histogram.
+     * Only the thread that won the window's CAS gets here; counts racing with the clear are lost,
+     * which the estimate tolerates.
+     */
+    private void rotate() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.getAndSet(i, 0);
+            total += counts[i];
+        }
+        if (total < MIN_SAMPLES) {
+            return;
+        }
+        long rank = (long) Math.ceil(slowPercentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                percentileThresholdMillis = upperBound(i);
+                return;
+            }
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        int mantissa = (int) (value >>> (exponent - 1)) & (SUB_BUCKETS - 1);
+        return exponent * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * Largest value that falls into the bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS;
+        long mantissa = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + mantissa + 1) << (exponent - 1)) - 1;
+    }
+}
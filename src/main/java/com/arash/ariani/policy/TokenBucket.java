@@ -0,0 +1,69 @@
+package com.arash.ariani.policy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free token bucket that refills at a fixed rate and holds up to one second's worth of tokens.
+ *
+ * <p>Each bucket is tracked as the time at which it will be full again (the generic cell rate
+ * algorithm), so taking a token is a single compare-and-set on a {@code long}. To keep request
+ * threads from contending on that one word, the rate is split over a few padded stripes and each
+ * thread draws from the stripe its id maps to. The total rate is kept, at the cost of a thread
+ * occasionally being refused while another stripe still has tokens.
+ */
+public final class TokenBucket {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * Longs between two stripes, so that each sits on its own cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final double permitsPerSecond;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int mask;
+    private final AtomicLongArray fullAt;
+
+    /**
+     * @param permitsPerSecond tokens added per second, which is also the bucket's capacity
+     */
+    public TokenBucket(double permitsPerSecond) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("Token bucket rate must be positive: " + permitsPerSecond);
+        }
+        int stripes = Integer.highestOneBit((int) Math.max(1, Math.min(
+                Runtime.getRuntime().availableProcessors(), permitsPerSecond)));
+        this.permitsPerSecond = permitsPerSecond;
+        this.intervalNanos = (long) (stripes * NANOS_PER_SECOND / permitsPerSecond);
+        this.burstNanos = Math.max(0, NANOS_PER_SECOND - intervalNanos);
+        this.mask = stripes - 1;
+        this.fullAt = new AtomicLongArray(stripes * PADDING);
+        long now = System.nanoTime();
+        for (int i = 0; i < stripes; i++) {
+            fullAt.set(i * PADDING, now);
+        }
+    }
+
+    /**
+     * Takes a token if one is available, never blocking.
+     */
+    public boolean tryAcquire() {
+        int index = ((int) Thread.currentThread().getId() & mask) * PADDING;
+        long now = System.nanoTime();
+        while (true) {
+            long current = fullAt.get(index);
+            long base = current - now > 0 ? current : now;
+            if (base - now > burstNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(index, current, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+}
@@ -1,6 +1,7 @@
 package com.arash.ariani.properties;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -61,6 +62,260 @@ public class RequestLoggingProperties {
      */
     private String maskFields = "";
 
+    /**
+     * Whether to hand log events to the logging backend unrendered, so that an encoder such as
+     * {@code com.arash.ariani.logback.RequestLogEncoder} renders them straight into its output.
+     * Events are recycled once the logging call returns, so the encoder must not sit behind an
+     * asynchronous appender.
+     */
+    private boolean deferredRendering = false;
+
+    /**
+     * Whether to emit one combined record per exchange instead of separate request and response records.
+     * Always the case for the JSON format.
+     */
+    private boolean exchangeMode = false;
+
+    /**
+     * Output format of the request logs
+     */
+    private Format format = Format.TEXT;
+
+    /**
+     * Whether JSON output embeds bodies that are valid JSON as nested objects instead of escaped strings
+     */
+    private boolean jsonRawBody = false;
+
+    /**
+     * Size of the pooled chunks captured bodies are kept in, in bytes
+     */
+    private int captureChunkSize = 4 * 1024;
+
+    /**
+     * Whether capture chunks are allocated outside of the heap
+     */
+    private boolean captureDirectBuffers = false;
+
+    /**
+     * Most bytes all in-flight body captures may hold together; exchanges beyond it are logged without bodies
+     */
+    private long captureMemoryBudget = 32L * 1024 * 1024;
+
+    /**
+     * Whether exchanges are masked, rendered and written by background workers instead of the servlet thread
+     */
+    private boolean asyncLogging = false;
+
+    /**
+     * Number of exchanges the asynchronous pipeline can hold, rounded up to a power of two
+     */
+    private int asyncBufferSize = 1024;
+
+    /**
+     * Number of background workers of the asynchronous pipeline
+     */
+    private int asyncWorkers = 1;
+
+    /**
+     * What the asynchronous pipeline does with exchanges when it is full
+     */
+    private Backpressure asyncBackpressure = Backpressure.DROP_NEWEST;
+
+    /**
+     * How long a request waits for room in the asynchronous pipeline with {@code BLOCK} backpressure
+     */
+    private Duration asyncBlockTimeout = Duration.ofMillis(10);
+
+    /**
+     * Share of exchanges kept once the asynchronous pipeline is half full with {@code SAMPLE} backpressure
+     */
+    private double asyncSampleRate = 0.1;
+
+    /**
+     * File the request logs are appended to instead of the application log; unset to log through SLF4J
+     */
+    private String filePath;
+
+    /**
+     * Size at which the log file is rolled over to {@code <file-path>.<n>}
+     */
+    private long fileMaxSegmentSize = 64L * 1024 * 1024;
+
+    /**
+     * Number of rolled-over segments kept next to the active file
+     */
+    private int fileMaxSegments = 10;
+
+    /**
+     * Pending records that make the file sink write them out as one group
+     */
+    private int fileFlushRecords = 256;
+
+    /**
+     * Longest time a record waits in the file sink before it is written; zero writes only by record count
+     */
+    private Duration fileFlushInterval = Duration.ofMillis(200);
+
+    /**
+     * When the file sink forces written records to disk
+     */
+    private Fsync fileFsync = Fsync.NEVER;
+
+    /**
+     * Size of the direct buffer the file sink groups records in
+     */
+    private int fileBufferSize = 256 * 1024;
+
+    /**
+     * Memory-mapped file keeping a summary of the last exchanges for after a crash; unset to disable
+     */
+    private String crashRingPath;
+
+    /**
+     * Number of exchanges the crash ring keeps
+     */
+    private int crashRingSlots = 1024;
+
+    /**
+     * Bytes per exchange in the crash ring; bodies are truncated to what is left after the URI
+     */
+    private int crashRingSlotSize = 2048;
+
+    /**
+     * Last exchanges kept in memory for the actuator endpoint; 0 keeps none
+     */
+    private int recentExchanges = 0;
+
+    /**
+     * Characters kept of the headers, the parameters and each body of a recent exchange
+     */
+    private int recentExchangesMaxFieldLength = 2048;
+
+    /**
+     * Whether logged exchanges can be streamed live as Server-Sent Events from {@link #liveTailPath}
+     */
+    private boolean liveTail = false;
+
+    /**
+     * Path of the live tail stream
+     */
+    private String liveTailPath = "/request-logging/tail";
+
+    /**
+     * Clients that may stream at once; further ones are refused
+     */
+    private int liveTailMaxSubscribers = 4;
+
+    /**
+     * Exchanges buffered per live tail client; while its buffer is full, exchanges are dropped for that client
+     */
+    private int liveTailQueueSize = 1000;
+
+    /**
+     * Characters streamed of the headers, the parameters and each body of an exchange
+     */
+    private int liveTailMaxFieldLength = 2048;
+
+    /**
+     * Request headers never streamed by the live tail, whatever {@link #excludeHeaders} logs
+     */
+    private List<String> liveTailExcludeHeaders = new ArrayList<>(
+            List.of("Authorization", "Proxy-Authorization", "Cookie", "Set-Cookie"));
+
+    /**
+     * Whether the stacks of slow exchanges are sampled while they run and logged with their response
+     */
+    private boolean slowRequestWatchdog = false;
+
+    /**
+     * Duration after which a running exchange counts as slow and its stack is sampled
+     */
+    private Duration slowRequestThreshold = Duration.ofSeconds(1);
+
+    /**
+     * Stack samples taken per slow exchange at most
+     */
+    private int slowRequestSamples = 5;
+
+    /**
+     * Time between two stack samples of the same exchange
+     */
+    private Duration slowRequestSampleInterval = Duration.ofMillis(200);
+
+    /**
+     * Frames kept per stack sample, innermost first
+     */
+    private int slowRequestMaxDepth = 32;
+
+    /**
+     * Share of successful exchanges to log per handler, between 0 and 1; failed exchanges are always logged
+     */
+    private double sampleRate = 1.0;
+
+    /**
+     * Most successful exchanges to log per second and handler; zero for no limit
+     */
+    private double routeRateLimit = 0;
+
+    /**
+     * Most successful exchanges to log per second across all handlers; zero for no limit
+     */
+    private double rateLimit = 0;
+
+    /**
+     * Whether to decide after completion how much of each exchange to log: failed and slow exchanges
+     * in full, all others at {@code tail-sampling-level}
+     */
+    private boolean tailSampling = false;
+
+    /**
+     * What to log of fast, successful exchanges with tail sampling
+     */
+    private TailDetail tailSamplingLevel = TailDetail.SUMMARY;
+
+    /**
+     * Duration above which an exchange is logged in full with tail sampling; zero to rely on the percentile only
+     */
+    private Duration tailSamplingSlowThreshold = Duration.ofSeconds(1);
+
+    /**
+     * Percentile of recent durations above which an exchange is logged in full with tail sampling,
+     * e.g. 0.99; zero to rely on the fixed threshold only
+     */
+    private double tailSamplingSlowPercentile = 0.99;
+
+    /**
+     * Whether to collapse identical exchanges repeated within the aggregation window into one record
+     */
+    private boolean aggregateDuplicates = false;
+
+    /**
+     * How long a run of identical exchanges is collected before its aggregate record is written
+     */
+    private Duration aggregationWindow = Duration.ofSeconds(1);
+
+    /**
+     * Most distinct exchanges tracked at once; beyond that, new exchanges are logged without aggregation
+     */
+    private int aggregationMaxEntries = 10_000;
+
+    /**
+     * Distinct routes with their own latency and response meters; further routes share the route {@code OTHER}
+     */
+    private int metricsMaxRoutes = 100;
+
+    /**
+     * Bucket boundaries of the per-route latency histograms
+     */
+    private List<Duration> metricsSloBuckets = new ArrayList<>(List.of(Duration.ofMillis(50), Duration.ofMillis(100),
+            Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2500),
+            Duration.ofSeconds(5)));
+
+    /**
+     * Share of exchanges, from 0 to 1, for which the time spent in each stage of the logging is measured
+     */
+    private double metricsStageSampleRate = 0.1;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -149,6 +404,466 @@ public class RequestLoggingProperties {
         this.maskFields = maskFields;
     }
 
+    public boolean isDeferredRendering() {
+        return deferredRendering;
+    }
+
+    public void setDeferredRendering(boolean deferredRendering) {
+        this.deferredRendering = deferredRendering;
+    }
+
+    public boolean isExchangeMode() {
+        return exchangeMode;
+    }
+
+    public void setExchangeMode(boolean exchangeMode) {
+        this.exchangeMode = exchangeMode;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public boolean isJsonRawBody() {
+        return jsonRawBody;
+    }
+
+    public void setJsonRawBody(boolean jsonRawBody) {
+        this.jsonRawBody = jsonRawBody;
+    }
+
+    public int getCaptureChunkSize() {
+        return captureChunkSize;
+    }
+
+    public void setCaptureChunkSize(int captureChunkSize) {
+        this.captureChunkSize = captureChunkSize;
+    }
+
+    public boolean isCaptureDirectBuffers() {
+        return captureDirectBuffers;
+    }
+
+    public void setCaptureDirectBuffers(boolean captureDirectBuffers) {
+        this.captureDirectBuffers = captureDirectBuffers;
+    }
+
+    public long getCaptureMemoryBudget() {
+        return captureMemoryBudget;
+    }
+
+    public void setCaptureMemoryBudget(long captureMemoryBudget) {
+        this.captureMemoryBudget = captureMemoryBudget;
+    }
+
+    public boolean isAsyncLogging() {
+        return asyncLogging;
+    }
+
+    public void setAsyncLogging(boolean asyncLogging) {
+        this.asyncLogging = asyncLogging;
+    }
+
+    public int getAsyncBufferSize() {
+        return asyncBufferSize;
+    }
+
+    public void setAsyncBufferSize(int asyncBufferSize) {
+        this.asyncBufferSize = asyncBufferSize;
+    }
+
+    public int getAsyncWorkers() {
+        return asyncWorkers;
+    }
+
+    public void setAsyncWorkers(int asyncWorkers) {
+        this.asyncWorkers = asyncWorkers;
+    }
+
+    public Backpressure getAsyncBackpressure() {
+        return asyncBackpressure;
+    }
+
+    public void setAsyncBackpressure(Backpressure asyncBackpressure) {
+        this.asyncBackpressure = asyncBackpressure;
+    }
+
+    public Duration getAsyncBlockTimeout() {
+        return asyncBlockTimeout;
+    }
+
+    public void setAsyncBlockTimeout(Duration asyncBlockTimeout) {
+        this.asyncBlockTimeout = asyncBlockTimeout;
+    }
+
+    public double getAsyncSampleRate() {
+        return asyncSampleRate;
+    }
+
+    public void setAsyncSampleRate(double asyncSampleRate) {
+        this.asyncSampleRate = asyncSampleRate;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public long getFileMaxSegmentSize() {
+        return fileMaxSegmentSize;
+    }
+
+    public void setFileMaxSegmentSize(long fileMaxSegmentSize) {
+        this.fileMaxSegmentSize = fileMaxSegmentSize;
+    }
+
+    public int getFileMaxSegments() {
+        return fileMaxSegments;
+    }
+
+    public void setFileMaxSegments(int fileMaxSegments) {
+        this.fileMaxSegments = fileMaxSegments;
+    }
+
+    public int getFileFlushRecords() {
+        return fileFlushRecords;
+    }
+
+    public void setFileFlushRecords(int fileFlushRecords) {
+        this.fileFlushRecords = fileFlushRecords;
+    }
+
+    public Duration getFileFlushInterval() {
+        return fileFlushInterval;
+    }
+
+    public void setFileFlushInterval(Duration fileFlushInterval) {
+        this.fileFlushInterval = fileFlushInterval;
+    }
+
+    public Fsync getFileFsync() {
+        return fileFsync;
+    }
+
+    public void setFileFsync(Fsync fileFsync) {
+        this.fileFsync = fileFsync;
+    }
+
+    public int getFileBufferSize() {
+        return fileBufferSize;
+    }
+
+    public void setFileBufferSize(int fileBufferSize) {
+        this.fileBufferSize = fileBufferSize;
+    }
+
+    public String getCrashRingPath() {
+        return crashRingPath;
+    }
+
+    public void setCrashRingPath(String crashRingPath) {
+        this.crashRingPath = crashRingPath;
+    }
+
+    public int getCrashRingSlots() {
+        return crashRingSlots;
+    }
+
+    public void setCrashRingSlots(int crashRingSlots) {
+        this.crashRingSlots = crashRingSlots;
+    }
+
+    public int getCrashRingSlotSize() {
+        return crashRingSlotSize;
+    }
+
+    public void setCrashRingSlotSize(int crashRingSlotSize) {
+        this.crashRingSlotSize = crashRingSlotSize;
+    }
+
+    public int getRecentExchanges() {
+        return recentExchanges;
+    }
+
+    public void setRecentExchanges(int recentExchanges) {
+        this.recentExchanges = recentExchanges;
+    }
+
+    public int getRecentExchangesMaxFieldLength() {
+        return recentExchangesMaxFieldLength;
+    }
+
+    public void setRecentExchangesMaxFieldLength(int recentExchangesMaxFieldLength) {
+        this.recentExchangesMaxFieldLength = recentExchangesMaxFieldLength;
+    }
+
+    public boolean isLiveTail() {
+        return liveTail;
+    }
+
+    public void setLiveTail(boolean liveTail) {
+        this.liveTail = liveTail;
+    }
+
+    public String getLiveTailPath() {
+        return liveTailPath;
+    }
+
+    public void setLiveTailPath(String liveTailPath) {
+        this.liveTailPath = liveTailPath;
+    }
+
+    public int getLiveTailMaxSubscribers() {
+        return liveTailMaxSubscribers;
+    }
+
+    public void setLiveTailMaxSubscribers(int liveTailMaxSubscribers) {
+        this.liveTailMaxSubscribers = liveTailMaxSubscribers;
+    }
+
+    public int getLiveTailQueueSize() {
+        return liveTailQueueSize;
+    }
+
+    public void setLiveTailQueueSize(int liveTailQueueSize) {
+        this.liveTailQueueSize = liveTailQueueSize;
+    }
+
+    public int getLiveTailMaxFieldLength() {
+        return liveTailMaxFieldLength;
+    }
+
+    public void setLiveTailMaxFieldLength(int liveTailMaxFieldLength) {
+        this.liveTailMaxFieldLength = liveTailMaxFieldLength;
+    }
+
+    public List<String> getLiveTailExcludeHeaders() {
+        return liveTailExcludeHeaders;
+    }
+
+    public void setLiveTailExcludeHeaders(List<String> liveTailExcludeHeaders) {
+        this.liveTailExcludeHeaders = liveTailExcludeHeaders;
+    }
+
+    public boolean isSlowRequestWatchdog() {
+        return slowRequestWatchdog;
+    }
+
+    public void setSlowRequestWatchdog(boolean slowRequestWatchdog) {
+        this.slowRequestWatchdog = slowRequestWatchdog;
+    }
+
+    public Duration getSlowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    public void setSlowRequestThreshold(Duration slowRequestThreshold) {
+        this.slowRequestThreshold = slowRequestThreshold;
+    }
+
+    public int getSlowRequestSamples() {
+        return slowRequestSamples;
+    }
+
+    public void setSlowRequestSamples(int slowRequestSamples) {
+        this.slowRequestSamples = slowRequestSamples;
+    }
+
+    public Duration getSlowRequestSampleInterval() {
+        return slowRequestSampleInterval;
+    }
+
+    public void setSlowRequestSampleInterval(Duration slowRequestSampleInterval) {
+        this.slowRequestSampleInterval = slowRequestSampleInterval;
+    }
+
+    public int getSlowRequestMaxDepth() {
+        return slowRequestMaxDepth;
+    }
+
+    public void setSlowRequestMaxDepth(int slowRequestMaxDepth) {
+        this.slowRequestMaxDepth = slowRequestMaxDepth;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public double getRouteRateLimit() {
+        return routeRateLimit;
+    }
+
+    public void setRouteRateLimit(double routeRateLimit) {
+        this.routeRateLimit = routeRateLimit;
+    }
+
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(double rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public boolean isTailSampling() {
+        return tailSampling;
+    }
+
+    public void setTailSampling(boolean tailSampling) {
+        this.tailSampling = tailSampling;
+    }
+
+    public TailDetail getTailSamplingLevel() {
+        return tailSamplingLevel;
+    }
+
+    public void setTailSamplingLevel(TailDetail tailSamplingLevel) {
+        this.tailSamplingLevel = tailSamplingLevel;
+    }
+
+    public Duration getTailSamplingSlowThreshold() {
+        return tailSamplingSlowThreshold;
+    }
+
+    public void setTailSamplingSlowThreshold(Duration tailSamplingSlowThreshold) {
+        this.tailSamplingSlowThreshold = tailSamplingSlowThreshold;
+    }
+
+    public double getTailSamplingSlowPercentile() {
+        return tailSamplingSlowPercentile;
+    }
+
+    public void setTailSamplingSlowPercentile(double tailSamplingSlowPercentile) {
+        this.tailSamplingSlowPercentile = tailSamplingSlowPercentile;
+    }
+
+    public boolean isAggregateDuplicates() {
+        return aggregateDuplicates;
+    }
+
+    public void setAggregateDuplicates(boolean aggregateDuplicates) {
+        this.aggregateDuplicates = aggregateDuplicates;
+    }
+
+    public Duration getAggregationWindow() {
+        return aggregationWindow;
+    }
+
+    public void setAggregationWindow(Duration aggregationWindow) {
+        this.aggregationWindow = aggregationWindow;
+    }
+
+    public int getAggregationMaxEntries() {
+        return aggregationMaxEntries;
+    }
+
+    public void setAggregationMaxEntries(int aggregationMaxEntries) {
+        this.aggregationMaxEntries = aggregationMaxEntries;
+    }
+
+    public int getMetricsMaxRoutes() {
+        return metricsMaxRoutes;
+    }
+
+    public void setMetricsMaxRoutes(int metricsMaxRoutes) {
+        this.metricsMaxRoutes = metricsMaxRoutes;
+    }
+
+    public List<Duration> getMetricsSloBuckets() {
+        return metricsSloBuckets;
+    }
+
+    public void setMetricsSloBuckets(List<Duration> metricsSloBuckets) {
+        this.metricsSloBuckets = metricsSloBuckets;
+    }
+
+    public double getMetricsStageSampleRate() {
+        return metricsStageSampleRate;
+    }
+
+    public void setMetricsStageSampleRate(double metricsStageSampleRate) {
+        this.metricsStageSampleRate = metricsStageSampleRate;
+    }
+
+    public enum Backpressure {
+        /**
+         * Drop the exchange that does not fit
+         */
+        DROP_NEWEST,
+
+        /**
+         * Drop the oldest queued exchange to make room
+         */
+        DROP_OLDEST,
+
+        /**
+         * Wait up to the block timeout for room, then drop the exchange
+         */
+        BLOCK,
+
+        /**
+         * Keep only a sample of exchanges once the pipeline is half full
+         */
+        SAMPLE
+    }
+
+    public enum TailDetail {
+        /**
+         * Headers, parameters and bodies, as without tail sampling
+         */
+        FULL,
+
+        /**
+         * One line with method, URI, status and duration
+         */
+        SUMMARY,
+
+        /**
+         * Nothing
+         */
+        NONE
+    }
+
+    public enum Fsync {
+        /**
+         * Leave it to the operating system when written records reach the disk
+         */
+        NEVER,
+
+        /**
+         * Force records to disk after every group of records is written
+         */
+        ON_FLUSH,
+
+        /**
+         * Force records to disk only when a segment is rolled over or the sink is closed
+         */
+        ON_ROLL
+    }
+
+    public enum Format {
+        /**
+         * Multi-line text rendered with the request and response templates
+         */
+        TEXT,
+
+        /**
+         * One compact JSON object per exchange (NDJSON)
+         */
+        JSON
+    }
+
     public static class MaskingPattern {
         /**
          * Field name to mask
@@ -0,0 +1,118 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.util.LoggingUtils;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads the summaries a {@link CrashRingSink} left behind, oldest first. Meant to be run against the
+ * ring file after the service died, before it is restarted:
+ *
+ * <pre>
+ * java -cp request-logger.jar com.arash.ariani.sink.CrashRingReader /var/log/app/requests.ring
+ * </pre>
+ */
+public final class CrashRingReader {
+
+    private CrashRingReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: CrashRingReader <ring-file>");
+            System.exit(2);
+        }
+        dump(Path.of(args[0]), System.out);
+    }
+
+    /**
+     * Prints one line per summary, oldest first.
+     */
+    public static void dump(Path file, PrintStream out) throws IOException {
+        for (Entry entry : read(file)) {
+            StringBuilder line = new StringBuilder();
+            line.append('#').append(entry.sequence()).append(' ');
+            LoggingUtils.appendTimestamp(line, entry.timestamp());
+            line.append(' ').append(entry.correlationId())
+                .append(' ').append(entry.method()).append(' ').append(entry.uri())
+                .append(" -> ").append(entry.status());
+            if (entry.duration() >= 0) {
+                line.append(" in ").append(entry.duration()).append("ms");
+            }
+            if (entry.failed()) {
+                line.append(" FAILED");
+            }
+            if (entry.truncated()) {
+                line.append(" (truncated)");
+            }
+            if (!entry.requestBody().isEmpty()) {
+                line.append(System.lineSeparator()).append("  request: ").append(entry.requestBody());
+            }
+            if (!entry.responseBody().isEmpty()) {
+                line.append(System.lineSeparator()).append("  response: ").append(entry.responseBody());
+            }
+            out.println(line);
+        }
+    }
+
+    /**
+     * Reads every complete summary in the ring, oldest first; empty and torn slots are skipped.
+     *
+     * @throws IOException if the file is not a crash ring
+     */
+    public static List<Entry> read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < CrashRingSink.HEADER_SIZE || buffer.getInt(0) != CrashRingSink.MAGIC) {
+            throw new IOException(file + " is not a request log crash ring");
+        }
+        if (buffer.getInt(4) != CrashRingSink.VERSION) {
+            throw new IOException("Unsupported crash ring version " + buffer.getInt(4) + " in " + file);
+        }
+        int slotSize = buffer.getInt(8);
+        int slots = buffer.getInt(12);
+        if (buffer.remaining() < CrashRingSink.HEADER_SIZE + (long) slots * slotSize) {
+            throw new IOException(file + " is shorter than its header says");
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < slots; i++) {
+            ByteBuffer slot = buffer.slice(CrashRingSink.HEADER_SIZE + i * slotSize, slotSize);
+            long sequence = slot.getLong();
+            if (sequence == 0) {
+                continue;
+            }
+            long timestamp = slot.getLong();
+            long duration = slot.getLong();
+            int status = slot.getInt();
+            int flags = slot.getInt();
+            entries.add(new Entry(sequence, timestamp, getString(slot), getString(slot), getString(slot), status,
+                    duration, (flags & CrashRingSink.FLAG_FAILED) != 0, (flags & CrashRingSink.FLAG_TRUNCATED) != 0,
+                    getString(slot), getString(slot)));
+        }
+        entries.sort(Comparator.comparingLong(Entry::sequence));
+        return entries;
+    }
+
+    private static String getString(ByteBuffer slot) {
+        int length = Short.toUnsignedInt(slot.getShort());
+        String value = new String(slot.array(), slot.arrayOffset() + slot.position(), length, StandardCharsets.UTF_8);
+        slot.position(slot.position() + length);
+        return value;
+    }
+
+    public record Entry(long sequence, long timestamp, String correlationId, String method, String uri, int status,
+                        long duration, boolean failed, boolean truncated, String requestBody, String responseBody) {
+
+        public Instant getInstant() {
+            return Instant.ofEpochMilli(timestamp);
+        }
+    }
+}
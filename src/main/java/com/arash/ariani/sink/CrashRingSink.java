@@ -0,0 +1,198 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+import com.arash.ariani.util.LoggingUtils;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a summary of the last exchanges in a fixed-size, memory-mapped ring file. Each summary is
+ * written into its slot with plain memory stores, so it sits in the page cache as soon as the exchange
+ * is logged and survives the process being killed. Read the file back with {@link CrashRingReader}.
+ *
+ * <p>The file starts with a header of {@value #HEADER_SIZE} bytes followed by the slots. A slot holds
+ * its sequence number, timestamp, status and duration, the correlation id, method and URI, and the
+ * masked request and response bodies, truncated to what fits. The sequence is zeroed before a slot
+ * is rewritten and stored last, so a slot torn by a crash reads as empty.
+ *
+ * <p>Request threads and pipeline workers write concurrently. Writers whose sequence numbers are a
+ * multiple of the slot count apart target the same slot, so a slot is written under one of a fixed set
+ * of striped locks; a writer that was lapped while waiting leaves the newer summary in place.
+ */
+public class CrashRingSink implements RequestLogSink, Closeable {
+    static final int MAGIC = 0x52514C52; // "RQLR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    static final int MIN_SLOT_SIZE = 256;
+    static final int MAX_SLOT_SIZE = 65536;
+    static final int FLAG_FAILED = 1;
+    static final int FLAG_TRUNCATED = 2;
+
+    private static final int MAX_ID_BYTES = 64;
+    private static final int MAX_METHOD_BYTES = 16;
+    private static final int MAX_URI_BYTES = 512;
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path path;
+    private final int slots;
+    private final int slotSize;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final AtomicLong sequence;
+    private final Object[] locks;
+
+    public CrashRingSink(Path path, int slots, int slotSize) throws IOException {
+        if (slots <= 0) {
+            throw new IllegalArgumentException("Crash ring needs at least one slot");
+        }
+        if (slotSize < MIN_SLOT_SIZE || slotSize > MAX_SLOT_SIZE) {
+            throw new IllegalArgumentException("Crash ring slots must be between " + MIN_SLOT_SIZE + " and "
+                    + MAX_SLOT_SIZE + " bytes");
+        }
+        this.path = path.toAbsolutePath();
+        this.slots = slots;
+        this.slotSize = slotSize;
+        this.locks = new Object[Math.min(slots, LOCK_STRIPES)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        if (this.path.getParent() != null) {
+            Files.createDirectories(this.path.getParent());
+        }
+        long size = HEADER_SIZE + (long) slots * slotSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Crash ring of " + slots + " slots of " + slotSize
+                    + " bytes exceeds the 2 GB a mapped file can hold");
+        }
+        this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        boolean reuse = channel.size() == size;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (reuse && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == slotSize && buffer.getInt(12) == slots) {
+            // Same geometry: continue after the newest summary so the previous run's survive until lapped
+            this.sequence = new AtomicLong(newestSequence());
+        } else {
+            channel.truncate(size);
+            for (int offset = HEADER_SIZE; offset < size; offset += slotSize) {
+                buffer.putLong(offset, 0);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, slotSize);
+            buffer.putInt(12, slots);
+            this.sequence = new AtomicLong();
+        }
+    }
+
+    @Override
+    public void write(List<LogEvent> batch) {
+        LoggedExchange.forEach(batch, this::record);
+    }
+
+    private void record(RequestLogEvent request, ResponseLogEvent response) {
+        long seq = sequence.incrementAndGet();
+        int index = (int) ((seq - 1) % slots);
+        ByteBuffer slot = buffer.slice(Math.toIntExact(slotOffset(index)), slotSize);
+        synchronized (locks[index % locks.length]) {
+            if (slot.getLong(0) > seq) {
+                return;
+            }
+            write(slot, seq, request, response);
+        }
+    }
+
+    private static void write(ByteBuffer slot, long seq, RequestLogEvent request, ResponseLogEvent response) {
+        slot.putLong(0, 0);
+        slot.position(8);
+        slot.putLong(response.getTimestamp());
+        slot.putLong(response.getDuration());
+        slot.putInt(response.getStatus());
+        int flagsPosition = slot.position();
+        slot.putInt(0);
+
+        // Each field is capped by what is left once the length prefixes of the fields after it are reserved
+        boolean truncated = putString(slot, response.getCorrelationId(), fieldBytes(slot, MAX_ID_BYTES, 4));
+        truncated |= putString(slot, request != null ? request.getMethod() : null,
+                fieldBytes(slot, MAX_METHOD_BYTES, 3));
+        truncated |= putString(slot, request != null ? request.getUri() : null, fieldBytes(slot, MAX_URI_BYTES, 2));
+        // Whatever is left is shared by the bodies, the request body getting at most half
+        int bodies = slot.remaining() - 2 * Short.BYTES;
+        truncated |= putString(slot, request != null ? body(request) : null, bodies / 2);
+        truncated |= putString(slot, body(response), slot.remaining() - Short.BYTES);
+
+        int flags = ("ERROR".equals(response.getLevel()) ? FLAG_FAILED : 0) | (truncated ? FLAG_TRUNCATED : 0);
+        slot.putInt(flagsPosition, flags);
+        slot.putLong(0, seq);
+    }
+
+    /**
+     * Bytes the next string may take: at most {@code maxBytes}, and no more than leaves room for its own
+     * length prefix and those of the {@code following} strings.
+     */
+    private static int fieldBytes(ByteBuffer slot, int maxBytes, int following) {
+        return Math.min(maxBytes, slot.remaining() - (following + 1) * Short.BYTES);
+    }
+
+    private static String body(LogEvent event) {
+        String body = event.getBody();
+        return "-".equals(body) ? null : body;
+    }
+
+    /**
+     * Writes at most {@code maxBytes} of the string as UTF-8, prefixed with the unsigned 16-bit length.
+     *
+     * @return whether the string had to be cut
+     */
+    private static boolean putString(ByteBuffer slot, String value, int maxBytes) {
+        if (value == null || maxBytes <= 0) {
+            slot.putShort((short) 0);
+            return value != null && !value.isEmpty();
+        }
+        int end = Math.min(value.length(), maxBytes);
+        CharSequence text = value.subSequence(0, end);
+        int length = LoggingUtils.utf8Length(text);
+        while (length > maxBytes || end > 0 && Character.isHighSurrogate(value.charAt(end - 1))) {
+            // A char takes one to three bytes, so cutting a third of the excess never overshoots by much
+            end -= Math.max(1, (length - maxBytes + 2) / 3);
+            text = value.subSequence(0, end);
+            length = LoggingUtils.utf8Length(text);
+        }
+        slot.putShort((short) length);
+        LoggingUtils.encodeUtf8(text, slot);
+        return end < value.length();
+    }
+
+    private long newestSequence() {
+        long newest = 0;
+        for (int i = 0; i < slots; i++) {
+            newest = Math.max(newest, buffer.getLong(Math.toIntExact(slotOffset(i))));
+        }
+        return newest;
+    }
+
+    private long slotOffset(int index) {
+        return HEADER_SIZE + (long) index * slotSize;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
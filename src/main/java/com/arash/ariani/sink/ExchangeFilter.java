@@ -0,0 +1,40 @@
+package com.arash.ariani.sink;
+
+import org.springframework.util.AntPathMatcher;
+
+/**
+ * Criteria a logged exchange has to meet to be returned or streamed; {@code null} criteria match everything.
+ *
+ * @param status        a status code such as {@code 404}, or a class such as {@code 5xx}
+ * @param minStatus     lowest status code
+ * @param route         a path, or an Ant-style pattern such as {@code /orders/**}, matched against the URI
+ * @param minDuration   shortest duration in milliseconds; exchanges without a duration don't match
+ * @param correlationId the exchange's correlation id
+ */
+public record ExchangeFilter(String status, Integer minStatus, String route, Long minDuration, String correlationId) {
+    public static final ExchangeFilter ALL = new ExchangeFilter(null, null, null, null, null);
+
+    private static final AntPathMatcher ROUTE_MATCHER = new AntPathMatcher();
+
+    public boolean matches(LoggedExchange exchange) {
+        return matchesStatus(exchange.status())
+                && (minStatus == null || exchange.status() >= minStatus)
+                && (route == null || exchange.uri() != null && matchesRoute(exchange.uri()))
+                && (minDuration == null || exchange.duration() != null && exchange.duration() >= minDuration)
+                && (correlationId == null || correlationId.equals(exchange.correlationId()));
+    }
+
+    private boolean matchesStatus(int actual) {
+        if (status == null) {
+            return true;
+        }
+        if (status.length() == 3 && status.regionMatches(true, 1, "xx", 0, 2)) {
+            return actual / 100 == status.charAt(0) - '0';
+        }
+        return status.equals(Integer.toString(actual));
+    }
+
+    private boolean matchesRoute(String uri) {
+        return ROUTE_MATCHER.isPattern(route) ? ROUTE_MATCHER.match(route, uri) : route.equals(uri);
+    }
+}
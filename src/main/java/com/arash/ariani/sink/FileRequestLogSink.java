@@ -0,0 +1,276 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.properties.RequestLoggingProperties.Fsync;
+import com.arash.ariani.util.LoggingUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends rendered events to a file, one per line, without going through the application's logging
+ * backend. Records are encoded as UTF-8 into a direct buffer and written to a {@link FileChannel}
+ * in groups: once {@code flushRecords} records are pending or {@code flushInterval} has passed,
+ * whichever comes first. When the file reaches {@code maxSegmentSize} it is rolled over to
+ * {@code <file>.<n>}, and only the newest {@code maxSegments} rolled segments are kept.
+ */
+public class FileRequestLogSink implements RequestLogSink, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(FileRequestLogSink.class);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final Path path;
+    private final LogEventRenderer renderer;
+    private final Options options;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer buffer;
+    private final ScheduledExecutorService flusher;
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel channel;
+    private long size;
+    private int pendingRecords;
+    private long lastFlushNanos = System.nanoTime();
+
+    public FileRequestLogSink(Path path, LogEventRenderer renderer) throws IOException {
+        this(path, renderer, new Options());
+    }
+
+    public FileRequestLogSink(Path path, LogEventRenderer renderer, Options options) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.renderer = renderer;
+        this.options = options;
+        this.buffer = ByteBuffer.allocateDirect(options.bufferSize);
+        Files.createDirectories(this.path.getParent());
+        findSegments();
+        open();
+        long interval = options.flushInterval.toNanos();
+        if (interval > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "request-log-file-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushIfDue, interval, interval, TimeUnit.NANOSECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    @Override
+    public void write(List<LogEvent> batch) {
+        // Rendered before taking the lock, so concurrent writers only serialize on the copy into the buffer
+        StringBuilder records = LoggingUtils.acquireStringBuilder();
+        int[] ends = new int[batch.size()];
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                int start = records.length();
+                renderer.renderTo(batch.get(i), records);
+                int end = records.length();
+                while (end > start && records.charAt(end - 1) == '\n') {
+                    end--;
+                }
+                records.setLength(end);
+                ends[i] = end;
+            }
+            lock.lock();
+            try {
+                for (int i = 0; i < ends.length; i++) {
+                    append(records, i > 0 ? ends[i - 1] : 0, ends[i]);
+                }
+                if (pendingRecords >= options.flushRecords) {
+                    flush();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write request log to {}", path, e);
+        } finally {
+            LoggingUtils.releaseStringBuilder(records);
+        }
+    }
+
+    private void append(CharSequence records, int start, int end) throws IOException {
+        int length = LoggingUtils.utf8Length(records, start, end) + LINE_SEPARATOR.length;
+        if (size + buffer.position() + length > options.maxSegmentSize && size + buffer.position() > 0) {
+            roll();
+        }
+        if (length > buffer.remaining()) {
+            drain();
+        }
+        if (length > buffer.capacity()) {
+            // Larger than the whole buffer: encode it on its own
+            ByteBuffer large = ByteBuffer.allocate(length);
+            LoggingUtils.encodeUtf8(records, start, end, large);
+            large.put(LINE_SEPARATOR).flip();
+            writeFully(large);
+        } else {
+            LoggingUtils.encodeUtf8(records, start, end, buffer);
+            buffer.put(LINE_SEPARATOR);
+        }
+        pendingRecords++;
+    }
+
+    /**
+     * Writes out pending records now, and forces them to disk if the fsync policy asks for it.
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            drain();
+            if (options.fsync == Fsync.ON_FLUSH && pendingRecords > 0) {
+                channel.force(false);
+            }
+            pendingRecords = 0;
+            lastFlushNanos = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushIfDue() {
+        if (!lock.tryLock()) {
+            // A writer holds the lock and will flush when its group is complete
+            return;
+        }
+        try {
+            if (pendingRecords > 0 && System.nanoTime() - lastFlushNanos >= options.flushInterval.toNanos()) {
+                flush();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to flush request log to {}", path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            size += channel.write(source);
+        }
+    }
+
+    private void roll() throws IOException {
+        drain();
+        if (options.fsync != Fsync.NEVER) {
+            channel.force(false);
+        }
+        channel.close();
+        long index = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path segment = path.resolveSibling(path.getFileName() + "." + index);
+        Files.move(path, segment, StandardCopyOption.REPLACE_EXISTING);
+        segments.put(index, segment);
+        while (segments.size() > options.maxSegments) {
+            Files.deleteIfExists(segments.pollFirstEntry().getValue());
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private void findSegments() throws IOException {
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent(), prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    segments.put(Long.parseLong(suffix), file);
+                }
+            }
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        lock.lock();
+        try {
+            if (channel.isOpen()) {
+                drain();
+                if (options.fsync != Fsync.NEVER) {
+                    channel.force(false);
+                }
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tuning of the file sink; the defaults suit most services.
+     */
+    public static class Options {
+        private int bufferSize = 256 * 1024;
+        private int flushRecords = 256;
+        private Duration flushInterval = Duration.ofMillis(200);
+        private Fsync fsync = Fsync.NEVER;
+        private long maxSegmentSize = 64L * 1024 * 1024;
+        private int maxSegments = 10;
+
+        public Options bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Pending records that trigger a write; {@code 1} writes every batch immediately.
+         */
+        public Options flushRecords(int flushRecords) {
+            this.flushRecords = flushRecords;
+            return this;
+        }
+
+        /**
+         * Longest time a record waits to be written; zero disables the timer.
+         */
+        public Options flushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        public Options fsync(Fsync fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+
+        public Options maxSegmentSize(long maxSegmentSize) {
+            this.maxSegmentSize = maxSegmentSize;
+            return this;
+        }
+
+        public Options maxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.LogEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps rendered events in memory, mainly to assert on them in tests.
+ */
+public class InMemoryRequestLogSink implements RequestLogSink {
+    private final LogEventRenderer renderer;
+    private final List<Entry> entries = new ArrayList<>();
+
+    public InMemoryRequestLogSink() {
+        this(new LogEventRenderer());
+    }
+
+    public InMemoryRequestLogSink(LogEventRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    @Override
+    public void write(List<LogEvent> batch) {
+        List<Entry> rendered = new ArrayList<>(batch.size());
+        for (LogEvent event : batch) {
+            rendered.add(new Entry(event.getLevel(), event.getCorrelationId(), renderer.render(event)));
+        }
+        synchronized (entries) {
+            entries.addAll(rendered);
+        }
+    }
+
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    public List<String> getMessages() {
+        synchronized (entries) {
+            return entries.stream().map(Entry::message).toList();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * A rendered event.
+     */
+    public record Entry(String level, String correlationId, String message) {
+    }
+}
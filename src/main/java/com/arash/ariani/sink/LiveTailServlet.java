@@ -0,0 +1,185 @@
+package com.arash.ariani.sink;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the exchanges of a {@link LiveTailSink} to the client as Server-Sent Events, one {@code data}
+ * event per exchange. The query parameters {@code status}, {@code minStatus}, {@code route},
+ * {@code minDuration} and {@code correlationId} select the exchanges, as in {@link ExchangeFilter}.
+ *
+ * <p>Each client is served asynchronously by a thread of the servlet's own pool, which has one thread
+ * per subscriber the sink admits and is shut down with the servlet, so a client that stops reading only
+ * ever blocks its thread while its queue in the sink fills up, never a container thread. Exchanges
+ * dropped in the meantime are reported in a {@code dropped} event once the client catches up, and a
+ * comment is sent when nothing happened for a while to notice clients that went away.
+ */
+public class LiveTailServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+    private static final Logger log = LoggerFactory.getLogger(LiveTailServlet.class);
+    private static final int MAX_EVENTS_PER_FLUSH = 64;
+    private static final long IDLE_THREAD_SECONDS = 60;
+
+    private final transient LiveTailSink sink;
+    private final transient ThreadPoolExecutor streams;
+
+    public LiveTailServlet(LiveTailSink sink) {
+        this.sink = sink;
+        AtomicInteger threads = new AtomicInteger();
+        int size = Math.max(1, sink.getMaxSubscribers());
+        // A stream may still be finishing when its slot in the sink is taken again, so the next one queues
+        this.streams = new ThreadPoolExecutor(size, size, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "request-log-live-tail-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        streams.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ExchangeFilter filter;
+        try {
+            filter = new ExchangeFilter(request.getParameter("status"), integer(request, "minStatus"),
+                    request.getParameter("route"), longValue(request, "minDuration"),
+                    request.getParameter("correlationId"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        LiveTailSink.Subscriber subscriber = sink.subscribe(filter);
+        if (subscriber == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many live tail subscribers");
+            return;
+        }
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-cache");
+        response.flushBuffer();
+
+        AsyncContext context = request.startAsync();
+        context.setTimeout(0);
+        context.addListener(new CloseListener(subscriber));
+        try {
+            streams.execute(() -> stream(context, subscriber));
+        } catch (RejectedExecutionException e) {
+            // The servlet is being destroyed
+            subscriber.close();
+            context.complete();
+        }
+    }
+
+    /**
+     * Ends the streams still running; their clients see the response complete.
+     */
+    @Override
+    public void destroy() {
+        streams.shutdownNow();
+        try {
+            streams.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void stream(AsyncContext context, LiveTailSink.Subscriber subscriber) {
+        try {
+            // Write past the body capture of the request logging filter, which would only copy the stream
+            ServletOutputStream out = unwrap(context.getResponse()).getOutputStream();
+            while (!subscriber.isClosed()) {
+                String json = subscriber.poll(HEARTBEAT);
+                long dropped = subscriber.takeDropped();
+                if (dropped > 0) {
+                    out.write(("event: dropped\ndata: " + dropped + "\n\n").getBytes(StandardCharsets.UTF_8));
+                }
+                if (json == null) {
+                    out.write(": heartbeat\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                for (int i = 0; json != null && i < MAX_EVENTS_PER_FLUSH; i++) {
+                    out.write(("data: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+                    json = subscriber.poll();
+                }
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // The client went away or the subscription was closed
+            log.debug("Live tail stream ended", e);
+        } catch (RuntimeException e) {
+            log.warn("Live tail stream failed", e);
+        } finally {
+            subscriber.close();
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+    }
+
+    private static ServletResponse unwrap(ServletResponse response) {
+        while (response instanceof ServletResponseWrapper wrapper) {
+            response = wrapper.getResponse();
+        }
+        return response;
+    }
+
+    private static Integer integer(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        return value != null ? Integer.valueOf(value) : null;
+    }
+
+    private static Long longValue(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        return value != null ? Long.valueOf(value) : null;
+    }
+
+    private static class CloseListener implements AsyncListener {
+        private final LiveTailSink.Subscriber subscriber;
+
+        CloseListener(LiveTailSink.Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            subscriber.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            subscriber.close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            subscriber.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.util.LoggingUtils;
+import com.arash.ariani.util.StringBuilderWriter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.context.SmartLifecycle;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands logged exchanges to live subscribers, e.g. the clients of {@link LiveTailServlet}.
+ *
+ * <p>Every subscriber has a filter and a bounded queue. An exchange is copied only while there are
+ * subscribers, checked against each filter, and serialized to JSON once, only if a filter matched.
+ * It is then offered to the matching queues without waiting: when a subscriber does not keep up, its
+ * queue fills and further exchanges are dropped and counted for that subscriber alone, so a stuck
+ * client never slows down the threads that log.
+ *
+ * <p>The stream is served outside of the actuator, so request headers such as {@code Authorization} or
+ * {@code Cookie} are dropped from it even when they are logged.
+ *
+ * <p>As a {@link SmartLifecycle} the sink ends its subscriptions when the application context stops,
+ * before a graceful shutdown of the web server would wait for the streams to finish.
+ */
+public class LiveTailSink implements RequestLogSink, SmartLifecycle, Closeable {
+    private final int maxSubscribers;
+    private final int queueSize;
+    private final int maxFieldLength;
+    private final Set<String> excludedHeaders;
+    private final RequestLoggingMetrics metrics;
+    private final JsonFactory jsonFactory = LoggingUtils.jsonFactory();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean running;
+    private boolean closed;
+
+    /**
+     * @param queueSize      exchanges buffered per subscriber before they are dropped
+     * @param maxFieldLength  characters sent of the headers, the parameters and each body
+     * @param excludedHeaders request headers never sent, matched ignoring case
+     * @param metrics         metrics to count dropped exchanges in, or {@code null} if metrics are unavailable
+     */
+    public LiveTailSink(int maxSubscribers, int queueSize, int maxFieldLength, Collection<String> excludedHeaders,
+                        RequestLoggingMetrics metrics) {
+        this.maxSubscribers = maxSubscribers;
+        this.queueSize = queueSize;
+        this.maxFieldLength = maxFieldLength;
+        this.excludedHeaders = LoggedExchange.headerNames(excludedHeaders);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(List<LogEvent> batch) {
+        if (!subscribers.isEmpty()) {
+            LoggedExchange.forEach(batch, this::publish);
+        }
+    }
+
+    private void publish(RequestLogEvent request, ResponseLogEvent response) {
+        LoggedExchange exchange = LoggedExchange.of(sequence.incrementAndGet(), request, response, maxFieldLength,
+                excludedHeaders);
+        String json = null;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.filter.matches(exchange)) {
+                if (json == null) {
+                    json = toJson(exchange);
+                }
+                subscriber.offer(json);
+            }
+        }
+    }
+
+    private String toJson(LoggedExchange exchange) {
+        StringBuilder buffer = LoggingUtils.acquireStringBuilder();
+        try (JsonGenerator generator = jsonFactory.createGenerator(new StringBuilderWriter(buffer))) {
+            // Written field by field: the shared mapper indents, and an event has to stay on one line
+            generator.writeStartObject();
+            generator.writeNumberField("sequence", exchange.sequence());
+            if (exchange.timestamp() > 0) {
+                generator.writeStringField("timestamp", Instant.ofEpochMilli(exchange.timestamp()).toString());
+            }
+            writeStringField(generator, "level", exchange.level());
+            writeStringField(generator, "correlationId", exchange.correlationId());
+            writeStringField(generator, "method", exchange.method());
+            writeStringField(generator, "uri", exchange.uri());
+            generator.writeNumberField("status", exchange.status());
+            if (exchange.duration() != null) {
+                generator.writeNumberField("durationMs", exchange.duration());
+            }
+            writeStringField(generator, "error", exchange.error());
+            writeStringField(generator, "requestHeaders", exchange.requestHeaders());
+            writeStringField(generator, "requestParameters", exchange.requestParameters());
+            writeStringField(generator, "requestBody", exchange.requestBody());
+            writeStringField(generator, "responseBody", exchange.responseBody());
+            if (exchange.truncated()) {
+                generator.writeBooleanField("truncated", true);
+            }
+            generator.writeEndObject();
+            generator.flush();
+            return buffer.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            LoggingUtils.releaseStringBuilder(buffer);
+        }
+    }
+
+    private static void writeStringField(JsonGenerator generator, String name, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    /**
+     * Starts delivering the exchanges that match the filter.
+     *
+     * @return the subscription, or {@code null} if the maximum number of subscribers is reached or the
+     *         sink was closed
+     */
+    public synchronized Subscriber subscribe(ExchangeFilter filter) {
+        if (closed || subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(filter);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ends every subscription and refuses new ones.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    /**
+     * A subscription, read by a single thread.
+     */
+    public final class Subscriber implements Closeable {
+        private final ExchangeFilter filter;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(queueSize);
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean closed;
+        private volatile Thread reader;
+
+        private Subscriber(ExchangeFilter filter) {
+            this.filter = filter;
+        }
+
+        private void offer(String json) {
+            if (!queue.offer(json)) {
+                dropped.incrementAndGet();
+                if (metrics != null) {
+                    metrics.incrementLiveTailDrops();
+                }
+            }
+        }
+
+        /**
+         * Waits for the next exchange, as a JSON object.
+         *
+         * @return the exchange, or {@code null} if none arrived in time or the subscription was closed
+         */
+        public String poll(Duration timeout) throws InterruptedException {
+            reader = Thread.currentThread();
+            if (closed) {
+                return null;
+            }
+            return queue.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Takes the next exchange if one is waiting.
+         */
+        public String poll() {
+            return queue.poll();
+        }
+
+        /**
+         * Exchanges dropped since the last call because the queue was full.
+         */
+        public long takeDropped() {
+            return dropped.getAndSet(0);
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Stops delivery and wakes up a reader waiting in {@link #poll(Duration)}.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            Thread waiting = reader;
+            if (waiting != null && waiting != Thread.currentThread()) {
+                waiting.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.AggregateLogEvent;
+import com.arash.ariani.event.ExchangeLogEvent;
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import com.arash.ariani.template.JsonLogFormatter;
+import com.arash.ariani.util.LoggingUtils;
+import com.arash.ariani.util.StringBuilderWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Renders events the way the configured format asks for: exchanges and aggregates of duplicates as JSON
+ * with the JSON format, everything else through the event's template.
+ */
+public class LogEventRenderer {
+    private final RequestLoggingProperties properties;
+    private final JsonLogFormatter jsonFormatter;
+
+    /**
+     * Renders every event through its template.
+     */
+    public LogEventRenderer() {
+        this(null);
+    }
+
+    public LogEventRenderer(RequestLoggingProperties properties) {
+        this.properties = properties;
+        this.jsonFormatter = properties != null
+                ? new JsonLogFormatter(LoggingUtils.jsonFactory(), properties.isJsonRawBody())
+                : null;
+    }
+
+    public boolean isJson(LogEvent event) {
+        return jsonFormatter != null && properties.getFormat() == RequestLoggingProperties.Format.JSON
+                && (event instanceof ExchangeLogEvent || event instanceof AggregateLogEvent);
+    }
+
+    public String render(LogEvent event) {
+        StringBuilder buffer = LoggingUtils.acquireStringBuilder();
+        try {
+            renderTo(event, buffer);
+            return buffer.toString();
+        } finally {
+            LoggingUtils.releaseStringBuilder(buffer);
+        }
+    }
+
+    public void renderTo(LogEvent event, StringBuilder out) {
+        if (isJson(event)) {
+            try {
+                if (event instanceof AggregateLogEvent aggregate) {
+                    jsonFormatter.formatTo(aggregate, new StringBuilderWriter(out));
+                } else {
+                    jsonFormatter.formatTo((ExchangeLogEvent) event, new StringBuilderWriter(out));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if (event.getTemplate() != null) {
+            event.getTemplate().formatTo(event, out);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.ExchangeLogEvent;
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
+
+/**
+ * An exchange as it was logged, copied out of its pooled events so that it can be kept. Fields that were
+ * not logged are {@code null}.
+ *
+ * @param duration  duration in milliseconds
+ * @param truncated whether any field was cut to the configured length
+ */
+public record LoggedExchange(long sequence, long timestamp, String correlationId, String method, String uri,
+                             int status, Long duration, String level, String error, String requestHeaders,
+                             String requestParameters, String requestBody, String responseBody, boolean truncated) {
+
+    /**
+     * Characters kept of the fields other than headers, parameters and bodies.
+     */
+    static final int MAX_SHORT_FIELD_LENGTH = 512;
+
+    /**
+     * Copies an exchange, truncating headers, parameters and bodies to {@code maxFieldLength} characters
+     * and every other field to {@value #MAX_SHORT_FIELD_LENGTH}.
+     *
+     * @param request the request event, {@code null} if it was not logged
+     */
+    static LoggedExchange of(long sequence, RequestLogEvent request, ResponseLogEvent response, int maxFieldLength) {
+        return of(sequence, request, response, maxFieldLength, Set.of());
+    }
+
+    /**
+     * Copies an exchange like {@link #of(long, RequestLogEvent, ResponseLogEvent, int)}, leaving out the
+     * request headers named in {@code excludedHeaders}.
+     *
+     * @param excludedHeaders lower-case header names, as returned by {@link #headerNames(Collection)}
+     */
+    static LoggedExchange of(long sequence, RequestLogEvent request, ResponseLogEvent response, int maxFieldLength,
+                             Set<String> excludedHeaders) {
+        Truncation truncation = new Truncation();
+        return new LoggedExchange(sequence, response.getTimestamp(),
+                truncation.apply(response.getCorrelationId(), MAX_SHORT_FIELD_LENGTH),
+                request != null ? truncation.apply(request.getMethod(), MAX_SHORT_FIELD_LENGTH) : null,
+                request != null ? truncation.apply(request.getUri(), MAX_SHORT_FIELD_LENGTH) : null,
+                response.getStatus(),
+                response.getDuration() != ResponseLogEvent.NO_DURATION ? response.getDuration() : null,
+                response.getLevel(),
+                truncation.apply(response.getError(), MAX_SHORT_FIELD_LENGTH),
+                request != null ? truncation.apply(headers(request, excludedHeaders), maxFieldLength) : null,
+                request != null ? truncation.apply(request.getParameters(), maxFieldLength) : null,
+                request != null ? truncation.apply(request.getBody(), maxFieldLength) : null,
+                truncation.apply(response.getBody(), maxFieldLength),
+                truncation.truncated);
+    }
+
+    static Set<String> headerNames(Collection<String> names) {
+        return names.stream().map(name -> name.toLowerCase(Locale.ROOT)).collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static String headers(RequestLogEvent request, Set<String> excludedHeaders) {
+        String headers = request.getHeaders();
+        if (excludedHeaders.isEmpty() || headers == null || "-".equals(headers)) {
+            return headers;
+        }
+        Map<String, String> headerMap = request.getHeaderMap();
+        if (headerMap == null) {
+            // Only the rendered text is known, which can't be told apart safely
+            return null;
+        }
+        Map<String, String> kept = null;
+        for (String name : headerMap.keySet()) {
+            if (excludedHeaders.contains(name.toLowerCase(Locale.ROOT))) {
+                kept = new HashMap<>(headerMap);
+                kept.keySet().removeIf(key -> excludedHeaders.contains(key.toLowerCase(Locale.ROOT)));
+                break;
+            }
+        }
+        if (kept == null) {
+            return headers;
+        }
+        return kept.isEmpty() ? null : kept.toString();
+    }
+
+    /**
+     * Hands the request and response events of every exchange in the batch to the action. Aggregates of
+     * duplicates are skipped.
+     */
+    static void forEach(List<LogEvent> batch, BiConsumer<RequestLogEvent, ResponseLogEvent> action) {
+        RequestLogEvent pending = null;
+        for (int i = 0; i < batch.size(); i++) {
+            LogEvent event = batch.get(i);
+            if (event instanceof ExchangeLogEvent exchange) {
+                action.accept(exchange.getRequest(), exchange.getResponse());
+            } else if (event instanceof RequestLogEvent request) {
+                pending = request;
+            } else if (event instanceof ResponseLogEvent response) {
+                // Request and response events of an exchange are adjacent in a batch
+                boolean paired = pending != null && Objects.equals(pending.getCorrelationId(), response.getCorrelationId());
+                action.accept(paired ? pending : null, response);
+                pending = null;
+            }
+        }
+    }
+
+    private static final class Truncation {
+        private boolean truncated;
+
+        String apply(String value, int maxLength) {
+            if (value == null || "-".equals(value)) {
+                // Placeholder of the text format for something that was not captured
+                return null;
+            }
+            if (value.length() <= maxLength) {
+                return value;
+            }
+            truncated = true;
+            int end = maxLength;
+            if (end > 0 && Character.isHighSurrogate(value.charAt(end - 1))) {
+                end--;
+            }
+            return value.substring(0, end);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the last exchanges in memory, masked as they were logged, so they can be inspected on a live
+ * node through the actuator endpoint.
+ *
+ * <p>The exchanges sit in a fixed ring of immutable entries. A writer claims a sequence number with one
+ * atomic increment and publishes its entry into the slot with a compare-and-set, so request threads
+ * never wait on each other or on readers. Every text field is truncated (see {@link LoggedExchange}),
+ * which bounds the memory held by the ring whatever is logged. A reader copies the slots up to the
+ * newest sequence it saw when it started, so writes racing with the read show up in the next one.
+ */
+public class RecentExchangesSink implements RequestLogSink {
+    private final int capacity;
+    private final int maxFieldLength;
+    private final AtomicReferenceArray<LoggedExchange> slots;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param capacity       exchanges kept
+     * @param maxFieldLength characters kept of the headers, the parameters and each body
+     */
+    public RecentExchangesSink(int capacity, int maxFieldLength) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Recent exchanges buffer needs a positive capacity");
+        }
+        this.capacity = capacity;
+        this.maxFieldLength = maxFieldLength;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public void write(List<LogEvent> batch) {
+        LoggedExchange.forEach(batch, this::record);
+    }
+
+    private void record(RequestLogEvent request, ResponseLogEvent response) {
+        long seq = sequence.incrementAndGet();
+        LoggedExchange exchange = LoggedExchange.of(seq, request, response, maxFieldLength);
+        int index = (int) ((seq - 1) % capacity);
+        while (true) {
+            LoggedExchange current = slots.get(index);
+            // A writer that was lapped while building its entry must not overwrite a newer one
+            if (current != null && current.sequence() > seq || slots.compareAndSet(index, current, exchange)) {
+                return;
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The kept exchanges that match the filter, newest first.
+     *
+     * @param limit most exchanges returned
+     */
+    public List<LoggedExchange> recent(ExchangeFilter filter, int limit) {
+        long newest = sequence.get();
+        List<LoggedExchange> exchanges = new ArrayList<>(Math.min(capacity, (int) Math.min(newest, Integer.MAX_VALUE)));
+        for (int i = 0; i < capacity; i++) {
+            LoggedExchange exchange = slots.get(i);
+            if (exchange != null && exchange.sequence() <= newest && exchange.sequence() > newest - capacity
+                    && filter.matches(exchange)) {
+                exchanges.add(exchange);
+            }
+        }
+        exchanges.sort(Comparator.comparingLong(LoggedExchange::sequence).reversed());
+        return exchanges.size() > limit ? new ArrayList<>(exchanges.subList(0, limit)) : exchanges;
+    }
+}
@@ -0,0 +1,21 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.LogEvent;
+import java.util.List;
+
+/**
+ * Destination of finished request log events. Events arrive in batches: one exchange's events when
+ * logging on the servlet thread, and everything a worker drained at once with asynchronous logging,
+ * so that a sink can pay for syscalls and encoder setup once per batch instead of once per line.
+ * <p>
+ * Events are pooled and recycled as soon as {@link #write(List)} returns; a sink that keeps anything
+ * must copy or render it during the call. Sinks may be called from several threads at once.
+ */
+public interface RequestLogSink {
+
+    /**
+     * Writes a batch of events in the order they were produced. Failures should be handled by the
+     * sink; an exception only loses this batch.
+     */
+    void write(List<LogEvent> batch);
+}
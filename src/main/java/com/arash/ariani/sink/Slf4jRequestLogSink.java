@@ -0,0 +1,54 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.interceptor.RequestLoggingInterceptor;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.List;
+
+/**
+ * Writes each event to SLF4J, at {@code ERROR} for failed exchanges and {@code INFO} otherwise. This is
+ * the sink used when no other is configured.
+ */
+public class Slf4jRequestLogSink implements RequestLogSink {
+    private final Logger log;
+    private final RequestLoggingProperties properties;
+    private final LogEventRenderer renderer;
+
+    public Slf4jRequestLogSink(RequestLoggingProperties properties) {
+        this(LoggerFactory.getLogger(RequestLoggingInterceptor.class), properties);
+    }
+
+    public Slf4jRequestLogSink(Logger log, RequestLoggingProperties properties) {
+        this.log = log;
+        this.properties = properties;
+        this.renderer = new LogEventRenderer(properties);
+    }
+
+    @Override
+    public void write(List<LogEvent> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            write(batch.get(i));
+        }
+    }
+
+    private void write(LogEvent event) {
+        boolean error = "ERROR".equals(event.getLevel());
+        if (properties.isDeferredRendering() && !renderer.isJson(event)) {
+            // Rendered by the backend (LogEvent#toString or RequestLogEncoder) only if the level is enabled
+            if (error) {
+                log.error("{}", event);
+            } else {
+                log.info("{}", event);
+            }
+            return;
+        }
+
+        if (error) {
+            log.error(renderer.render(event));
+        } else if (log.isInfoEnabled()) {
+            log.info(renderer.render(event));
+        }
+    }
+}
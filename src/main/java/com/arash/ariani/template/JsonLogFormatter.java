@@ -0,0 +1,223 @@
+package com.arash.ariani.template;
+
+import com.arash.ariani.event.AggregateLogEvent;
+import com.arash.ariani.event.ExchangeLogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+import com.arash.ariani.event.StackSample;
+import com.arash.ariani.util.LoggingUtils;
+import com.arash.ariani.util.StringBuilderWriter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Writes one compact JSON object per exchange with a streaming {@link JsonGenerator}, so the
+ * output can be shipped as NDJSON without building an intermediate tree.
+ */
+public class JsonLogFormatter {
+    private final JsonFactory jsonFactory;
+    private final boolean rawBody;
+
+    public JsonLogFormatter() {
+        this(LoggingUtils.jsonFactory(), false);
+    }
+
+    /**
+     * @param rawBody whether bodies that are valid JSON are embedded as nested JSON instead of
+     *                as an escaped string
+     */
+    public JsonLogFormatter(JsonFactory jsonFactory, boolean rawBody) {
+        this.jsonFactory = jsonFactory;
+        this.rawBody = rawBody;
+    }
+
+    public String format(ExchangeLogEvent exchange) {
+        StringBuilder buffer = LoggingUtils.acquireStringBuilder();
+        try {
+            formatTo(exchange, new StringBuilderWriter(buffer));
+            return buffer.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            LoggingUtils.releaseStringBuilder(buffer);
+        }
+    }
+
+    public void formatTo(ExchangeLogEvent exchange, Writer out) throws IOException {
+        RequestLogEvent request = exchange.getRequest();
+        ResponseLogEvent response = exchange.getResponse();
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            if (exchange.getTimestamp() > 0) {
+                generator.writeStringField("timestamp", Instant.ofEpochMilli(exchange.getTimestamp()).toString());
+            }
+            writeStringField(generator, "level", exchange.getLevel());
+            writeStringField(generator, "pid", exchange.getPid());
+            writeStringField(generator, "thread", exchange.getThread());
+            writeStringField(generator, "logger", exchange.getLogger());
+            writeStringField(generator, "correlationId", exchange.getCorrelationId());
+
+            generator.writeObjectFieldStart("request");
+            writeStringField(generator, "method", request.getMethod());
+            writeStringField(generator, "uri", request.getUri());
+            writeHeaders(generator, request.getHeaderMap(), request.getHeaders());
+            writeParameters(generator, request.getParameterMap(), request.getParameters());
+            writeBodyField(generator, request.getBody());
+            generator.writeEndObject();
+
+            generator.writeObjectFieldStart("response");
+            generator.writeNumberField("status", response.getStatus());
+            writeStringField(generator, "error", response.getError());
+            if (response.getDuration() != ResponseLogEvent.NO_DURATION) {
+                generator.writeNumberField("durationMs", response.getDuration());
+            }
+            writeHeaders(generator, response.getHeaderMap(), response.getHeaders());
+            writeBodyField(generator, response.getBody());
+            writeStackSamples(generator, response);
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeStackSamples(JsonGenerator generator, ResponseLogEvent response) throws IOException {
+        if (response.getStackSamples().isEmpty()) {
+            return;
+        }
+        generator.writeArrayFieldStart("stackSamples");
+        for (StackSample sample : response.getStackSamples()) {
+            generator.writeStartObject();
+            generator.writeNumberField("elapsedMs", sample.elapsedMillis());
+            generator.writeArrayFieldStart("frames");
+            for (StackTraceElement frame : sample.frames()) {
+                generator.writeString(frame.toString());
+            }
+            generator.writeEndArray();
+            if (sample.truncated()) {
+                generator.writeBooleanField("truncated", true);
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes the record of collapsed duplicates with the same envelope as an exchange.
+     */
+    public void formatTo(AggregateLogEvent aggregate, Writer out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            if (aggregate.getTimestamp() > 0) {
+                generator.writeStringField("timestamp", Instant.ofEpochMilli(aggregate.getTimestamp()).toString());
+            }
+            writeStringField(generator, "level", aggregate.getLevel());
+            writeStringField(generator, "pid", aggregate.getPid());
+            writeStringField(generator, "thread", aggregate.getThread());
+            writeStringField(generator, "logger", aggregate.getLogger());
+            writeStringField(generator, "correlationId", aggregate.getCorrelationId());
+
+            generator.writeObjectFieldStart("duplicates");
+            writeStringField(generator, "method", aggregate.getMethod());
+            writeStringField(generator, "uri", aggregate.getUri());
+            generator.writeNumberField("status", aggregate.getStatus());
+            generator.writeNumberField("count", aggregate.getCount());
+            generator.writeNumberField("minDurationMs", aggregate.getMinDuration());
+            generator.writeNumberField("avgDurationMs", aggregate.getAvgDuration());
+            generator.writeNumberField("maxDurationMs", aggregate.getMaxDuration());
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeStringField(JsonGenerator generator, String name, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    /**
+     * Writes the headers as an object of name and value. Events that only carry the rendered text get it
+     * as a string, unless it is the "-" placeholder.
+     */
+    private static void writeHeaders(JsonGenerator generator, Map<String, String> headers, String text)
+            throws IOException {
+        if (headers == null) {
+            writeTextField(generator, "headers", text);
+            return;
+        }
+        generator.writeObjectFieldStart("headers");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            generator.writeStringField(header.getKey(), header.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the parameters as an object of name and array of values, falling back like {@link #writeHeaders}.
+     */
+    private static void writeParameters(JsonGenerator generator, Map<String, String[]> parameters, String text)
+            throws IOException {
+        if (parameters == null) {
+            writeTextField(generator, "parameters", text);
+            return;
+        }
+        generator.writeObjectFieldStart("parameters");
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+            generator.writeArrayFieldStart(parameter.getKey());
+            for (String value : parameter.getValue()) {
+                generator.writeString(value);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeTextField(JsonGenerator generator, String name, String text) throws IOException {
+        if (text != null && !text.equals("-")) {
+            generator.writeStringField(name, text);
+        }
+    }
+
+    private void writeBodyField(JsonGenerator generator, String body) throws IOException {
+        if (body == null || body.equals("-")) {
+            return;
+        }
+        generator.writeFieldName("body");
+        if (!rawBody || !isJson(body)) {
+            generator.writeString(body);
+        } else if (body.indexOf('\n') < 0 && body.indexOf('\r') < 0) {
+            generator.writeRawValue(body);
+        } else {
+            // Pretty-printed: line breaks would split the NDJSON line, so copy the tokens compactly
+            try (JsonParser parser = jsonFactory.createParser(body)) {
+                parser.nextToken();
+                generator.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    /**
+     * Bodies are truncated to the configured maximum length, so only embed them raw when they
+     * still parse; anything else would corrupt the surrounding line.
+     */
+    private boolean isJson(String body) {
+        char first = body.isEmpty() ? 0 : body.charAt(0);
+        if (first != '{' && first != '[') {
+            return false;
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            parser.nextToken();
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
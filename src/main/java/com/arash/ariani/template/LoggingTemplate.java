@@ -1,14 +1,99 @@
 package com.arash.ariani.template;
 
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.LogField;
+import com.arash.ariani.util.ByteBufferAppender;
+import com.arash.ariani.util.LoggingUtils;
+import com.arash.ariani.util.ObjectPool;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * A logging template parsed once into alternating literal and placeholder segments.
+ * Rendering walks the segments in a single pass into a pooled builder, so no intermediate
+ * strings are created per placeholder. The {@code formatTo} variants write into a caller-supplied
+ * target and allocate nothing in steady state.
+ */
 public class LoggingTemplate {
     private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\{\\{(.*?)}}");
+    private static final ObjectPool<ByteBufferAppender> BYTE_BUFFER_APPENDERS = new ObjectPool<>(
+        4 * Runtime.getRuntime().availableProcessors(), ByteBufferAppender::new);
+
     private final String template;
 
+    /**
+     * {@code literals[i]} precedes {@code placeholders[i]}; the last literal trails the template.
+     */
+    private final String[] literals;
+    private final String[] placeholders;
+
+    /**
+     * Event slot for each placeholder, {@code null} where the name is not a {@link LogField}.
+     */
+    private final LogField[] fields;
+
     public LoggingTemplate(String template) {
+        this(template, null);
+    }
+
+    /**
+     * Parses the template and, when {@code supportedPlaceholders} is given, rejects any placeholder
+     * outside of it so that typos surface at startup instead of in the log output.
+     */
+    public LoggingTemplate(String template, Set<String> supportedPlaceholders) {
         this.template = template;
+        if (template == null) {
+            this.literals = new String[] {""};
+            this.placeholders = new String[0];
+            this.fields = new LogField[0];
+            return;
+        }
+
+        List<String> literalSegments = new ArrayList<>();
+        List<String> placeholderSegments = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(template);
+        int position = 0;
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            if (supportedPlaceholders != null && !supportedPlaceholders.contains(name)) {
+                throw new IllegalArgumentException("Unknown placeholder {{" + name + "}} in logging template, "
+                        + "supported placeholders are " + supportedPlaceholders);
+            }
+            literalSegments.add(template.substring(position, matcher.start()));
+            placeholderSegments.add(name);
+            position = matcher.end();
+        }
+        literalSegments.add(template.substring(position));
+
+        this.literals = literalSegments.toArray(new String[0]);
+        this.placeholders = placeholderSegments.toArray(new String[0]);
+        this.fields = new LogField[placeholders.length];
+        for (int i = 0; i < placeholders.length; i++) {
+            fields[i] = LogField.forPlaceholder(placeholders[i]);
+        }
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Placeholder names in order of appearance, without duplicates.
+     */
+    public Set<String> getPlaceholders() {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, placeholders);
+        return names;
     }
 
     public String format(Map<String, Object> values) {
@@ -16,16 +101,114 @@ public class LoggingTemplate {
             return "";
         }
 
-        String result = template;
-        for (Map.Entry<String, Object> entry : values.entrySet()) {
-            String placeholder = "{{" + entry.getKey() + "}}";
-            String value = entry.getValue() != null ? entry.getValue().toString() : "";
-            result = result.replace(placeholder, value);
+        StringBuilder buffer = LoggingUtils.acquireStringBuilder();
+        try {
+            formatTo(values, buffer);
+            return buffer.toString();
+        } finally {
+            LoggingUtils.releaseStringBuilder(buffer);
+        }
+    }
+
+    /**
+     * Renders the template into the given builder. Placeholders without a value render as empty.
+     */
+    public void formatTo(Map<String, Object> values, StringBuilder out) {
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            Object value = values.get(placeholders[i]);
+            if (value != null) {
+                out.append(value);
+            }
+        }
+        out.append(literals[placeholders.length]);
+    }
+
+    public String format(LogEvent event) {
+        if (template == null) {
+            return "";
+        }
+
+        StringBuilder buffer = LoggingUtils.acquireStringBuilder();
+        try {
+            formatTo(event, buffer);
+            return buffer.toString();
+        } finally {
+            LoggingUtils.releaseStringBuilder(buffer);
+        }
+    }
+
+    /**
+     * Renders the template by reading the event's slots directly, without any intermediate map.
+     */
+    public void formatTo(LogEvent event, StringBuilder out) {
+        try {
+            formatTo(event, (Appendable) out);
+        } catch (IOException ex) {
+            // A StringBuilder does not throw
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Renders the event into any {@link Appendable}, e.g. a {@code Writer} owned by the caller. Literals
+     * and slots are appended one by one as they are reached, without staging the line in a builder.
+     */
+    public void formatTo(LogEvent event, Appendable out) throws IOException {
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            if (fields[i] != null) {
+                event.appendField(fields[i], out);
+            }
+        }
+        out.append(literals[placeholders.length]);
+    }
+
+    /**
+     * Renders the event as UTF-8 straight into the given buffer.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the rendered event does not fit; the buffer's position is left
+     *         unchanged then, though the bytes after it may have been overwritten
+     */
+    public int formatTo(LogEvent event, ByteBuffer out) {
+        int start = out.position();
+        ByteBufferAppender appender = BYTE_BUFFER_APPENDERS.acquire().wrap(out);
+        try {
+            formatTo(event, appender);
+            return out.position() - start;
+        } catch (BufferOverflowException ex) {
+            out.position(start);
+            throw ex;
+        } catch (IOException ex) {
+            // The appender does not throw
+            throw new UncheckedIOException(ex);
+        } finally {
+            appender.clear();
+            BYTE_BUFFER_APPENDERS.release(appender);
         }
-        return result;
     }
 
     public static class Builder {
+        static final Set<String> REQUEST_PLACEHOLDERS = placeholdersOf(
+            LogField.TIMESTAMP, LogField.LEVEL, LogField.PID, LogField.THREAD, LogField.LOGGER, LogField.CORRELATION_ID,
+            LogField.METHOD, LogField.URI, LogField.HEADERS, LogField.PARAMETERS, LogField.BODY);
+
+        static final Set<String> RESPONSE_PLACEHOLDERS = placeholdersOf(
+            LogField.TIMESTAMP, LogField.LEVEL, LogField.PID, LogField.THREAD, LogField.LOGGER, LogField.CORRELATION_ID,
+            LogField.STATUS, LogField.DURATION, LogField.HEADERS, LogField.BODY, LogField.STACK_SAMPLES);
+
+        static final Set<String> EXCHANGE_PLACEHOLDERS = placeholdersOf(
+            LogField.TIMESTAMP, LogField.LEVEL, LogField.PID, LogField.THREAD, LogField.LOGGER, LogField.CORRELATION_ID,
+            LogField.METHOD, LogField.URI, LogField.REQUEST_HEADERS, LogField.PARAMETERS, LogField.REQUEST_BODY,
+            LogField.STATUS, LogField.DURATION, LogField.RESPONSE_HEADERS, LogField.RESPONSE_BODY,
+            LogField.STACK_SAMPLES);
+
+        static final Set<String> AGGREGATE_PLACEHOLDERS = placeholdersOf(
+            LogField.TIMESTAMP, LogField.LEVEL, LogField.PID, LogField.THREAD, LogField.LOGGER, LogField.CORRELATION_ID,
+            LogField.METHOD, LogField.URI, LogField.STATUS, LogField.COUNT, LogField.MIN_DURATION, LogField.MAX_DURATION,
+            LogField.AVG_DURATION);
+
         private static final String DEFAULT_REQUEST_TEMPLATE = """
             {{timestamp}} {{level}} {{pid}} --- [{{thread}}] {{logger}} : Request Details:
             Method: {{method}}
@@ -41,10 +224,41 @@ public class LoggingTemplate {
             Duration: {{duration}}ms
             Headers: {{headers}}
             Body: {{body}}
-            """;
+            {{stackSamples}}""";
+
+        private static final String DEFAULT_EXCHANGE_TEMPLATE = """
+            {{timestamp}} {{level}} {{pid}} --- [{{thread}}] {{logger}} : Exchange {{correlationId}}:
+            Method: {{method}}
+            URI: {{uri}}
+            Request Headers: {{requestHeaders}}
+            Parameters: {{parameters}}
+            Request Body: {{requestBody}}
+            Status: {{status}}
+            Duration: {{duration}}ms
+            Response Headers: {{responseHeaders}}
+            Response Body: {{responseBody}}
+            {{stackSamples}}""";
+
+        private static final String DEFAULT_SUMMARY_TEMPLATE =
+            "{{timestamp}} {{level}} {{pid}} --- [{{thread}}] {{logger}} : {{method}} {{uri}} {{status}} in {{duration}}ms ({{correlationId}})";
+
+        private static final String DEFAULT_AGGREGATE_TEMPLATE =
+            "{{timestamp}} {{level}} {{pid}} --- [{{thread}}] {{logger}} : {{count}} more of {{method}} {{uri}} {{status}} "
+                + "like {{correlationId}}, duration min/avg/max {{minDuration}}/{{avgDuration}}/{{maxDuration}}ms";
 
         private String requestTemplate = DEFAULT_REQUEST_TEMPLATE;
         private String responseTemplate = DEFAULT_RESPONSE_TEMPLATE;
+        private String exchangeTemplate = DEFAULT_EXCHANGE_TEMPLATE;
+        private String summaryTemplate = DEFAULT_SUMMARY_TEMPLATE;
+        private String aggregateTemplate = DEFAULT_AGGREGATE_TEMPLATE;
+
+        private static Set<String> placeholdersOf(LogField... fields) {
+            Set<String> names = new LinkedHashSet<>();
+            for (LogField field : fields) {
+                names.add(field.getPlaceholder());
+            }
+            return Collections.unmodifiableSet(names);
+        }
 
         public Builder requestTemplate(String template) {
             this.requestTemplate = template;
@@ -56,11 +270,56 @@ public class LoggingTemplate {
             return this;
         }
 
+        public Builder exchangeTemplate(String template) {
+            this.exchangeTemplate = template;
+            return this;
+        }
+
+        public Builder summaryTemplate(String template) {
+            this.summaryTemplate = template;
+            return this;
+        }
+
+        public Builder aggregateTemplate(String template) {
+            this.aggregateTemplate = template;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a template uses a placeholder that is never populated
+         */
         public LoggingTemplate[] build() {
             return new LoggingTemplate[] {
-                new LoggingTemplate(requestTemplate),
-                new LoggingTemplate(responseTemplate)
+                new LoggingTemplate(requestTemplate, REQUEST_PLACEHOLDERS),
+                new LoggingTemplate(responseTemplate, RESPONSE_PLACEHOLDERS)
             };
         }
+
+        /**
+         * Builds the template for the single combined record written in exchange mode.
+         *
+         * @throws IllegalArgumentException if the template uses a placeholder that is never populated
+         */
+        public LoggingTemplate buildExchange() {
+            return new LoggingTemplate(exchangeTemplate, EXCHANGE_PLACEHOLDERS);
+        }
+
+        /**
+         * Builds the one-line template for exchanges that tail sampling logs as a summary.
+         *
+         * @throws IllegalArgumentException if the template uses a placeholder that is never populated
+         */
+        public LoggingTemplate buildSummary() {
+            return new LoggingTemplate(summaryTemplate, EXCHANGE_PLACEHOLDERS);
+        }
+
+        /**
+         * Builds the template for the record that collapsed duplicate exchanges are reported in.
+         *
+         * @throws IllegalArgumentException if the template uses a placeholder that is never populated
+         */
+        public LoggingTemplate buildAggregate() {
+            return new LoggingTemplate(aggregateTemplate, AGGREGATE_PLACEHOLDERS);
+        }
     }
-} 
\ No newline at end of file
+}
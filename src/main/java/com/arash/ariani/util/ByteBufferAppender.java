@@ -0,0 +1,70 @@
+package com.arash.ariani.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unsynchronized {@link Appendable} encoding what is appended as UTF-8 straight into a caller-owned
+ * {@link ByteBuffer}. Meant to be reused: {@link #wrap} a buffer, append, then {@link #clear()}.
+ *
+ * <p>Surrogate pairs are only encoded when they arrive within one {@link CharSequence}; a surrogate
+ * appended on its own is written as '?', as {@link LoggingUtils#encodeUtf8} does for unpaired ones.
+ * Once the buffer is full the append methods throw {@link java.nio.BufferOverflowException}, after
+ * writing whatever fitted.
+ */
+public class ByteBufferAppender implements Appendable {
+    private ByteBuffer buffer;
+
+    public ByteBufferAppender wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        return this;
+    }
+
+    public void clear() {
+        this.buffer = null;
+    }
+
+    @Override
+    public Appendable append(CharSequence chars) {
+        LoggingUtils.encodeUtf8(chars != null ? chars : "null", buffer);
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence chars, int start, int end) {
+        return append(chars != null ? chars.subSequence(start, end) : "null");
+    }
+
+    /**
+     * Writes the decimal digits of {@code value} as ASCII, without creating a string.
+     */
+    public ByteBufferAppender appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            LoggingUtils.encodeUtf8(Long.toString(value), buffer);
+            return this;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) {
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (Character.isSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            LoggingUtils.encodeUtf8(String.valueOf(c), buffer);
+        }
+        return this;
+    }
+}
@@ -1,5 +1,6 @@
 package com.arash.ariani.util;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.http.MediaType;
@@ -9,8 +10,11 @@ import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -24,6 +28,13 @@ public class LoggingUtils {
     private static final DateTimeFormatter LOG_DATE_FORMATTER = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
+    /**
+     * Builders growing past this capacity (e.g. after a huge body) are not returned to the pool.
+     */
+    private static final int MAX_POOLED_BUILDER_CAPACITY = 16 * 1024;
+    private static final ObjectPool<StringBuilder> STRING_BUILDERS = new ObjectPool<>(
+        4 * Runtime.getRuntime().availableProcessors(), () -> new StringBuilder(512));
+
     // ANSI escape codes for colors
     public static final String ANSI_RESET = "\u001B[0m";
     public static final String ANSI_RED = "\u001B[31m";
@@ -47,6 +58,34 @@ public class LoggingUtils {
         };
     }
 
+    /**
+     * Same as {@link #colorize(String, boolean)} but appends to {@code out} without concatenating.
+     */
+    public static void appendColorized(Appendable out, String level, boolean enableAnsiColor) throws IOException {
+        String color = enableAnsiColor ? colorFor(level) : null;
+        if (color == null) {
+            out.append(level);
+            return;
+        }
+        out.append(color).append(level).append(ANSI_RESET);
+    }
+
+    private static String colorFor(String level) {
+        return switch (level.toUpperCase()) {
+            case "ERROR" -> ANSI_RED;
+            case "WARN" -> ANSI_YELLOW;
+            case "INFO", "DEBUG", "TRACE" -> ANSI_GREEN;
+            default -> null;
+        };
+    }
+
+    /**
+     * Factory of the shared {@link ObjectMapper}, for streaming generators and parsers.
+     */
+    public static JsonFactory jsonFactory() {
+        return objectMapper.getFactory();
+    }
+
     public static String generateCorrelationId() {
         return UUID.randomUUID().toString();
     }
@@ -57,6 +96,118 @@ public class LoggingUtils {
         );
     }
 
+    public static void appendTimestamp(Appendable out, long epochMillis) throws IOException {
+        try {
+            LOG_DATE_FORMATTER.formatTo(
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()), out
+            );
+        } catch (DateTimeException ex) {
+            // The formatter wraps failures of the target
+            if (ex.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Appends the decimal digits of {@code value}; into a {@link StringBuilder} or a
+     * {@link ByteBufferAppender} without creating a string.
+     */
+    public static void appendLong(Appendable out, long value) throws IOException {
+        if (out instanceof StringBuilder builder) {
+            builder.append(value);
+        } else if (out instanceof ByteBufferAppender appender) {
+            appender.appendLong(value);
+        } else {
+            out.append(Long.toString(value));
+        }
+    }
+
+    /**
+     * Takes an empty builder from a shared pool; hand it back with {@link #releaseStringBuilder}.
+     */
+    public static StringBuilder acquireStringBuilder() {
+        StringBuilder builder = STRING_BUILDERS.acquire();
+        builder.setLength(0);
+        return builder;
+    }
+
+    public static void releaseStringBuilder(StringBuilder builder) {
+        if (builder.capacity() <= MAX_POOLED_BUILDER_CAPACITY) {
+            STRING_BUILDERS.release(builder);
+        }
+    }
+
+    /**
+     * Number of bytes {@code chars} occupies in UTF-8, counting unpaired surrogates as '?'.
+     */
+    public static int utf8Length(CharSequence chars) {
+        return utf8Length(chars, 0, chars.length());
+    }
+
+    /**
+     * Number of bytes the chars from {@code start} to {@code end} occupy in UTF-8.
+     */
+    public static int utf8Length(CharSequence chars, int start, int end) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encodes {@code chars} as UTF-8 straight into {@code out} without an intermediate array.
+     *
+     * @throws java.nio.BufferOverflowException if {@code out} has fewer than
+     *         {@link #utf8Length(CharSequence)} bytes remaining
+     */
+    public static void encodeUtf8(CharSequence chars, ByteBuffer out) {
+        encodeUtf8(chars, 0, chars.length(), out);
+    }
+
+    /**
+     * Encodes the chars from {@code start} to {@code end} as UTF-8 into {@code out}.
+     */
+    public static void encodeUtf8(CharSequence chars, int start, int end, ByteBuffer out) {
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18)));
+                out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
     public static String formatContent(String content, String contentType) {
         if (content == null || content.isEmpty()) {
             return content;
@@ -0,0 +1,56 @@
+package com.arash.ariani.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Small bounded lock-free pool. Unlike a {@link ThreadLocal} cache it stays effective with
+ * virtual threads, which are created per task and would otherwise never see a warm instance,
+ * and it never pins a carrier thread because it takes no monitors.
+ */
+public class ObjectPool<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final Supplier<T> factory;
+
+    public ObjectPool(int capacity, Supplier<T> factory) {
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.factory = factory;
+    }
+
+    /**
+     * Takes a pooled instance, or creates a new one when the pool is empty.
+     */
+    public T acquire() {
+        int start = probe();
+        int length = slots.length();
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            if (slots.get(index) != null) {
+                T instance = slots.getAndSet(index, null);
+                if (instance != null) {
+                    return instance;
+                }
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Returns an instance to the pool; it is dropped if the pool is already full.
+     */
+    public void release(T instance) {
+        int start = probe();
+        int length = slots.length();
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, instance)) {
+                return;
+            }
+        }
+    }
+
+    private int probe() {
+        // Spread contending threads over the slots instead of all racing for slot 0
+        return (int) (Thread.currentThread().getId() % slots.length());
+    }
+}
@@ -0,0 +1,47 @@
+package com.arash.ariani.util;
+
+import java.io.Writer;
+
+/**
+ * Unsynchronized {@link Writer} appending to a caller-owned {@link StringBuilder}.
+ */
+public class StringBuilderWriter extends Writer {
+    private final StringBuilder builder;
+
+    public StringBuilderWriter(StringBuilder builder) {
+        this.builder = builder;
+    }
+
+    public StringBuilder getBuilder() {
+        return builder;
+    }
+
+    @Override
+    public void write(int c) {
+        builder.append((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        builder.append(chars, offset, length);
+    }
+
+    @Override
+    public void write(String str, int offset, int length) {
+        builder.append(str, offset, offset + length);
+    }
+
+    @Override
+    public Writer append(CharSequence chars) {
+        builder.append(chars);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
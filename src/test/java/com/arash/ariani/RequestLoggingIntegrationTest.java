@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.arash.ariani.config.TestConfig;
 import com.arash.ariani.controller.TestController;
 import com.arash.ariani.interceptor.RequestLoggingInterceptor;
+import com.arash.ariani.properties.RequestLoggingProperties;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -29,6 +30,9 @@ class RequestLoggingIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private RequestLoggingProperties properties;
+
     private ListAppender<ILoggingEvent> listAppender;
 
     @BeforeEach
@@ -109,4 +113,25 @@ class RequestLoggingIntegrationTest {
                     assertThat(message).contains("public data");
                 });
     }
-} 
\ No newline at end of file
+
+    @Test
+    void whenExchangeMode_thenLogsSingleRecordWithCorrelationId() throws Exception {
+        properties.setExchangeMode(true);
+        try {
+            mockMvc.perform(get("/test/public"))
+                    .andExpect(status().isOk());
+        } finally {
+            properties.setExchangeMode(false);
+        }
+
+        assertThat(listAppender.list)
+                .extracting(ILoggingEvent::getFormattedMessage)
+                .singleElement()
+                .satisfies(message -> {
+                    assertThat(message).containsPattern("Exchange [0-9a-f-]{36}:");
+                    assertThat(message).contains("Method: GET");
+                    assertThat(message).contains("Status: 200");
+                    assertThat(message).contains("Response Body: public data");
+                });
+    }
+}
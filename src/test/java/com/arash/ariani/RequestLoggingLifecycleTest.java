@@ -0,0 +1,55 @@
+package com.arash.ariani;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestLoggingLifecycleTest {
+
+    @Test
+    void shouldStopEveryBackgroundThreadWhenTheContextCloses() throws Exception {
+        // Other test contexts may be cached with threads of their own
+        Set<Thread> before = Set.copyOf(requestLogThreads());
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TestApplication.class)
+                .properties("server.port=0",
+                        "request.logging.async-logging=true",
+                        "request.logging.async-workers=2",
+                        "request.logging.aggregate-duplicates=true",
+                        "request.logging.slow-request-watchdog=true")
+                .run();
+        List<String> started = requestLogThreads().stream()
+                .filter(thread -> !before.contains(thread))
+                .map(Thread::getName)
+                .collect(Collectors.toList());
+        assertThat(started).containsExactlyInAnyOrder("request-log-worker-1", "request-log-worker-2",
+                "request-log-aggregator", "request-log-watchdog");
+
+        context.close();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        List<Thread> leaked = leakedThreads(before);
+        while (!leaked.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            leaked = leakedThreads(before);
+        }
+        assertThat(leaked).isEmpty();
+    }
+
+    private static List<Thread> leakedThreads(Set<Thread> before) {
+        return requestLogThreads().stream().filter(thread -> !before.contains(thread)).collect(Collectors.toList());
+    }
+
+    private static List<Thread> requestLogThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && thread.getName().startsWith("request-log-"))
+                .collect(Collectors.toList());
+    }
+}
@@ -1,6 +1,7 @@
 package com.arash.ariani.actuator;
 
 import com.arash.ariani.TestApplication;
+import com.arash.ariani.policy.LoggingPolicyResolver;
 import com.arash.ariani.properties.RequestLoggingProperties;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,13 +13,15 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(
     classes = TestApplication.class,
-    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "request.logging.recent-exchanges=100"
 )
 class RequestLoggingEndpointTest {
 
@@ -31,6 +34,9 @@ class RequestLoggingEndpointTest {
     @Autowired
     private RequestLoggingProperties properties;
 
+    @Autowired
+    private LoggingPolicyResolver policyResolver;
+
     @Test
     void shouldGetConfiguration() {
         ResponseEntity<Map> response = restTemplate.getForEntity(
@@ -67,4 +73,51 @@ class RequestLoggingEndpointTest {
         assertThat(properties.isEnabled()).isFalse();
         assertThat(properties.getMaskFields()).isEqualTo("newField1,newField2");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void shouldBreakDownTheCostPerStage() {
+        ResponseEntity<Map> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/actuator/requestlogging/stages",
+                Map.class
+        );
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody()).containsKeys("sampleRate", "stages", "totalMeanMicros");
+        assertThat((Map<String, Object>) response.getBody().get("stages")).containsOnlyKeys("capture", "snapshot", "mask", "write");
+    }
+
+    @Test
+    void shouldNotFindUnknownSections() {
+        ResponseEntity<Map> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/actuator/requestlogging/unknown",
+                Map.class
+        );
+
+        assertThat(response.getStatusCode().value()).isEqualTo(404);
+    }
+
+    @Test
+    void shouldReturnRecentExchangesFilteredServerSide() {
+        boolean enabled = properties.isEnabled();
+        properties.setEnabled(true);
+        policyResolver.invalidate();
+        try {
+            restTemplate.getForEntity("http://localhost:" + port + "/test/public", String.class);
+
+            ResponseEntity<Map> response = restTemplate.getForEntity(
+                    "http://localhost:" + port + "/actuator/requestlogging/recent?route=/test/**&status=2xx&limit=1",
+                    Map.class
+            );
+
+            assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+            assertThat(response.getBody()).containsEntry("capacity", properties.getRecentExchanges());
+            List<Map<String, Object>> exchanges = (List<Map<String, Object>>) response.getBody().get("exchanges");
+            assertThat(exchanges).hasSize(1);
+            assertThat(exchanges.get(0)).containsEntry("method", "GET").containsEntry("uri", "/test/public")
+                    .containsEntry("status", 200);
+        } finally {
+            properties.setEnabled(enabled);
+            policyResolver.invalidate();
+        }
+    }
+}
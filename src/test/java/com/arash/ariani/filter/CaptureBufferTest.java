@@ -0,0 +1,76 @@
+package com.arash.ariani.filter;
+
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaptureBufferTest {
+
+    @Test
+    void shouldSpreadCaptureOverChunksAndReturnThemOnRelease() {
+        CaptureMemory memory = new CaptureMemory(4, true, 1024, null);
+        CaptureBuffer buffer = new CaptureBuffer(10, memory);
+
+        buffer.write("hello world".getBytes(StandardCharsets.UTF_8), 0, 11);
+
+        assertThat(new String(buffer.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("hello worl");
+        assertThat(buffer.getTotalSize()).isEqualTo(11);
+        assertThat(memory.getReservedBytes()).isEqualTo(12);
+
+        buffer.release();
+        assertThat(memory.getReservedBytes()).isZero();
+    }
+
+    @Test
+    void shouldReturnSingleHeapChunkWithoutCopying() {
+        CaptureMemory memory = new CaptureMemory(16, false, 1024, null);
+        CaptureBuffer buffer = new CaptureBuffer(16, memory);
+
+        buffer.write("abc".getBytes(StandardCharsets.UTF_8), 0, 3);
+
+        assertThat(buffer.array()).hasSize(16).startsWith('a', 'b', 'c');
+        assertThat(buffer.size()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldDegradeAndCountWhenBudgetIsExhausted() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        CaptureMemory memory = new CaptureMemory(4, false, 8, new RequestLoggingMetrics(registry));
+        CaptureBuffer first = new CaptureBuffer(8, memory);
+        CaptureBuffer second = new CaptureBuffer(8, memory);
+
+        first.write("12345678".getBytes(StandardCharsets.UTF_8), 0, 8);
+        second.write("abcd".getBytes(StandardCharsets.UTF_8), 0, 4);
+
+        assertThat(first.isDegraded()).isFalse();
+        assertThat(second.isDegraded()).isTrue();
+        assertThat(second.size()).isZero();
+        assertThat(second.getTotalSize()).isEqualTo(4);
+        assertThat(registry.get("request.logger.capture.degraded").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("request.logger.capture.memory.used").gauge().value()).isEqualTo(8.0);
+
+        first.release();
+        CaptureBuffer third = new CaptureBuffer(8, memory);
+        third.write('x');
+        assertThat(third.isDegraded()).isFalse();
+        assertThat(third.toByteArray()).containsExactly('x');
+    }
+
+    @Test
+    void shouldOnlyCountWritesAfterRelease() {
+        CaptureMemory memory = new CaptureMemory(4, false, 1024, null);
+        CaptureBuffer buffer = new CaptureBuffer(8, memory);
+
+        buffer.release();
+        buffer.write('x');
+
+        assertThat(buffer.size()).isZero();
+        assertThat(buffer.getTotalSize()).isEqualTo(1);
+        assertThat(memory.getReservedBytes()).isZero();
+    }
+}
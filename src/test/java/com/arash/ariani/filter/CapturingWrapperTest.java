@@ -0,0 +1,90 @@
+package com.arash.ariani.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CapturingWrapperTest {
+
+    @Test
+    void shouldPassRequestBodyThroughAndCaptureOnlyUpToLimit() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+        request.setContent("0123456789".getBytes(StandardCharsets.UTF_8));
+        CapturingRequestWrapper wrapper = new CapturingRequestWrapper(request, 4);
+
+        byte[] read = wrapper.getInputStream().readAllBytes();
+
+        assertThat(new String(read, StandardCharsets.UTF_8)).isEqualTo("0123456789");
+        assertThat(wrapper.getCapture().toByteArray()).isEqualTo("0123".getBytes(StandardCharsets.UTF_8));
+        assertThat(wrapper.getCapture().getTotalSize()).isEqualTo(10);
+        assertThat(wrapper.getCapture().isTruncated()).isTrue();
+    }
+
+    @Test
+    void shouldCaptureFormParametersConsumedByTheContainer() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/form");
+        request.setContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+        request.addParameter("name", "john doe");
+        CapturingRequestWrapper wrapper = new CapturingRequestWrapper(request, 100);
+
+        assertThat(wrapper.getParameter("name")).isEqualTo("john doe");
+        assertThat(new String(wrapper.getCapture().toByteArray(), StandardCharsets.UTF_8)).isEqualTo("name=john+doe");
+    }
+
+    @Test
+    void shouldStreamResponseToClientWhileCapturing() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        CapturingResponseWrapper wrapper = new CapturingResponseWrapper(response, 5);
+
+        wrapper.getOutputStream().write("hello world".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(response.getContentAsString()).isEqualTo("hello world");
+        assertThat(wrapper.getCapture().toByteArray()).isEqualTo("hello".getBytes(StandardCharsets.UTF_8));
+        assertThat(wrapper.getCapture().getTotalSize()).isEqualTo(11);
+    }
+
+    @Test
+    void shouldForwardFlushesImmediately() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        CapturingResponseWrapper wrapper = new CapturingResponseWrapper(response, 5);
+
+        PrintWriter writer = wrapper.getWriter();
+        writer.write("first chunk");
+        assertThat(response.isCommitted()).isFalse();
+        writer.flush();
+
+        assertThat(response.isCommitted()).isTrue();
+        assertThat(response.getContentAsString()).isEqualTo("first chunk");
+    }
+
+    @Test
+    void shouldFlushPendingWriterOutputWhenCaptureIsRead() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding("UTF-8");
+        CapturingResponseWrapper wrapper = new CapturingResponseWrapper(response, 100);
+
+        PrintWriter writer = wrapper.getWriter();
+        writer.write("café");
+
+        assertThat(new String(wrapper.getCapture().toByteArray(), StandardCharsets.UTF_8)).isEqualTo("café");
+        assertThat(response.getContentAsString()).isEqualTo("café");
+    }
+
+    @Test
+    void shouldDiscardCaptureWhenResponseBufferIsReset() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        CapturingResponseWrapper wrapper = new CapturingResponseWrapper(response, 100);
+
+        wrapper.getOutputStream().write("partial".getBytes(StandardCharsets.UTF_8));
+        wrapper.resetBuffer();
+
+        assertThat(wrapper.getCapture().size()).isZero();
+        assertThat(wrapper.getCapture().getTotalSize()).isZero();
+    }
+}
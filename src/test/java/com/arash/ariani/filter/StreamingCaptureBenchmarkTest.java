@@ -0,0 +1,168 @@
+package com.arash.ariani.filter;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Streams a large response through the filter and reports time to first byte and peak heap, compared
+ * with no filter and with the content caching wrapper the filter used before. Excluded from the
+ * regular build; run with {@code mvn test -Dgroups=benchmark -DexcludedTestGroups=none}.
+ */
+@Tag("benchmark")
+class StreamingCaptureBenchmarkTest {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS = 800;
+    private static final long CHUNK_DELAY_NANOS = 50_000;
+
+    @Test
+    void reportTimeToFirstByteAndPeakHeap() throws Exception {
+        run("warm-up", new RequestLoggingFilter());
+
+        Result baseline = run("no filter", null);
+        Result capturing = run("request logging filter", new RequestLoggingFilter());
+        Result caching = run("content caching wrapper", new ContentCachingFilter());
+
+        assertThat(capturing.timeToFirstByteNanos).isLessThan(capturing.totalNanos / 10);
+        assertThat(caching.timeToFirstByteNanos).isGreaterThan(caching.totalNanos / 2);
+        assertThat(capturing.peakHeapBytes).isLessThan(baseline.peakHeapBytes + (long) CHUNK_SIZE * CHUNKS / 4);
+    }
+
+    private Result run(String name, Filter filter) throws Exception {
+        System.gc();
+        resetPeakHeap();
+        long baselineHeap = usedHeap();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/export");
+        TimingResponse response = new TimingResponse(new MockHttpServletResponse());
+        MockFilterChain chain = filter != null
+                ? new MockFilterChain(new StreamingServlet(), filter)
+                : new MockFilterChain(new StreamingServlet());
+
+        long start = System.nanoTime();
+        chain.doFilter(request, response);
+        long total = System.nanoTime() - start;
+
+        Result result = new Result(response.firstByteNanos - start, total, peakHeap() - baselineHeap);
+        System.out.printf("%-25s ttfb=%8.2f ms  total=%8.2f ms  peak heap=%8.2f MB  bytes=%d%n", name,
+                result.timeToFirstByteNanos / 1e6, result.totalNanos / 1e6, result.peakHeapBytes / 1048576.0,
+                response.bytes);
+        assertThat(response.bytes).isEqualTo((long) CHUNK_SIZE * CHUNKS);
+        return result;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private record Result(long timeToFirstByteNanos, long totalNanos, long peakHeapBytes) {
+    }
+
+    /**
+     * Writes the export in chunks and flushes after each, like a CSV export or file download would.
+     */
+    private static class StreamingServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            ServletOutputStream out = response.getOutputStream();
+            for (int i = 0; i < CHUNKS; i++) {
+                out.write(chunk);
+                out.flush();
+                long until = System.nanoTime() + CHUNK_DELAY_NANOS;
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+
+    private static class ContentCachingFilter extends OncePerRequestFilter {
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        jakarta.servlet.FilterChain filterChain) throws IOException,
+                jakarta.servlet.ServletException {
+            ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+            try {
+                filterChain.doFilter(request, wrapper);
+            } finally {
+                wrapper.copyBodyToResponse();
+            }
+        }
+    }
+
+    /**
+     * Stands in for the client connection: discards bytes and records when the first one arrived.
+     */
+    private static class TimingResponse extends HttpServletResponseWrapper {
+        private long firstByteNanos;
+        private long bytes;
+
+        TimingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[] {(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    if (bytes == 0 && len > 0) {
+                        firstByteNanos = System.nanoTime();
+                    }
+                    bytes += len;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+        }
+    }
+}
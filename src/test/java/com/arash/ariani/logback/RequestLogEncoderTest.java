@@ -0,0 +1,40 @@
+package com.arash.ariani.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+import com.arash.ariani.template.LoggingTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestLogEncoderTest {
+
+    private final Logger logger = new LoggerContext().getLogger(RequestLogEncoderTest.class);
+    private final RequestLogEncoder encoder = new RequestLogEncoder();
+
+    @Test
+    void shouldRenderLogEventArgumentWithItsTemplate() {
+        ResponseLogEvent event = new ResponseLogEvent();
+        event.setTemplate(new LoggingTemplate("Status: {{status}} in {{duration}}ms"));
+        event.setStatus(201);
+        event.setDuration(7);
+
+        byte[] encoded = encoder.encode(
+            new LoggingEvent(Logger.FQCN, logger, Level.INFO, "{}", null, new Object[] {event}));
+
+        assertThat(new String(encoded, StandardCharsets.UTF_8)).isEqualTo("Status: 201 in 7ms" + System.lineSeparator());
+    }
+
+    @Test
+    void shouldFallBackToFormattedMessage() {
+        byte[] encoded = encoder.encode(
+            new LoggingEvent(Logger.FQCN, logger, Level.INFO, "plain {}", null, new Object[] {"message"}));
+
+        assertThat(new String(encoded, StandardCharsets.UTF_8)).isEqualTo("plain message" + System.lineSeparator());
+    }
+}
@@ -0,0 +1,64 @@
+package com.arash.ariani.masking;
+
+import com.arash.ariani.util.LoggingUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonFieldMaskerTest {
+
+    private final JsonFieldMasker masker = new JsonFieldMasker(LoggingUtils.jsonFactory(),
+            Map.of("password", "***", "card.number", "****", "card.holder.name", "[hidden]"), null);
+
+    @Test
+    void shouldMaskFieldsAtAnyDepthAndDottedPathsFromRoot() {
+        String json = """
+            {"user":{"name":"john","password":"secret"},
+             "card":{"number":"4111111111111111","cvv":123,"holder":{"name":"John Doe"}},
+             "items":[{"number":"not-a-card"}],
+             "password":{"nested":"object"}}
+            """;
+
+        assertThat(mask(json, 1000)).isEqualTo(
+            "{\"user\":{\"name\":\"john\",\"password\":\"***\"},"
+                + "\"card\":{\"number\":\"****\",\"cvv\":123,\"holder\":{\"name\":\"[hidden]\"}},"
+                + "\"items\":[{\"number\":\"not-a-card\"}],"
+                + "\"password\":\"***\"}");
+    }
+
+    @Test
+    void shouldFollowPathsThroughArrays() {
+        JsonFieldMasker arrayMasker = new JsonFieldMasker(LoggingUtils.jsonFactory(),
+                Map.of("cards.number", "****"), null);
+        byte[] content = "{\"cards\":[{\"number\":\"1\"},{\"number\":\"2\"}]}".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(arrayMasker.mask(content, 0, content.length, 1000))
+            .isEqualTo("{\"cards\":[{\"number\":\"****\"},{\"number\":\"****\"}]}");
+    }
+
+    @Test
+    void shouldStopAtMaxLength() {
+        String masked = mask("{\"password\":\"secret\",\"data\":\"" + "x".repeat(10_000) + "\"}", 30);
+
+        assertThat(masked).hasSize(30).startsWith("{\"password\":\"***\"");
+    }
+
+    @Test
+    void shouldKeepMaskedPrefixOfTruncatedInput() {
+        assertThat(mask("{\"password\":\"secret\",\"name\":\"jo", 1000)).isEqualTo("{\"password\":\"***\",\"name\"");
+    }
+
+    @Test
+    void shouldRejectContentThatIsNotJson() {
+        assertThat(mask("password=secret", 1000)).isNull();
+        assertThat(mask("{invalid json}", 1000)).isNull();
+    }
+
+    private String mask(String json, int maxLength) {
+        byte[] content = json.getBytes(StandardCharsets.UTF_8);
+        return masker.mask(content, 0, content.length, maxLength);
+    }
+}
@@ -0,0 +1,52 @@
+package com.arash.ariani.masking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordPrefilterTest {
+
+    @Test
+    void shouldReportEveryRuleWhoseKeywordOccurs() {
+        KeywordPrefilter prefilter = new KeywordPrefilter(List.of("password", "word", "token", "ssn"));
+
+        assertThat(scan(prefilter, "{\"user\":\"john\",\"Password\":\"x\"}")).isEqualTo(0b0011L);
+        assertThat(scan(prefilter, "{\"accessToken\":\"x\",\"ssn\":\"1\"}")).isEqualTo(0b1100L);
+        assertThat(scan(prefilter, "{\"name\":\"john\"}")).isZero();
+    }
+
+    @Test
+    void shouldMatchOverlappingKeywordsThroughFailureLinks() {
+        KeywordPrefilter prefilter = new KeywordPrefilter(List.of("abcd", "bc", "cde"));
+
+        assertThat(scan(prefilter, "xabcex")).isEqualTo(0b010L);
+        assertThat(scan(prefilter, "abcde")).isEqualTo(0b111L);
+    }
+
+    @Test
+    void shouldAlwaysReportRulesWithoutKeyword() {
+        KeywordPrefilter prefilter = new KeywordPrefilter(Arrays.asList("password", null));
+
+        assertThat(scan(prefilter, "nothing here")).isEqualTo(0b10L);
+    }
+
+    @Test
+    void shouldSkipMaskingWhenNoFieldOccurs() {
+        Masker masker = MaskingEngine.createMasker(
+            MaskingEngine.globalFields("password"), List.of(), null);
+        byte[] clean = "{\"name\":\"john\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] sensitive = "{ \"password\" : \"secret\" }".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(masker.mask(clean, 0, clean.length, 1000)).isEqualTo("{\"name\":\"john\"}");
+        assertThat(masker.mask(sensitive, 0, sensitive.length, 1000)).isEqualTo("{\"password\":\"***\"}");
+    }
+
+    private static long scan(KeywordPrefilter prefilter, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return prefilter.scan(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,84 @@
+package com.arash.ariani.masking;
+
+import com.arash.ariani.annotation.LogRequest;
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MaskingEngineTest {
+
+    private MeterRegistry registry;
+    private RequestLoggingProperties properties;
+    private MaskingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        properties = new RequestLoggingProperties();
+        RequestLoggingProperties.MaskingPattern pattern = new RequestLoggingProperties.MaskingPattern();
+        pattern.setFieldName("ssn");
+        pattern.setPattern("\\d{3}-\\d{2}-(\\d{4})");
+        pattern.setReplacement("***-**-$1");
+        properties.setMaskingPatterns(List.of(pattern));
+        engine = new MaskingEngine(properties, new RequestLoggingMetrics(registry));
+    }
+
+    @Test
+    void shouldApplyAnnotationRulesBeforeGlobalRules() throws Exception {
+        LogRequest logRequest = MaskingEngineTest.class.getDeclaredMethod("annotated").getAnnotation(LogRequest.class);
+
+        String masked = engine.maskerFor(logRequest)
+                .mask("{\"password\": \"p@\\\"ss\", \"token\":\"abc\", \"ssn\":\"123-45-6789\"}");
+
+        assertThat(masked).isEqualTo("{\"password\":\"***\", \"token\":\"MASKED-TOKEN\", \"ssn\":\"***-**-6789\"}");
+        assertThat(registry.get("request.logger.masked.fields").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void shouldCacheMaskersPerAnnotationAndSnapshot() throws Exception {
+        LogRequest logRequest = MaskingEngineTest.class.getDeclaredMethod("annotated").getAnnotation(LogRequest.class);
+
+        assertThat(engine.maskerFor(logRequest)).isSameAs(engine.maskerFor(logRequest));
+        assertThat(engine.maskerFor(null)).isSameAs(engine.globalMasker());
+    }
+
+    @Test
+    void shouldRebuildRulesWhenMaskFieldsChange() {
+        String content = "{\"secret\":\"value\"}";
+        assertThat(engine.globalMasker().mask(content)).isSameAs(content);
+
+        properties.setMaskFields("secret, other");
+
+        assertThat(engine.globalMasker().mask(content)).isEqualTo("{\"secret\":\"***\"}");
+        assertThat(registry.get("request.logger.masked.fields").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldApplyPatternRulesToJsonBodiesBeyondSixtyFourFields() {
+        RequestLoggingProperties.MaskingPattern card = new RequestLoggingProperties.MaskingPattern();
+        card.setPattern("\\d{4}-\\d{4}-\\d{4}-(\\d{4})");
+        card.setReplacement("****-****-****-$1");
+        properties.setMaskingPatterns(List.of(card));
+        properties.setMaskFields(IntStream.range(0, 70).mapToObj(i -> "field" + i).collect(Collectors.joining(",")));
+        byte[] body = "{\"field0\":\"secret\",\"field69\":\"secret\",\"note\":\"paid with 1234-5678-9012-3456\"}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        String masked = engine.globalMasker().mask(body, 0, body.length, Integer.MAX_VALUE);
+
+        assertThat(masked).doesNotContain("secret", "1234-5678-9012").contains("****-****-****-3456");
+    }
+
+    @LogRequest(maskPatterns = {"password:.*:***", "token:.*:MASKED-TOKEN"})
+    private void annotated() {
+    }
+}
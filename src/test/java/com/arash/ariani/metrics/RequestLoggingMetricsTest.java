@@ -6,6 +6,7 @@ import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -69,4 +70,52 @@ class RequestLoggingMetricsTest {
         assertThat(registry.get("request.logger.processing.time").timer()).isNotNull();
         assertThat(registry.get("request.logger.errors").counter()).isNotNull();
     }
-} 
\ No newline at end of file
+
+    @Test
+    void shouldReportPrefilterSkipRatio() {
+        metrics.incrementPrefilterSkips();
+        metrics.incrementPrefilterSkips();
+        metrics.incrementPrefilterSkips();
+        metrics.incrementPrefilterHits();
+
+        assertThat(registry.get("request.logger.masking.prefilter").tag("result", "skip").counter().count())
+                .isEqualTo(3.0);
+        assertThat(registry.get("request.logger.masking.prefilter.skip.ratio").gauge().value()).isEqualTo(0.75);
+    }
+
+    @Test
+    void shouldRecordStagesAndBreakThemDown() {
+        metrics.recordStage(Stage.MASK, TimeUnit.MICROSECONDS.toNanos(30));
+        metrics.recordStage(Stage.MASK, TimeUnit.MICROSECONDS.toNanos(10));
+        metrics.recordStage(Stage.WRITE, TimeUnit.MICROSECONDS.toNanos(5));
+
+        assertThat(registry.get("request.logger.stage").tag("stage", "mask").timer().count()).isEqualTo(2);
+        Map<String, Object> breakdown = metrics.stageBreakdown();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stages = (Map<String, Object>) breakdown.get("stages");
+        assertThat(stages).containsOnlyKeys("capture", "snapshot", "mask", "write");
+        assertThat((Map<String, Object>) stages.get("mask"))
+                .containsEntry("count", 2L)
+                .containsEntry("meanMicros", 20.0)
+                .containsEntry("maxMicros", 30.0);
+        assertThat(breakdown.get("totalMeanMicros")).isEqualTo(25.0);
+    }
+
+    @Test
+    void shouldSampleStagesAtTheConfiguredRate() {
+        metrics.setStageSampleRate(0);
+        assertThat(metrics.sampleStages()).isFalse();
+
+        metrics.setStageSampleRate(1);
+        assertThat(metrics.sampleStages()).isTrue();
+
+        metrics.setStageSampleRate(0.25);
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (metrics.sampleStages()) {
+                sampled++;
+            }
+        }
+        assertThat(sampled).isBetween(2_000, 3_000);
+    }
+}
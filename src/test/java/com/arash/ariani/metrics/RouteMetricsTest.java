@@ -0,0 +1,108 @@
+package com.arash.ariani.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteMetricsTest {
+
+    private MeterRegistry registry;
+    private RouteMetrics routeMetrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        routeMetrics = new RequestLoggingMetrics(registry)
+                .routeMetrics(2, List.of(Duration.ofMillis(100), Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void shouldTagLatencyWithTheMappingTemplate() {
+        RouteMetrics.Route route = routeMetrics.forRequest(request("/users/{id}"));
+        route.record(TimeUnit.MILLISECONDS.toNanos(50), 200);
+        route.record(TimeUnit.MILLISECONDS.toNanos(500), 200);
+
+        Timer timer = registry.get("request.logger.route.latency").tag("route", "/users/{id}").timer();
+        assertThat(timer.count()).isEqualTo(2);
+        assertThat(timer.takeSnapshot().histogramCounts())
+                .extracting(CountAtBucket::count)
+                .containsExactly(1.0, 2.0);
+    }
+
+    @Test
+    void shouldResolveMetersOncePerTemplate() {
+        RouteMetrics.Route first = routeMetrics.forRequest(request("/users/{id}"));
+        RouteMetrics.Route second = routeMetrics.forRequest(request("/users/{id}"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.getName()).isEqualTo("/users/{id}");
+    }
+
+    @Test
+    void shouldTellApartThePathsOfOneHandler() {
+        RouteMetrics.Route users = routeMetrics.forRequest(request("/users/{id}"));
+        RouteMetrics.Route members = routeMetrics.forRequest(request("/members/{id}"));
+
+        assertThat(users.getName()).isEqualTo("/users/{id}");
+        assertThat(members.getName()).isEqualTo("/members/{id}");
+    }
+
+    @Test
+    void shouldCountResponsesByStatusClass() {
+        RouteMetrics.Route route = routeMetrics.forRequest(request("/users/{id}"));
+        route.record(1, 200);
+        route.record(1, 204);
+        route.record(1, 404);
+        route.record(1, 503);
+
+        assertThat(responses("/users/{id}", "2xx")).isEqualTo(2.0);
+        assertThat(responses("/users/{id}", "4xx")).isEqualTo(1.0);
+        assertThat(responses("/users/{id}", "5xx")).isEqualTo(1.0);
+        assertThat(responses("/users/{id}", "3xx")).isZero();
+    }
+
+    @Test
+    void shouldShareTheOtherRouteBeyondTheCap() {
+        routeMetrics.forRequest(request("/users/{id}"));
+        routeMetrics.forRequest(request("/orders"));
+        RouteMetrics.Route overflow = routeMetrics.forRequest(request("/payments"));
+        RouteMetrics.Route another = routeMetrics.forRequest(request("/refunds"));
+        RouteMetrics.Route known = routeMetrics.forRequest(request("/users/{id}"));
+
+        assertThat(overflow.getName()).isEqualTo(RouteMetrics.OTHER_ROUTE);
+        assertThat(another).isSameAs(overflow);
+        assertThat(known.getName()).isEqualTo("/users/{id}");
+        assertThat(registry.find("request.logger.route.latency").timers()).hasSize(3);
+    }
+
+    @Test
+    void shouldFallBackToUnknownWithoutAPatternWithoutPinningIt() {
+        RouteMetrics.Route route = routeMetrics.forRequest(new MockHttpServletRequest());
+
+        assertThat(route.getName()).isEqualTo(RouteMetrics.UNKNOWN_ROUTE);
+        assertThat(routeMetrics.forRequest(request("/users/{id}")).getName()).isEqualTo("/users/{id}");
+    }
+
+    private double responses(String route, String status) {
+        return registry.get("request.logger.route.responses").tag("route", route).tag("status", status)
+                .counter().count();
+    }
+
+    private static MockHttpServletRequest request(String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        return request;
+    }
+
+}
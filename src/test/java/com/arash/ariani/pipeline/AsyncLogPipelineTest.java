@@ -0,0 +1,170 @@
+package com.arash.ariani.pipeline;
+
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.properties.RequestLoggingProperties.Backpressure;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncLogPipelineTest {
+
+    private MeterRegistry registry;
+    private RequestLoggingMetrics metrics;
+    private final List<String> logged = new CopyOnWriteArrayList<>();
+    private final CountDownLatch workerBlocked = new CountDownLatch(1);
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private AsyncLogPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new RequestLoggingMetrics(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        if (pipeline != null) {
+            pipeline.shutdown(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void shouldLogSnapshotsOnWorkerThread() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch handled = new CountDownLatch(1);
+        pipeline = new AsyncLogPipeline(4, 1, Backpressure.DROP_NEWEST, Duration.ZERO, 1.0, batch -> {
+            threads.add(Thread.currentThread().getName());
+            batch.forEach(snapshot -> logged.add(snapshot.getUri()));
+            handled.countDown();
+        }, metrics);
+        pipeline.start();
+
+        offer("/a");
+
+        assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(logged).containsExactly("/a");
+        assertThat(threads).containsExactly("request-log-worker-1");
+    }
+
+    @Test
+    void shouldHandDrainedSnapshotsToHandlerAsOneBatch() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        pipeline = new AsyncLogPipeline(8, 1, Backpressure.DROP_NEWEST, Duration.ZERO, 1.0, batch -> {
+            batchSizes.add(batch.size());
+            workerBlocked.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, metrics);
+        pipeline.start();
+        offer("/0");
+        assertThat(workerBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 1; i <= 5; i++) {
+            offer("/" + i);
+        }
+        unblock.countDown();
+        pipeline.shutdown(Duration.ofSeconds(5));
+
+        assertThat(batchSizes).containsExactly(1, 5);
+    }
+
+    @Test
+    void shouldDropNewestWhenFull() throws Exception {
+        pipeline = blockedPipeline(Backpressure.DROP_NEWEST);
+
+        offer("/2");
+        offer("/3");
+        offer("/4");
+        unblock.countDown();
+        pipeline.shutdown(Duration.ofSeconds(5));
+
+        assertThat(logged).containsExactly("/1", "/2", "/3");
+        assertThat(dropped("newest")).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldDropOldestWhenFull() throws Exception {
+        pipeline = blockedPipeline(Backpressure.DROP_OLDEST);
+
+        offer("/2");
+        offer("/3");
+        offer("/4");
+        unblock.countDown();
+        pipeline.shutdown(Duration.ofSeconds(5));
+
+        assertThat(logged).containsExactly("/1", "/3", "/4");
+        assertThat(dropped("oldest")).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldDropAfterBlockTimeout() throws Exception {
+        pipeline = blockedPipeline(Backpressure.BLOCK);
+
+        offer("/2");
+        offer("/3");
+        long start = System.nanoTime();
+        offer("/4");
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(20).toNanos());
+        assertThat(dropped("timeout")).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldSampleOnceHalfFull() throws Exception {
+        pipeline = blockedPipeline(Backpressure.SAMPLE);
+
+        offer("/2");
+        offer("/3");
+
+        assertThat(dropped("sampled")).isEqualTo(1.0);
+        assertThat(registry.get("request.logger.pipeline.depth").gauge().value()).isEqualTo(1.0);
+    }
+
+    /**
+     * A pipeline with two slots whose single worker is stuck on the first snapshot.
+     */
+    private AsyncLogPipeline blockedPipeline(Backpressure backpressure) throws Exception {
+        AsyncLogPipeline blocked = new AsyncLogPipeline(2, 1, backpressure, Duration.ofMillis(20), 0.0, batch -> {
+            batch.forEach(snapshot -> logged.add(snapshot.getUri()));
+            if (logged.contains("/1") && workerBlocked.getCount() > 0) {
+                workerBlocked.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, metrics);
+        pipeline = blocked;
+        blocked.start();
+        offer("/1");
+        assertThat(workerBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        return blocked;
+    }
+
+    private void offer(String uri) {
+        long sequence = pipeline.claim();
+        if (sequence >= 0) {
+            pipeline.get(sequence).setUri(uri);
+            pipeline.publish(sequence);
+        }
+    }
+
+    private double dropped(String reason) {
+        return registry.get("request.logger.pipeline.dropped").tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,87 @@
+package com.arash.ariani.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicateAggregatorTest {
+
+    private final List<DuplicateAggregator.Run> closed = new CopyOnWriteArrayList<>();
+
+    @Test
+    void shouldLogFirstExchangeAndCountTheRest() {
+        DuplicateAggregator aggregator = new DuplicateAggregator(Duration.ofMinutes(1), 100, closed::addAll, null);
+        long fingerprint = DuplicateAggregator.fingerprint("GET", "/orders", 503, null, "-", "busy");
+
+        assertThat(offer(aggregator, fingerprint, "id-1", 10)).isTrue();
+        assertThat(offer(aggregator, fingerprint, "id-2", 20)).isFalse();
+        assertThat(offer(aggregator, fingerprint, "id-3", 40)).isFalse();
+        aggregator.shutdown();
+
+        assertThat(closed).hasSize(1);
+        DuplicateAggregator.Run run = closed.get(0);
+        assertThat(run.getCorrelationId()).isEqualTo("id-1");
+        assertThat(run.getCount()).isEqualTo(2);
+        assertThat(run.getMinDuration()).isEqualTo(20);
+        assertThat(run.getAvgDuration()).isEqualTo(30);
+        assertThat(run.getMaxDuration()).isEqualTo(40);
+    }
+
+    @Test
+    void shouldNotReportRunsWithoutDuplicates() {
+        DuplicateAggregator aggregator = new DuplicateAggregator(Duration.ofMinutes(1), 100, closed::addAll, null);
+
+        offer(aggregator, DuplicateAggregator.fingerprint("GET", "/orders", 200, null, "-", "a"), "id-1", 10);
+        offer(aggregator, DuplicateAggregator.fingerprint("GET", "/orders", 200, null, "-", "b"), "id-2", 10);
+        aggregator.shutdown();
+
+        assertThat(closed).isEmpty();
+    }
+
+    @Test
+    void shouldStartANewRunOnceTheWindowClosed() throws Exception {
+        DuplicateAggregator aggregator = new DuplicateAggregator(Duration.ofMillis(20), 100, closed::addAll, null);
+        aggregator.start();
+        long fingerprint = DuplicateAggregator.fingerprint("GET", "/orders", 200, null, "-", "-");
+        offer(aggregator, fingerprint, "id-1", 1);
+        offer(aggregator, fingerprint, "id-2", 1);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (closed.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThat(closed).extracting(DuplicateAggregator.Run::getCount).containsExactly(1L);
+        assertThat(offer(aggregator, fingerprint, "id-3", 1)).isTrue();
+        aggregator.shutdown();
+    }
+
+    @Test
+    void shouldLogEverythingOnceTheMapIsFull() {
+        DuplicateAggregator aggregator = new DuplicateAggregator(Duration.ofMinutes(1), 2, closed::addAll, null);
+        for (int i = 0; i < 5; i++) {
+            offer(aggregator, DuplicateAggregator.fingerprint("GET", "/orders/" + i, 200, null, "-", "-"), "id", 1);
+        }
+        long overflow = DuplicateAggregator.fingerprint("GET", "/orders/4", 200, null, "-", "-");
+
+        assertThat(aggregator.getOpenRuns()).isEqualTo(2);
+        assertThat(offer(aggregator, overflow, "id", 1)).isTrue();
+        aggregator.shutdown();
+    }
+
+    @Test
+    void shouldFingerprintFieldBoundaries() {
+        assertThat(DuplicateAggregator.fingerprint("GET", "/ab", 200, null, "c", "-"))
+                .isNotEqualTo(DuplicateAggregator.fingerprint("GET", "/a", 200, null, "bc", "-"));
+        assertThat(DuplicateAggregator.fingerprint("GET", "/a", 200, "boom", "-", "-"))
+                .isNotEqualTo(DuplicateAggregator.fingerprint("GET", "/a", 200, null, "-", "-"));
+    }
+
+    private static boolean offer(DuplicateAggregator aggregator, long fingerprint, String correlationId, long duration) {
+        return aggregator.offer(fingerprint, "GET", "/orders", 503, correlationId, 1L, "INFO", duration);
+    }
+}
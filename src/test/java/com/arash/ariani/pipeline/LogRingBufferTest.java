@@ -0,0 +1,90 @@
+package com.arash.ariani.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogRingBufferTest {
+
+    @Test
+    void shouldRoundCapacityUpToPowerOfTwo() {
+        assertThat(new LogRingBuffer<>(1, Object::new).capacity()).isEqualTo(1);
+        assertThat(new LogRingBuffer<>(5, Object::new).capacity()).isEqualTo(8);
+        assertThat(new LogRingBuffer<>(8, Object::new).capacity()).isEqualTo(8);
+    }
+
+    @Test
+    void shouldRejectClaimsWhenFullAndReuseReleasedSlots() {
+        LogRingBuffer<int[]> ring = new LogRingBuffer<>(2, () -> new int[1]);
+
+        long first = ring.tryClaim();
+        long second = ring.tryClaim();
+        assertThat(ring.tryClaim()).isEqualTo(-1);
+        assertThat(ring.tryConsume()).isEqualTo(-1);
+
+        ring.get(first)[0] = 1;
+        ring.publish(first);
+        ring.publish(second);
+
+        long consumed = ring.tryConsume();
+        assertThat(consumed).isEqualTo(first);
+        assertThat(ring.get(consumed)[0]).isEqualTo(1);
+        ring.release(consumed);
+
+        assertThat(ring.tryClaim()).isEqualTo(2);
+        assertThat(ring.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldDeliverEveryEntryExactlyOnceWithConcurrentProducersAndConsumers() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        LogRingBuffer<long[]> ring = new LogRingBuffer<>(64, () -> new long[1]);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger consumed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers);
+
+        Thread[] consumers = new Thread[2];
+        for (int c = 0; c < consumers.length; c++) {
+            consumers[c] = new Thread(() -> {
+                while (consumed.get() < producers * perProducer) {
+                    long sequence = ring.tryConsume();
+                    if (sequence < 0) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    seen.add(ring.get(sequence)[0]);
+                    ring.release(sequence);
+                    consumed.incrementAndGet();
+                }
+            });
+            consumers[c].start();
+        }
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long sequence;
+                    while ((sequence = ring.tryClaim()) < 0) {
+                        Thread.onSpinWait();
+                    }
+                    ring.get(sequence)[0] = base + i;
+                    ring.publish(sequence);
+                }
+                done.countDown();
+            }).start();
+        }
+
+        done.await();
+        for (Thread consumer : consumers) {
+            consumer.join(10_000);
+        }
+        assertThat(consumed.get()).isEqualTo(producers * perProducer);
+        assertThat(seen).hasSize(producers * perProducer);
+    }
+}
@@ -0,0 +1,86 @@
+package com.arash.ariani.pipeline;
+
+import com.arash.ariani.event.StackSample;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowRequestWatchdogTest {
+
+    @Test
+    void shouldNotSampleFastExchanges() {
+        SlowRequestWatchdog watchdog = new SlowRequestWatchdog(Duration.ofMinutes(1), Duration.ofMillis(1), 5, 32);
+
+        SlowRequestWatchdog.InFlight exchange = watchdog.watch();
+        assertThat(watchdog.getInFlight()).isEqualTo(1);
+        watchdog.sample();
+
+        assertThat(watchdog.finish(exchange)).isEmpty();
+        assertThat(watchdog.getInFlight()).isZero();
+        watchdog.shutdown();
+    }
+
+    @Test
+    void shouldSampleTheStackOfSlowExchangesUpToTheLimit() throws Exception {
+        SlowRequestWatchdog watchdog = new SlowRequestWatchdog(Duration.ofMillis(20), Duration.ofMillis(5), 3, 64);
+        watchdog.start();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<List<StackSample>> samples = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            SlowRequestWatchdog.InFlight exchange = watchdog.watch();
+            awaitQuietly(done);
+            samples.set(watchdog.finish(exchange));
+        });
+        worker.start();
+
+        Thread.sleep(200);
+        done.countDown();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        watchdog.shutdown();
+
+        assertThat(samples.get()).hasSize(3);
+        assertThat(samples.get()).allSatisfy(sample -> {
+            assertThat(sample.elapsedMillis()).isGreaterThanOrEqualTo(20);
+            assertThat(sample.frames()).anySatisfy(frame -> assertThat(frame.getMethodName()).isEqualTo("awaitQuietly"));
+        });
+        assertThat(samples.get().get(2).elapsedMillis()).isGreaterThan(samples.get().get(0).elapsedMillis());
+    }
+
+    @Test
+    void shouldCutDeepStacks() throws Exception {
+        SlowRequestWatchdog watchdog = new SlowRequestWatchdog(Duration.ZERO, Duration.ofMinutes(1), 1, 2);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<List<StackSample>> samples = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            SlowRequestWatchdog.InFlight exchange = watchdog.watch();
+            awaitQuietly(done);
+            samples.set(watchdog.finish(exchange));
+        });
+        worker.start();
+
+        Thread.sleep(50);
+        watchdog.sample();
+        done.countDown();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        watchdog.shutdown();
+
+        assertThat(samples.get()).singleElement().satisfies(sample -> {
+            assertThat(sample.frames()).hasSize(2);
+            assertThat(sample.truncated()).isTrue();
+        });
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.arash.ariani.policy;
+
+import com.arash.ariani.annotation.LogRequest;
+import com.arash.ariani.masking.MaskingEngine;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoggingPolicyResolverTest {
+
+    private RequestLoggingProperties properties;
+    private LoggingPolicyResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RequestLoggingProperties();
+        resolver = new LoggingPolicyResolver(properties, new MaskingEngine(properties, null));
+    }
+
+    @Test
+    void shouldResolvePolicyOncePerHandlerMethod() throws Exception {
+        Method method = PlainController.class.getMethod("plain");
+
+        LoggingPolicy policy = resolver.resolve(new HandlerMethod(new PlainController(), method));
+
+        assertThat(policy.isEnabled()).isTrue();
+        assertThat(policy.getAnnotation()).isNull();
+        assertThat(resolver.resolve(new HandlerMethod(new PlainController(), method))).isSameAs(policy);
+    }
+
+    @Test
+    void shouldPreferMethodAnnotationOverTypeAnnotation() throws Exception {
+        properties.setEnabled(false);
+
+        LoggingPolicy typeLevel = resolver.resolve(new HandlerMethod(new AnnotatedController(), "inherited"));
+        LoggingPolicy methodLevel = resolver.resolve(new HandlerMethod(new AnnotatedController(), "overridden"));
+
+        assertThat(typeLevel.isEnabled()).isTrue();
+        assertThat(typeLevel.isIncludeResponseBody()).isFalse();
+        assertThat(methodLevel.isIncludeResponseBody()).isTrue();
+        assertThat(methodLevel.getMaxBodyLength()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldDisableUnannotatedHandlersWhenLoggingIsDisabled() throws Exception {
+        properties.setEnabled(false);
+
+        assertThat(resolver.resolve(new HandlerMethod(new PlainController(), "plain"))).isSameAs(LoggingPolicy.DISABLED);
+    }
+
+    @Test
+    void shouldReResolvePoliciesOnInvalidate() throws Exception {
+        HandlerMethod handler = new HandlerMethod(new PlainController(), "plain");
+        assertThat(resolver.resolve(handler).isEnabled()).isTrue();
+
+        properties.setEnabled(false);
+        assertThat(resolver.resolve(handler).isEnabled()).isTrue();
+
+        resolver.invalidate();
+        assertThat(resolver.resolve(handler).isEnabled()).isFalse();
+    }
+
+    @Test
+    void shouldExcludeHeadersCaseInsensitively() throws Exception {
+        LoggingPolicy policy = resolver.resolve(new HandlerMethod(new AnnotatedController(), "inherited"));
+
+        assertThat(policy.isExcludedHeader("authorization")).isTrue();
+        assertThat(policy.isExcludedHeader("COOKIE")).isTrue();
+        assertThat(policy.isExcludedHeader("Accept")).isFalse();
+    }
+
+    @Test
+    void shouldAlwaysAdmitErrors() throws Exception {
+        LoggingPolicy policy = resolver.resolve(new HandlerMethod(new SampledController(), "never"));
+
+        assertThat(resolver.admit(policy, false)).isEqualTo(Admission.SAMPLED_OUT);
+        assertThat(resolver.admit(policy, true)).isEqualTo(Admission.LOGGED);
+    }
+
+    @Test
+    void shouldCapEachRouteAtItsRateLimit() throws Exception {
+        LoggingPolicy limited = resolver.resolve(new HandlerMethod(new SampledController(), "limited"));
+        LoggingPolicy plain = resolver.resolve(new HandlerMethod(new PlainController(), "plain"));
+
+        assertThat(resolver.admit(limited, false)).isEqualTo(Admission.LOGGED);
+        assertThat(resolver.admit(limited, false)).isEqualTo(Admission.ROUTE_LIMITED);
+        assertThat(resolver.admit(plain, false)).isEqualTo(Admission.LOGGED);
+    }
+
+    @Test
+    void shouldApplyGlobalRateLimitAcrossRoutes() throws Exception {
+        properties.setRateLimit(1);
+        resolver.invalidate();
+        LoggingPolicy plain = resolver.resolve(new HandlerMethod(new PlainController(), "plain"));
+        LoggingPolicy inherited = resolver.resolve(new HandlerMethod(new AnnotatedController(), "inherited"));
+
+        assertThat(resolver.admit(plain, false)).isEqualTo(Admission.LOGGED);
+        assertThat(resolver.admit(inherited, false)).isEqualTo(Admission.GLOBAL_LIMITED);
+        assertThat(resolver.admit(inherited, true)).isEqualTo(Admission.LOGGED);
+    }
+
+    @Test
+    void shouldInheritGlobalSampleRateUnlessAnnotated() throws Exception {
+        properties.setSampleRate(0);
+
+        assertThat(resolver.resolve(new HandlerMethod(new PlainController(), "plain")).getSampleRate()).isZero();
+        assertThat(resolver.resolve(new HandlerMethod(new AnnotatedController(), "inherited")).getSampleRate()).isZero();
+        assertThat(resolver.resolve(new HandlerMethod(new SampledController(), "limited")).getSampleRate()).isEqualTo(1.0);
+    }
+
+    static class PlainController {
+        public void plain() {
+        }
+    }
+
+    @LogRequest(includeResponseBody = false)
+    static class AnnotatedController {
+        public void inherited() {
+        }
+
+        @LogRequest(maxBodyLength = 10)
+        public void overridden() {
+        }
+    }
+
+    static class SampledController {
+        @LogRequest(sampleRate = 0)
+        public void never() {
+        }
+
+        @LogRequest(sampleRate = 1, rateLimit = 1)
+        public void limited() {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.arash.ariani.policy;
+
+import com.arash.ariani.annotation.LogRequest;
+import com.arash.ariani.masking.MaskingEngine;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import jakarta.servlet.http.MappingMatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletMapping;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.util.ServletRequestPathUtils;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteTableTest {
+
+    private RequestLoggingProperties properties;
+    private MaskingEngine maskingEngine;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RequestLoggingProperties();
+        properties.setEnabled(false);
+        maskingEngine = new MaskingEngine(properties, null);
+    }
+
+    @Test
+    void shouldCaptureOnlyBodiesOfRoutesThatLogThem() throws Exception {
+        Map<RequestMappingInfo, LoggingPolicy> routes = new LinkedHashMap<>();
+        routes.put(mapping("/orders/{id}"), policy("both"));
+        routes.put(mapping("/uploads/**"), policy("requestOnly"));
+        routes.put(mapping("/health"), LoggingPolicy.resolve(null, properties, maskingEngine));
+
+        RouteTable table = RouteTable.build(routes);
+
+        assertThat(table.match(request("/app", "/app/orders/42"))).isEqualTo(BodyCapture.BOTH);
+        assertThat(table.match(request("", "/uploads/a/b"))).isEqualTo(BodyCapture.REQUEST);
+        assertThat(table.match(request("", "/health"))).isEqualTo(BodyCapture.NONE);
+        assertThat(table.match(request("", "/static/app.js"))).isEqualTo(BodyCapture.NONE);
+    }
+
+    @Test
+    void shouldMatchPathsWithinTheDispatcherServletPath() throws Exception {
+        Map<RequestMappingInfo, LoggingPolicy> routes = new LinkedHashMap<>();
+        routes.put(mapping("/orders/**"), policy("both"));
+
+        RouteTable table = RouteTable.build(routes);
+
+        MockHttpServletRequest request = request("/app", "/app/api/orders/42");
+        request.setServletPath("/api");
+        request.setPathInfo("/orders/42");
+        request.setHttpServletMapping(new MockHttpServletMapping("orders/42", "/api/*", "dispatcherServlet",
+                MappingMatch.PATH));
+        assertThat(table.match(request)).isEqualTo(BodyCapture.BOTH);
+        assertThat(ServletRequestPathUtils.hasParsedRequestPath(request)).isFalse();
+    }
+
+    @Test
+    void shouldCaptureEverythingForPatternsThatCannotBeMatchedUpFront() throws Exception {
+        RequestMappingInfo.BuilderConfiguration options = new RequestMappingInfo.BuilderConfiguration();
+        options.setPathMatcher(new AntPathMatcher());
+        Map<RequestMappingInfo, LoggingPolicy> routes = new LinkedHashMap<>();
+        routes.put(RequestMappingInfo.paths("/**/legacy").options(options).build(), policy("requestOnly"));
+
+        RouteTable table = RouteTable.build(routes);
+
+        assertThat(table.match(request("", "/anything"))).isEqualTo(BodyCapture.REQUEST);
+    }
+
+    @Test
+    void shouldCaptureEverythingBeforeRoutesAreKnown() {
+        assertThat(RouteTable.CAPTURE_ALL.match(request("", "/anything"))).isEqualTo(BodyCapture.BOTH);
+    }
+
+    private LoggingPolicy policy(String methodName) throws Exception {
+        LogRequest annotation = RouteTableTest.class.getDeclaredMethod(methodName).getAnnotation(LogRequest.class);
+        return LoggingPolicy.resolve(annotation, properties, maskingEngine);
+    }
+
+    private static RequestMappingInfo mapping(String path) {
+        RequestMappingInfo.BuilderConfiguration options = new RequestMappingInfo.BuilderConfiguration();
+        options.setPatternParser(new PathPatternParser());
+        return RequestMappingInfo.paths(path).options(options).build();
+    }
+
+    private static MockHttpServletRequest request(String contextPath, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setContextPath(contextPath);
+        return request;
+    }
+
+    @LogRequest
+    void both() {
+    }
+
+    @LogRequest(includeResponseBody = false)
+    void requestOnly() {
+    }
+}
@@ -0,0 +1,64 @@
+package com.arash.ariani.policy;
+
+import com.arash.ariani.properties.RequestLoggingProperties.TailDetail;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TailSamplerTest {
+
+    @Test
+    void shouldLogEverythingInFullWhenDisabled() {
+        TailSampler sampler = new TailSampler(false, TailDetail.NONE, Duration.ofSeconds(1), 0, Duration.ofSeconds(30));
+
+        assertThat(sampler.decide(false, 5)).isEqualTo(TailDetail.FULL);
+    }
+
+    @Test
+    void shouldLogFailedAndSlowExchangesInFull() {
+        TailSampler sampler = new TailSampler(true, TailDetail.SUMMARY, Duration.ofMillis(500), 0, Duration.ofSeconds(30));
+
+        assertThat(sampler.decide(false, 20)).isEqualTo(TailDetail.SUMMARY);
+        assertThat(sampler.decide(true, 20)).isEqualTo(TailDetail.FULL);
+        assertThat(sampler.decide(false, 501)).isEqualTo(TailDetail.FULL);
+        assertThat(sampler.decide(false, -1)).isEqualTo(TailDetail.SUMMARY);
+    }
+
+    @Test
+    void shouldLogExchangesAboveRecentPercentileInFull() throws Exception {
+        TailSampler sampler = new TailSampler(true, TailDetail.NONE, Duration.ZERO, 0.9, Duration.ofMillis(50));
+        for (int i = 0; i < 1000; i++) {
+            sampler.decide(false, i % 100);
+        }
+        assertThat(sampler.getPercentileThresholdMillis()).isEqualTo(Long.MAX_VALUE);
+
+        Thread.sleep(60);
+        sampler.decide(false, 10);
+
+        assertThat(sampler.getPercentileThresholdMillis()).isBetween(90L, 112L);
+        assertThat(sampler.decide(false, 50)).isEqualTo(TailDetail.NONE);
+        assertThat(sampler.decide(false, 500)).isEqualTo(TailDetail.FULL);
+    }
+
+    @Test
+    void shouldIgnoreWindowsWithTooFewExchanges() throws Exception {
+        TailSampler sampler = new TailSampler(true, TailDetail.NONE, Duration.ZERO, 0.5, Duration.ofMillis(20));
+        sampler.decide(false, 10);
+
+        Thread.sleep(30);
+        sampler.decide(false, 10);
+
+        assertThat(sampler.getPercentileThresholdMillis()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void shouldBucketDurationsWithinAQuarter() {
+        for (long value = 0; value < 100_000; value += 7) {
+            long upper = TailSampler.upperBound(TailSampler.bucket(value));
+            assertThat(upper).isGreaterThanOrEqualTo(value).isLessThanOrEqualTo(value + value / 4 + 1);
+        }
+        assertThat(TailSampler.bucket(Long.MAX_VALUE)).isGreaterThan(TailSampler.bucket(1L << 40));
+    }
+}
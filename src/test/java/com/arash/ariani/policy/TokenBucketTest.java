@@ -0,0 +1,72 @@
+package com.arash.ariani.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketTest {
+
+    @Test
+    void shouldHandOutOneSecondOfTokensAtOnce() {
+        TokenBucket bucket = new TokenBucket(1);
+
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void shouldRefillAtTheConfiguredRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(50);
+        while (bucket.tryAcquire()) {
+            // Drain the burst
+        }
+
+        Thread.sleep(100);
+
+        assertThat(bucket.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void shouldNeverHandOutMoreThanTheRateAcrossThreads() throws Exception {
+        int permits = 1000;
+        TokenBucket bucket = new TokenBucket(permits);
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < permits; j++) {
+                    if (bucket.tryAcquire()) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        // One second of burst plus whatever refilled while the threads ran
+        assertThat(acquired.get()).isGreaterThan(0).isLessThanOrEqualTo((int) (permits * (1 + seconds)) + threads.length);
+    }
+
+    @Test
+    void shouldRejectNonPositiveRates() {
+        assertThatThrownBy(() -> new TokenBucket(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
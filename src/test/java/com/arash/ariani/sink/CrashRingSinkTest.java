@@ -0,0 +1,179 @@
+package com.arash.ariani.sink;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+
+import static com.arash.ariani.sink.SinkTestEvents.combined;
+import static com.arash.ariani.sink.SinkTestEvents.request;
+import static com.arash.ariani.sink.SinkTestEvents.response;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CrashRingSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldKeepOnlyTheLastExchangesOldestFirst() throws Exception {
+        Path file = tempDir.resolve("requests.ring");
+        try (CrashRingSink sink = new CrashRingSink(file, 3, 512)) {
+            for (int i = 1; i <= 5; i++) {
+                sink.write(List.of(request("id-" + i, "/orders/" + i, "{\"n\":" + i + "}"), response("id-" + i, 200, 12, "ok")));
+            }
+        }
+
+        List<CrashRingReader.Entry> entries = CrashRingReader.read(file);
+
+        assertThat(entries).extracting(CrashRingReader.Entry::uri).containsExactly("/orders/3", "/orders/4", "/orders/5");
+        CrashRingReader.Entry last = entries.get(2);
+        assertThat(last.sequence()).isEqualTo(5);
+        assertThat(last.correlationId()).isEqualTo("id-5");
+        assertThat(last.method()).isEqualTo("POST");
+        assertThat(last.status()).isEqualTo(200);
+        assertThat(last.duration()).isEqualTo(12);
+        assertThat(last.requestBody()).isEqualTo("{\"n\":5}");
+        assertThat(last.responseBody()).isEqualTo("ok");
+        assertThat(last.failed()).isFalse();
+        assertThat(last.truncated()).isFalse();
+    }
+
+    @Test
+    void shouldReadSummariesWithoutClosingTheSink() throws Exception {
+        Path file = tempDir.resolve("killed.ring");
+        CrashRingSink sink = new CrashRingSink(file, 4, 512);
+        sink.write(List.of(combined(request("id-1", "/pay", "-"), response("id-1", 500, 12, "-"))));
+
+        // Stands in for the process dying: the mapping is never forced or closed before reading
+        List<CrashRingReader.Entry> entries = CrashRingReader.read(file);
+
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).uri()).isEqualTo("/pay");
+        assertThat(entries.get(0).failed()).isTrue();
+        assertThat(entries.get(0).requestBody()).isEmpty();
+        sink.close();
+    }
+
+    @Test
+    void shouldTruncateBodiesToTheSlot() throws Exception {
+        Path file = tempDir.resolve("truncated.ring");
+        String body = "é".repeat(1000);
+        try (CrashRingSink sink = new CrashRingSink(file, 2, 256)) {
+            sink.write(List.of(request("id-1", "/upload", body), response("id-1", 201, 12, body)));
+        }
+
+        CrashRingReader.Entry entry = CrashRingReader.read(file).get(0);
+
+        assertThat(entry.truncated()).isTrue();
+        assertThat(entry.requestBody()).isNotEmpty().matches("é+");
+        assertThat(entry.responseBody()).isNotEmpty().matches("é+");
+        assertThat(Files.size(file)).isEqualTo(CrashRingSink.HEADER_SIZE + 2 * 256);
+    }
+
+    @Test
+    void shouldTruncateTheUriToTheSmallestSlot() throws Exception {
+        Path file = tempDir.resolve("long-uri.ring");
+        String uri = "/search/" + "q".repeat(300);
+        try (CrashRingSink sink = new CrashRingSink(file, 4, CrashRingSink.MIN_SLOT_SIZE)) {
+            sink.write(List.of(request("id-1", uri, "{}"), response("id-1", 200, 3, "{}")));
+        }
+
+        CrashRingReader.Entry entry = CrashRingReader.read(file).get(0);
+
+        assertThat(entry.truncated()).isTrue();
+        assertThat(entry.correlationId()).isEqualTo("id-1");
+        assertThat(entry.status()).isEqualTo(200);
+        assertThat(uri).startsWith(entry.uri());
+        assertThat(entry.uri()).startsWith("/search/q");
+    }
+
+    @Test
+    void shouldContinueAfterTheNewestSummaryOnRestart() throws Exception {
+        Path file = tempDir.resolve("restarted.ring");
+        try (CrashRingSink sink = new CrashRingSink(file, 4, 512)) {
+            sink.write(List.of(request("id-1", "/a", "-"), response("id-1", 200, 12, "-")));
+        }
+        try (CrashRingSink sink = new CrashRingSink(file, 4, 512)) {
+            sink.write(List.of(request("id-2", "/b", "-"), response("id-2", 200, 12, "-")));
+        }
+
+        assertThat(CrashRingReader.read(file)).extracting(CrashRingReader.Entry::uri).containsExactly("/a", "/b");
+    }
+
+    @Test
+    void shouldDumpOneLinePerSummary() throws Exception {
+        Path file = tempDir.resolve("dump.ring");
+        try (CrashRingSink sink = new CrashRingSink(file, 4, 512)) {
+            sink.write(List.of(request("id-1", "/orders", "-"), response("id-1", 404, 12, "missing")));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CrashRingReader.dump(file, new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .contains("#1 ", " id-1 POST /orders -> 404 in 12ms", "response: missing");
+    }
+
+    @Test
+    void shouldNotInterleaveConcurrentWritersOfTheSameSlot() throws Exception {
+        Path file = tempDir.resolve("concurrent.ring");
+        List<String> torn = new CopyOnWriteArrayList<>();
+        // Every round, four writers race for two slots; the ring is checked while they wait for the next one
+        CyclicBarrier round = new CyclicBarrier(4, () -> {
+            try {
+                for (CrashRingReader.Entry entry : CrashRingReader.read(file)) {
+                    String n = entry.correlationId().substring("id-".length());
+                    if (!entry.uri().equals("/orders/" + n) || !entry.requestBody().startsWith(n)
+                            || !entry.requestBody().equals(entry.responseBody())) {
+                        torn.add(entry.correlationId());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        try (CrashRingSink sink = new CrashRingSink(file, 2, 4096)) {
+            Thread[] writers = new Thread[4];
+            for (int w = 0; w < writers.length; w++) {
+                int writer = w;
+                writers[w] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 300; i++) {
+                            String n = writer + "-" + i;
+                            String body = n.repeat(50 + 20 * writer);
+                            sink.write(List.of(request("id-" + n, "/orders/" + n, body), response("id-" + n, 200, 12, body)));
+                            round.await();
+                        }
+                    } catch (Exception e) {
+                        torn.add(e.toString());
+                    }
+                });
+                writers[w].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+
+        assertThat(torn).isEmpty();
+    }
+
+    @Test
+    void shouldRejectFilesThatAreNotARing() throws Exception {
+        Path file = tempDir.resolve("other.log");
+        Files.writeString(file, "GET /a");
+
+        assertThatThrownBy(() -> CrashRingReader.read(file)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,131 @@
+package com.arash.ariani.sink;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import com.arash.ariani.template.LoggingTemplate;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Writes the same events through the file sink and through SLF4J into a Logback file appender, and
+ * reports records per second for each. Excluded from the regular build; run with
+ * {@code mvn test -Dgroups=benchmark -DexcludedTestGroups=none}.
+ */
+@Tag("benchmark")
+class FileSinkBenchmarkTest {
+    private static final int BATCHES = 20_000;
+    private static final int BATCH_SIZE = 8;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reportRecordsPerSecond() throws Exception {
+        List<LogEvent> batch = batch();
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+
+        run("warm-up", nioSink(tempDir.resolve("warm-up.log")), batch);
+        run("warm-up", slf4jSink(tempDir.resolve("warm-up-slf4j.log"), properties), batch);
+
+        Path nioFile = tempDir.resolve("nio.log");
+        Path slf4jFile = tempDir.resolve("slf4j.log");
+        double nio = run("file channel sink", nioSink(nioFile), batch);
+        double slf4j = run("slf4j file appender", slf4jSink(slf4jFile, properties), batch);
+
+        assertThat(Files.lines(nioFile).count()).isEqualTo((long) BATCHES * BATCH_SIZE);
+        assertThat(Files.lines(slf4jFile).count()).isEqualTo((long) BATCHES * BATCH_SIZE);
+        assertThat(nio).isGreaterThan(slf4j);
+    }
+
+    private double run(String name, RequestLogSink sink, List<LogEvent> batch) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < BATCHES; i++) {
+            sink.write(batch);
+        }
+        if (sink instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        double perSecond = (double) BATCHES * BATCH_SIZE / (elapsed / 1e9);
+        System.out.printf("%-22s %10.0f records/s  total=%8.2f ms%n", name, perSecond, elapsed / 1e6);
+        return perSecond;
+    }
+
+    private static RequestLogSink nioSink(Path file) throws IOException {
+        return new FileRequestLogSink(file, new LogEventRenderer());
+    }
+
+    /**
+     * Routes a dedicated, non-additive logger into a plain file appender, as an application would for
+     * its request log.
+     */
+    private static RequestLogSink slf4jSink(Path file, RequestLoggingProperties properties) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+
+        FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setContext(context);
+        appender.setFile(file.toString());
+        appender.setEncoder(encoder);
+        appender.setImmediateFlush(false);
+        appender.start();
+
+        ch.qos.logback.classic.Logger logger = context.getLogger("benchmark." + file.getFileName());
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+
+        Slf4jRequestLogSink sink = new Slf4jRequestLogSink(logger, properties);
+        return new ClosingSink(sink, appender::stop);
+    }
+
+    private static List<LogEvent> batch() {
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}} {{parameters}} {{body}}");
+        List<LogEvent> batch = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            RequestLogEvent event = new RequestLogEvent();
+            event.setTemplate(template);
+            event.setMethod("POST");
+            event.setUri("/api/orders/" + i);
+            event.setParameters("{page=1, size=20}");
+            event.setBody("{\"customer\":\"c-" + i + "\",\"items\":[{\"sku\":\"A-1\",\"quantity\":2}]}");
+            batch.add(event);
+        }
+        return batch;
+    }
+
+    private record ClosingSink(RequestLogSink sink, Runnable onClose) implements RequestLogSink, AutoCloseable {
+        @Override
+        public void write(List<LogEvent> batch) {
+            sink.write(batch);
+        }
+
+        @Override
+        public void close() {
+            onClose.run();
+        }
+    }
+}
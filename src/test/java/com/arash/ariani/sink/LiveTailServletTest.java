@@ -0,0 +1,74 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.TestApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(
+    classes = TestApplication.class,
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {"request.logging.live-tail=true", "request.logging.live-tail-max-subscribers=1"}
+)
+class LiveTailServletTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private LiveTailSink sink;
+
+    @Test
+    void shouldStreamMatchingExchangesAsServerSentEvents() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<InputStream> stream = client.send(
+                HttpRequest.newBuilder(URI.create(url("/request-logging/tail?route=/test/**&minStatus=200"))).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(stream.statusCode()).isEqualTo(200);
+        assertThat(stream.headers().firstValue("Content-Type")).hasValueSatisfying(
+                type -> assertThat(type).startsWith("text/event-stream"));
+        assertThat(sink.getSubscriberCount()).isEqualTo(1);
+
+        HttpResponse<String> refused = client.send(HttpRequest.newBuilder(URI.create(url("/request-logging/tail"))).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(refused.statusCode()).isEqualTo(503);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream.body(), StandardCharsets.UTF_8));
+        CompletableFuture<String> event = CompletableFuture.supplyAsync(() -> {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("data: ")) {
+                        return line.substring("data: ".length());
+                    }
+                }
+                return null;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        client.send(HttpRequest.newBuilder(URI.create(url("/test/public"))).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertThat(event.get(10, TimeUnit.SECONDS)).contains("\"method\":\"GET\"", "\"uri\":\"/test/public\"",
+                "\"status\":200");
+        stream.body().close();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
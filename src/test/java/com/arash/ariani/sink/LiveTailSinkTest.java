@@ -0,0 +1,105 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.arash.ariani.sink.SinkTestEvents.exchange;
+import static com.arash.ariani.sink.SinkTestEvents.request;
+import static com.arash.ariani.sink.SinkTestEvents.response;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiveTailSinkTest {
+
+    @Test
+    void shouldStreamOnlyMatchingExchangesAsJson() throws Exception {
+        LiveTailSink sink = new LiveTailSink(4, 10, 100, List.of(), null);
+        LiveTailSink.Subscriber errors = sink.subscribe(new ExchangeFilter(null, 500, null, null, null));
+        LiveTailSink.Subscriber slow = sink.subscribe(new ExchangeFilter(null, null, "/orders/**", 100L, null));
+
+        sink.write(exchange("a", "/orders/1", 200, 5));
+        sink.write(exchange("b", "/orders/2", 503, 150));
+
+        String json = errors.poll(Duration.ZERO);
+        assertThat(json).contains("\"correlationId\":\"b\"", "\"uri\":\"/orders/2\"", "\"status\":503",
+                "\"durationMs\":150", "\"requestBody\":\"{}\"");
+        assertThat(errors.poll()).isNull();
+        assertThat(slow.poll(Duration.ZERO)).isEqualTo(json);
+        assertThat(slow.poll()).isNull();
+    }
+
+    @Test
+    void shouldDropForASlowSubscriberOnly() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LiveTailSink sink = new LiveTailSink(4, 2, 100, List.of(), new RequestLoggingMetrics(registry));
+        LiveTailSink.Subscriber stuck = sink.subscribe(ExchangeFilter.ALL);
+        LiveTailSink.Subscriber reading = sink.subscribe(ExchangeFilter.ALL);
+
+        for (int i = 0; i < 5; i++) {
+            sink.write(exchange("id-" + i, "/orders", 200, i));
+            assertThat(reading.poll(Duration.ZERO)).contains("\"correlationId\":\"id-" + i + "\"");
+        }
+
+        assertThat(stuck.takeDropped()).isEqualTo(3);
+        assertThat(stuck.takeDropped()).isZero();
+        assertThat(reading.takeDropped()).isZero();
+        assertThat(stuck.poll()).contains("\"correlationId\":\"id-0\"");
+        assertThat(registry.get("request.logger.tail.dropped").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void shouldNotStreamExcludedHeaders() throws Exception {
+        LiveTailSink sink = new LiveTailSink(4, 10, 100, List.of("Authorization", "Cookie"), null);
+        LiveTailSink.Subscriber subscriber = sink.subscribe(ExchangeFilter.ALL);
+        RequestLogEvent request = request("a", "/orders", "{}");
+        Map<String, String> headers = Map.of("authorization", "Bearer secret", "Accept", "application/json");
+        request.setHeaderMap(headers);
+        request.setHeaders(headers.toString());
+
+        sink.write(List.of(request, response("a", 200, 5, "ok")));
+
+        String json = subscriber.poll(Duration.ZERO);
+        assertThat(json).contains("\"requestHeaders\":\"{Accept=application/json}\"").doesNotContain("secret");
+    }
+
+    @Test
+    void shouldRefuseSubscribersBeyondTheLimit() {
+        LiveTailSink sink = new LiveTailSink(1, 10, 100, List.of(), null);
+        LiveTailSink.Subscriber first = sink.subscribe(ExchangeFilter.ALL);
+
+        assertThat(sink.subscribe(ExchangeFilter.ALL)).isNull();
+
+        first.close();
+        assertThat(sink.getSubscriberCount()).isZero();
+        assertThat(sink.subscribe(ExchangeFilter.ALL)).isNotNull();
+    }
+
+    @Test
+    void shouldWakeUpTheReaderWhenClosed() throws Exception {
+        LiveTailSink sink = new LiveTailSink(1, 10, 100, List.of(), null);
+        LiveTailSink.Subscriber subscriber = sink.subscribe(ExchangeFilter.ALL);
+        CompletableFuture<Boolean> interrupted = CompletableFuture.supplyAsync(() -> {
+            try {
+                subscriber.poll(Duration.ofMinutes(1));
+                return false;
+            } catch (InterruptedException e) {
+                return true;
+            }
+        });
+
+        while (!subscriber.isClosed()) {
+            Thread.sleep(10);
+            sink.close();
+        }
+
+        assertThat(interrupted.get(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(sink.subscribe(ExchangeFilter.ALL)).isNull();
+    }
+}
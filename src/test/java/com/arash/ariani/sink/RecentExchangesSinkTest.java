@@ -0,0 +1,117 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.ExchangeLogEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.arash.ariani.sink.SinkTestEvents.request;
+import static com.arash.ariani.sink.SinkTestEvents.response;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentExchangesSinkTest {
+
+    @Test
+    void shouldKeepOnlyTheLastExchangesNewestFirst() {
+        RecentExchangesSink sink = new RecentExchangesSink(3, 100);
+        for (int i = 1; i <= 5; i++) {
+            sink.write(List.of(request("id-" + i, "/orders/" + i, "{\"n\":" + i + "}"), response("id-" + i, 200, i, "ok")));
+        }
+
+        List<LoggedExchange> exchanges = sink.recent(ExchangeFilter.ALL, 10);
+
+        assertThat(exchanges).extracting(LoggedExchange::uri)
+                .containsExactly("/orders/5", "/orders/4", "/orders/3");
+        LoggedExchange newest = exchanges.get(0);
+        assertThat(newest.correlationId()).isEqualTo("id-5");
+        assertThat(newest.method()).isEqualTo("POST");
+        assertThat(newest.requestBody()).isEqualTo("{\"n\":5}");
+        assertThat(newest.responseBody()).isEqualTo("ok");
+        assertThat(newest.requestHeaders()).isNull();
+        assertThat(newest.duration()).isEqualTo(5);
+        assertThat(sink.recent(ExchangeFilter.ALL, 2)).hasSize(2);
+    }
+
+    @Test
+    void shouldFilterByStatusRouteDurationAndCorrelationId() {
+        RecentExchangesSink sink = new RecentExchangesSink(10, 100);
+        sink.write(List.of(request("a", "/orders/1", "-"), response("a", 200, 5, "ok")));
+        sink.write(List.of(request("b", "/orders/2", "-"), response("b", 404, 50, "ok")));
+        sink.write(List.of(request("c", "/users/1", "-"), response("c", 503, 500, "ok")));
+        ExchangeLogEvent exchange = new ExchangeLogEvent();
+        exchange.getRequest().setMethod("GET");
+        exchange.getRequest().setUri("/orders/3");
+        exchange.getResponse().setCorrelationId("d");
+        exchange.getResponse().setStatus(500);
+        sink.write(List.of(exchange));
+
+        assertThat(correlationIds(sink, new ExchangeFilter("5xx", null, null, null, null))).containsExactly("d", "c");
+        assertThat(correlationIds(sink, new ExchangeFilter("404", null, null, null, null))).containsExactly("b");
+        assertThat(correlationIds(sink, new ExchangeFilter(null, null, "/orders/**", null, null)))
+                .containsExactly("d", "b", "a");
+        assertThat(correlationIds(sink, new ExchangeFilter(null, null, "/users/1", null, null))).containsExactly("c");
+        assertThat(correlationIds(sink, new ExchangeFilter(null, null, null, 50L, null))).containsExactly("c", "b");
+        assertThat(correlationIds(sink, new ExchangeFilter(null, null, null, null, "a"))).containsExactly("a");
+        assertThat(correlationIds(sink, new ExchangeFilter(null, 404, null, null, null))).containsExactly("d", "c", "b");
+    }
+
+    @Test
+    void shouldTruncateFieldsToTheConfiguredLength() {
+        RecentExchangesSink sink = new RecentExchangesSink(2, 10);
+        sink.write(List.of(request("id-1", "/upload", "x".repeat(100)), response("id-1", 201, 1, "ok")));
+
+        LoggedExchange exchange = sink.recent(ExchangeFilter.ALL, 1).get(0);
+
+        assertThat(exchange.requestBody()).hasSize(10);
+        assertThat(exchange.responseBody()).isEqualTo("ok");
+        assertThat(exchange.truncated()).isTrue();
+    }
+
+    @Test
+    void shouldReturnOnlyTheNewestExchangesWhileWritersRace() throws Exception {
+        RecentExchangesSink sink = new RecentExchangesSink(16, 100);
+        int writers = 4;
+        int perWriter = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int w = 0; w < writers; w++) {
+            String prefix = "w" + w + "-";
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perWriter; i++) {
+                    sink.write(List.of(request(prefix + i, "/race", "-"), response(prefix + i, 200, i, "ok")));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        for (int i = 0; i < 100; i++) {
+            List<LoggedExchange> exchanges = sink.recent(ExchangeFilter.ALL, 16);
+            assertThat(exchanges).hasSizeLessThanOrEqualTo(16);
+            assertThat(exchanges).isSortedAccordingTo((a, b) -> Long.compare(b.sequence(), a.sequence()));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        List<LoggedExchange> exchanges = sink.recent(ExchangeFilter.ALL, 16);
+        assertThat(exchanges).extracting(LoggedExchange::sequence)
+                .containsExactlyElementsOf(descending((long) writers * perWriter, 16));
+    }
+
+    private static List<String> correlationIds(RecentExchangesSink sink, ExchangeFilter filter) {
+        return sink.recent(filter, 10).stream().map(LoggedExchange::correlationId).toList();
+    }
+
+    private static List<Long> descending(long from, int count) {
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            values.add(from - i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,309 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.interceptor.RequestLoggingInterceptor;
+import com.arash.ariani.masking.MaskingEngine;
+import com.arash.ariani.metrics.RequestLoggingMetrics;
+import com.arash.ariani.policy.LoggingPolicyResolver;
+import com.arash.ariani.properties.RequestLoggingProperties;
+import com.arash.ariani.properties.RequestLoggingProperties.Fsync;
+import com.arash.ariani.template.LoggingTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestLogSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldHandEachExchangeToConfiguredSinksAsOneBatch() throws Exception {
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+        InMemoryRequestLogSink sink = new InMemoryRequestLogSink();
+        RequestLoggingInterceptor interceptor = new RequestLoggingInterceptor(properties,
+                new LoggingPolicyResolver(properties, new MaskingEngine(properties, null)), null, List.of(sink));
+        HandlerMethod handler = new HandlerMethod(this, RequestLogSinkTest.class.getDeclaredMethod("handler"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request, response, handler);
+        interceptor.afterCompletion(request, response, handler, new IllegalStateException("boom"));
+
+        assertThat(sink.getEntries()).hasSize(2);
+        assertThat(sink.getEntries().get(0).message()).contains("Request Details", "URI: /orders");
+        assertThat(sink.getEntries().get(1).level()).isEqualTo("ERROR");
+        assertThat(sink.getEntries().get(1).message()).contains("Status: 200 (Error: boom)");
+        assertThat(sink.getEntries().get(0).correlationId()).isEqualTo(sink.getEntries().get(1).correlationId());
+    }
+
+    @Test
+    void shouldSkipSampledOutExchangesButKeepErrors() throws Exception {
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+        properties.setSampleRate(0);
+        InMemoryRequestLogSink sink = new InMemoryRequestLogSink();
+        RequestLoggingInterceptor interceptor = new RequestLoggingInterceptor(properties,
+                new LoggingPolicyResolver(properties, new MaskingEngine(properties, null)), null, List.of(sink));
+        HandlerMethod handler = new HandlerMethod(this, RequestLogSinkTest.class.getDeclaredMethod("handler"));
+
+        MockHttpServletRequest ok = new MockHttpServletRequest("GET", "/health");
+        interceptor.preHandle(ok, new MockHttpServletResponse(), handler);
+        interceptor.afterCompletion(ok, new MockHttpServletResponse(), handler, null);
+
+        MockHttpServletRequest failed = new MockHttpServletRequest("GET", "/health");
+        MockHttpServletResponse unavailable = new MockHttpServletResponse();
+        unavailable.setStatus(503);
+        interceptor.preHandle(failed, unavailable, handler);
+        interceptor.afterCompletion(failed, unavailable, handler, null);
+
+        assertThat(sink.getEntries()).hasSize(2);
+        assertThat(sink.getEntries().get(1).message()).contains("Status: 503");
+    }
+
+    @Test
+    void shouldLogOnlySummariesOfFastSuccessfulExchangesWithTailSampling() throws Exception {
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+        properties.setTailSampling(true);
+        InMemoryRequestLogSink sink = new InMemoryRequestLogSink();
+        RequestLoggingInterceptor interceptor = new RequestLoggingInterceptor(properties,
+                new LoggingPolicyResolver(properties, new MaskingEngine(properties, null)), null, List.of(sink));
+        interceptor.start();
+        HandlerMethod handler = new HandlerMethod(this, RequestLogSinkTest.class.getDeclaredMethod("handler"));
+
+        MockHttpServletRequest fast = new MockHttpServletRequest("GET", "/orders");
+        interceptor.preHandle(fast, new MockHttpServletResponse(), handler);
+        interceptor.afterCompletion(fast, new MockHttpServletResponse(), handler, null);
+
+        MockHttpServletRequest failed = new MockHttpServletRequest("GET", "/orders");
+        interceptor.preHandle(failed, new MockHttpServletResponse(), handler);
+        interceptor.afterCompletion(failed, new MockHttpServletResponse(), handler, new IllegalStateException("boom"));
+
+        assertThat(sink.getEntries()).hasSize(3);
+        assertThat(sink.getEntries().get(0).message()).contains(": GET /orders 200 in ").doesNotContain("\n");
+        assertThat(sink.getEntries().get(1).message()).contains("Request Details");
+        assertThat(sink.getEntries().get(2).message()).contains("Status: 200 (Error: boom)");
+    }
+
+    @Test
+    void shouldCollapseRepeatedExchangesIntoOneAggregate() throws Exception {
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+        properties.setAggregateDuplicates(true);
+        properties.setAggregationWindow(Duration.ofMinutes(1));
+        InMemoryRequestLogSink sink = new InMemoryRequestLogSink();
+        RequestLoggingInterceptor interceptor = new RequestLoggingInterceptor(properties,
+                new LoggingPolicyResolver(properties, new MaskingEngine(properties, null)), null, List.of(sink));
+        HandlerMethod handler = new HandlerMethod(this, RequestLogSinkTest.class.getDeclaredMethod("handler"));
+
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders");
+            interceptor.preHandle(request, new MockHttpServletResponse(), handler);
+            interceptor.afterCompletion(request, new MockHttpServletResponse(), handler, null);
+        }
+        assertThat(sink.getEntries()).hasSize(2);
+
+        interceptor.destroy();
+
+        assertThat(sink.getEntries()).hasSize(3);
+        assertThat(sink.getEntries().get(2).message()).contains(": 4 more of GET /orders 200 like ");
+        assertThat(sink.getEntries().get(2).correlationId()).isEqualTo(sink.getEntries().get(0).correlationId());
+    }
+
+    @Test
+    void shouldTimeEveryStageOfSampledExchanges() throws Exception {
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RequestLoggingMetrics metrics = new RequestLoggingMetrics(registry);
+        metrics.setStageSampleRate(1);
+        RequestLoggingInterceptor interceptor = new RequestLoggingInterceptor(properties,
+                new LoggingPolicyResolver(properties, new MaskingEngine(properties, null)), metrics,
+                List.of(new InMemoryRequestLogSink()));
+        HandlerMethod handler = new HandlerMethod(this, RequestLogSinkTest.class.getDeclaredMethod("handler"));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders");
+        interceptor.preHandle(request, new MockHttpServletResponse(), handler);
+        interceptor.afterCompletion(request, new MockHttpServletResponse(), handler, null);
+
+        for (String stage : new String[] {"snapshot", "mask", "write"}) {
+            assertThat(registry.get("request.logger.stage").tag("stage", stage).timer().count()).isEqualTo(1);
+        }
+        assertThat(registry.get("request.logger.route.responses").tag("status", "2xx").counter().count())
+                .isEqualTo(1.0);
+        interceptor.destroy();
+    }
+
+    @Test
+    void shouldAttachStackSamplesToTheResponseOfSlowExchanges() throws Exception {
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+        properties.setSlowRequestWatchdog(true);
+        properties.setSlowRequestThreshold(Duration.ofMillis(20));
+        properties.setSlowRequestSampleInterval(Duration.ofMillis(10));
+        properties.setSlowRequestSamples(2);
+        InMemoryRequestLogSink sink = new InMemoryRequestLogSink();
+        RequestLoggingInterceptor interceptor = new RequestLoggingInterceptor(properties,
+                new LoggingPolicyResolver(properties, new MaskingEngine(properties, null)), null, List.of(sink));
+        interceptor.start();
+        HandlerMethod handler = new HandlerMethod(this, RequestLogSinkTest.class.getDeclaredMethod("handler"));
+
+        MockHttpServletRequest fast = new MockHttpServletRequest("GET", "/fast");
+        interceptor.preHandle(fast, new MockHttpServletResponse(), handler);
+        interceptor.afterCompletion(fast, new MockHttpServletResponse(), handler, null);
+
+        MockHttpServletRequest slow = new MockHttpServletRequest("GET", "/slow");
+        interceptor.preHandle(slow, new MockHttpServletResponse(), handler);
+        slowHandler();
+        interceptor.afterCompletion(slow, new MockHttpServletResponse(), handler, null);
+        interceptor.destroy();
+
+        assertThat(sink.getEntries()).hasSize(4);
+        assertThat(sink.getEntries().get(1).message()).doesNotContain("Stack sample");
+        assertThat(sink.getEntries().get(3).message())
+                .contains("Stack sample 1/2 after ", "Stack sample 2/2 after ", "RequestLogSinkTest.slowHandler");
+    }
+
+    @Test
+    void shouldAppendWholeBatchToFile() throws Exception {
+        Path file = tempDir.resolve("logs/requests.log");
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}}");
+
+        try (FileRequestLogSink sink = new FileRequestLogSink(file, new LogEventRenderer())) {
+            sink.write(List.of(event(template, "/a"), event(template, "/b")));
+            sink.write(List.of(event(template, "/c")));
+        }
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).containsExactly("GET /a", "GET /b", "GET /c");
+    }
+
+    @Test
+    void shouldKeepTheRecordsOfConcurrentBatchesTogether() throws Exception {
+        Path file = tempDir.resolve("concurrent.log");
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}}\n");
+        int writers = 4;
+        int batches = 200;
+
+        try (FileRequestLogSink sink = new FileRequestLogSink(file, new LogEventRenderer())) {
+            Thread[] threads = new Thread[writers];
+            for (int w = 0; w < writers; w++) {
+                String prefix = "/w" + w + "-";
+                threads[w] = new Thread(() -> {
+                    for (int b = 0; b < batches; b++) {
+                        sink.write(List.of(event(template, prefix + b + "-1"), event(template, prefix + b + "-2")));
+                    }
+                });
+                threads[w].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(writers * batches * 2);
+        for (int i = 0; i < lines.size(); i += 2) {
+            assertThat(lines.get(i)).endsWith("-1");
+            assertThat(lines.get(i + 1)).isEqualTo(lines.get(i).substring(0, lines.get(i).length() - 1) + "2");
+        }
+    }
+
+    @Test
+    void shouldGroupRecordsUntilFlushThreshold() throws Exception {
+        Path file = tempDir.resolve("grouped.log");
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}}");
+        FileRequestLogSink.Options options = new FileRequestLogSink.Options()
+                .flushRecords(3)
+                .flushInterval(Duration.ZERO)
+                .fsync(Fsync.ON_FLUSH);
+
+        try (FileRequestLogSink sink = new FileRequestLogSink(file, new LogEventRenderer(), options)) {
+            sink.write(List.of(event(template, "/a"), event(template, "/b")));
+            assertThat(Files.size(file)).isZero();
+
+            sink.write(List.of(event(template, "/c")));
+            assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).containsExactly("GET /a", "GET /b", "GET /c");
+        }
+    }
+
+    @Test
+    void shouldFlushPendingRecordsAfterInterval() throws Exception {
+        Path file = tempDir.resolve("timed.log");
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}}");
+        FileRequestLogSink.Options options = new FileRequestLogSink.Options()
+                .flushRecords(1000)
+                .flushInterval(Duration.ofMillis(20));
+
+        try (FileRequestLogSink sink = new FileRequestLogSink(file, new LogEventRenderer(), options)) {
+            sink.write(List.of(event(template, "/a")));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (Files.size(file) == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).containsExactly("GET /a");
+        }
+    }
+
+    @Test
+    void shouldRollSegmentsAndKeepOnlyTheNewest() throws Exception {
+        Path file = tempDir.resolve("rolled.log");
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}}");
+        int record = ("GET /0" + System.lineSeparator()).length();
+        FileRequestLogSink.Options options = new FileRequestLogSink.Options()
+                .flushRecords(1)
+                .maxSegmentSize(2L * record)
+                .maxSegments(2);
+
+        try (FileRequestLogSink sink = new FileRequestLogSink(file, new LogEventRenderer(), options)) {
+            for (int i = 0; i < 7; i++) {
+                sink.write(List.of(event(template, "/" + i)));
+            }
+        }
+
+        assertThat(Files.exists(tempDir.resolve("rolled.log.1"))).isFalse();
+        assertThat(Files.readAllLines(tempDir.resolve("rolled.log.2"))).containsExactly("GET /2", "GET /3");
+        assertThat(Files.readAllLines(tempDir.resolve("rolled.log.3"))).containsExactly("GET /4", "GET /5");
+        assertThat(Files.readAllLines(file)).containsExactly("GET /6");
+    }
+
+    @Test
+    void shouldContinueSegmentNumberingAfterRestart() throws Exception {
+        Path file = tempDir.resolve("restarted.log");
+        Files.writeString(tempDir.resolve("restarted.log.4"), "old" + System.lineSeparator());
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}}");
+        int record = ("GET /0" + System.lineSeparator()).length();
+        FileRequestLogSink.Options options = new FileRequestLogSink.Options().maxSegmentSize(record);
+
+        try (FileRequestLogSink sink = new FileRequestLogSink(file, new LogEventRenderer(), options)) {
+            sink.write(List.of(event(template, "/0"), event(template, "/1")));
+        }
+
+        assertThat(Files.readAllLines(tempDir.resolve("restarted.log.4"))).containsExactly("old");
+        assertThat(Files.readAllLines(tempDir.resolve("restarted.log.5"))).containsExactly("GET /0");
+        assertThat(Files.readAllLines(file)).containsExactly("GET /1");
+    }
+
+    private static LogEvent event(LoggingTemplate template, String uri) {
+        RequestLogEvent event = new RequestLogEvent();
+        event.setTemplate(template);
+        event.setMethod("GET");
+        event.setUri(uri);
+        return event;
+    }
+
+    void handler() {
+    }
+
+    private static void slowHandler() throws InterruptedException {
+        Thread.sleep(200);
+    }
+}
@@ -0,0 +1,72 @@
+package com.arash.ariani.sink;
+
+import com.arash.ariani.event.ExchangeLogEvent;
+import com.arash.ariani.event.LogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+
+import java.util.List;
+
+/**
+ * Events of logged exchanges, as the interceptor hands them to the sinks.
+ */
+final class SinkTestEvents {
+
+    static final long TIMESTAMP = 1_700_000_000_000L;
+
+    private SinkTestEvents() {
+    }
+
+    static RequestLogEvent request(String correlationId, String uri, String body) {
+        RequestLogEvent event = new RequestLogEvent();
+        event.setCorrelationId(correlationId);
+        event.setMethod("POST");
+        event.setUri(uri);
+        event.setHeaders("-");
+        event.setBody(body);
+        return event;
+    }
+
+    /**
+     * A response logged at {@code ERROR} for server errors, as the interceptor does for failed exchanges.
+     */
+    static ResponseLogEvent response(String correlationId, int status, long duration, String body) {
+        ResponseLogEvent event = new ResponseLogEvent();
+        event.setCorrelationId(correlationId);
+        event.setTimestamp(TIMESTAMP);
+        event.setLevel(status >= 500 ? "ERROR" : "INFO");
+        event.setStatus(status);
+        event.setDuration(duration);
+        event.setBody(body);
+        return event;
+    }
+
+    /**
+     * Separate request and response events of one exchange, with small bodies.
+     */
+    static List<LogEvent> exchange(String correlationId, String uri, int status, long duration) {
+        return List.of(request(correlationId, uri, "{}"), response(correlationId, status, duration, "ok"));
+    }
+
+    /**
+     * The same exchange as a single event, as logged in exchange mode or as JSON.
+     */
+    static ExchangeLogEvent combined(RequestLogEvent request, ResponseLogEvent response) {
+        ExchangeLogEvent exchange = new ExchangeLogEvent();
+        RequestLogEvent combinedRequest = exchange.getRequest();
+        combinedRequest.setCorrelationId(request.getCorrelationId());
+        combinedRequest.setMethod(request.getMethod());
+        combinedRequest.setUri(request.getUri());
+        combinedRequest.setHeaders(request.getHeaders());
+        combinedRequest.setBody(request.getBody());
+        ResponseLogEvent combinedResponse = exchange.getResponse();
+        combinedResponse.setCorrelationId(response.getCorrelationId());
+        combinedResponse.setTimestamp(response.getTimestamp());
+        combinedResponse.setLevel(response.getLevel());
+        combinedResponse.setStatus(response.getStatus());
+        combinedResponse.setDuration(response.getDuration());
+        combinedResponse.setBody(response.getBody());
+        exchange.setCorrelationId(response.getCorrelationId());
+        return exchange;
+    }
+}
@@ -0,0 +1,132 @@
+package com.arash.ariani.template;
+
+import com.arash.ariani.event.AggregateLogEvent;
+import com.arash.ariani.event.ExchangeLogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
+import com.arash.ariani.util.LoggingUtils;
+import com.arash.ariani.util.StringBuilderWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonLogFormatterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExchangeLogEvent exchange;
+    private RequestLogEvent request;
+
+    @BeforeEach
+    void setUp() {
+        exchange = new ExchangeLogEvent();
+        exchange.setTimestamp(1711016130123L);
+        exchange.setLevel("INFO");
+        exchange.setThread("main");
+        exchange.setCorrelationId("abc-123");
+
+        request = exchange.getRequest();
+        request.setMethod("POST");
+        request.setUri("/api/users");
+        request.setBody("{\"name\":\"john\",\"password\":\"***\"}");
+
+        ResponseLogEvent response = exchange.getResponse();
+        response.setStatus(201);
+        response.setDuration(12);
+        response.setBody("-");
+    }
+
+    @Test
+    void shouldWriteOneCompactObjectPerExchange() throws Exception {
+        String json = new JsonLogFormatter().format(exchange);
+
+        assertThat(json).doesNotContain("\n");
+        JsonNode node = objectMapper.readTree(json);
+        assertThat(node.get("timestamp").asText()).isEqualTo("2024-03-21T10:15:30.123Z");
+        assertThat(node.get("level").asText()).isEqualTo("INFO");
+        assertThat(node.get("correlationId").asText()).isEqualTo("abc-123");
+        assertThat(node.at("/request/method").asText()).isEqualTo("POST");
+        assertThat(node.at("/request/uri").asText()).isEqualTo("/api/users");
+        assertThat(node.at("/request/body").asText()).isEqualTo("{\"name\":\"john\",\"password\":\"***\"}");
+        assertThat(node.at("/response/status").asInt()).isEqualTo(201);
+        assertThat(node.at("/response/durationMs").asLong()).isEqualTo(12);
+        assertThat(node.at("/response").has("body")).isFalse();
+    }
+
+    @Test
+    void shouldWriteHeadersAndParametersAsObjects() throws Exception {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("content-type", "application/json");
+        headers.put("x-request-id", "r-1");
+        request.setHeaderMap(headers);
+        request.setHeaders(headers.toString());
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        parameters.put("tag", new String[] {"a", "b"});
+        parameters.put("page", new String[] {"1"});
+        request.setParameterMap(parameters);
+        exchange.getResponse().setHeaders("-");
+
+        JsonNode node = objectMapper.readTree(new JsonLogFormatter().format(exchange));
+
+        assertThat(node.at("/request/headers").isObject()).isTrue();
+        assertThat(node.at("/request/headers/content-type").asText()).isEqualTo("application/json");
+        assertThat(node.at("/request/headers/x-request-id").asText()).isEqualTo("r-1");
+        assertThat(node.at("/request/parameters/tag").isArray()).isTrue();
+        assertThat(node.at("/request/parameters/tag/0").asText()).isEqualTo("a");
+        assertThat(node.at("/request/parameters/tag/1").asText()).isEqualTo("b");
+        assertThat(node.at("/request/parameters/page/0").asText()).isEqualTo("1");
+        assertThat(node.at("/response").has("headers")).isFalse();
+    }
+
+    @Test
+    void shouldEmbedValidJsonBodiesRawWhenEnabled() throws Exception {
+        JsonLogFormatter formatter = new JsonLogFormatter(LoggingUtils.jsonFactory(), true);
+
+        JsonNode node = objectMapper.readTree(formatter.format(exchange));
+        assertThat(node.at("/request/body/password").asText()).isEqualTo("***");
+
+        request.setBody("{\"truncated\":\"val");
+        node = objectMapper.readTree(formatter.format(exchange));
+        assertThat(node.at("/request/body").asText()).isEqualTo("{\"truncated\":\"val");
+    }
+
+    @Test
+    void shouldKeepPrettyPrintedRawBodiesOnOneLine() throws Exception {
+        JsonLogFormatter formatter = new JsonLogFormatter(LoggingUtils.jsonFactory(), true);
+        request.setBody("{\n  \"a\": 1\n}");
+
+        String line = formatter.format(exchange);
+
+        assertThat(line).doesNotContain("\n").contains("\"body\":{\"a\":1}");
+        assertThat(objectMapper.readTree(line).at("/request/body/a").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldWriteAggregatesWithTheSameEnvelope() throws Exception {
+        AggregateLogEvent aggregate = new AggregateLogEvent();
+        aggregate.setTimestamp(1711016130123L);
+        aggregate.setLevel("INFO");
+        aggregate.setCorrelationId("abc-123");
+        aggregate.setMethod("GET");
+        aggregate.setUri("/api/orders");
+        aggregate.setStatus(503);
+        aggregate.setCount(41);
+        aggregate.setMinDuration(3);
+        aggregate.setAvgDuration(5);
+        aggregate.setMaxDuration(9);
+        StringBuilder out = new StringBuilder();
+
+        new JsonLogFormatter().formatTo(aggregate, new StringBuilderWriter(out));
+
+        JsonNode node = objectMapper.readTree(out.toString());
+        assertThat(node.get("correlationId").asText()).isEqualTo("abc-123");
+        assertThat(node.at("/duplicates/uri").asText()).isEqualTo("/api/orders");
+        assertThat(node.at("/duplicates/count").asLong()).isEqualTo(41);
+        assertThat(node.at("/duplicates/maxDurationMs").asLong()).isEqualTo(9);
+    }
+}
@@ -1,12 +1,20 @@
 package com.arash.ariani.template;
 
+import com.arash.ariani.event.ExchangeLogEvent;
+import com.arash.ariani.event.RequestLogEvent;
+import com.arash.ariani.event.ResponseLogEvent;
 import com.arash.ariani.util.LoggingUtils;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class LoggingTemplateTest {
 
@@ -154,4 +162,113 @@ class LoggingTemplateTest {
         assertThat(templates[0].format(requestValues)).isEqualTo("REQ[GET]/test");
         assertThat(templates[1].format(responseValues)).isEqualTo("RES[200]50ms");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void shouldRenderMissingValuesAsEmpty() {
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}}|{{method}}");
+        Map<String, Object> values = new HashMap<>();
+        values.put("method", "GET");
+
+        assertThat(template.format(values)).isEqualTo("GET |GET");
+        assertThat(template.getPlaceholders()).containsExactly("method", "uri");
+    }
+
+    @Test
+    void shouldRejectUnknownPlaceholdersAtBuildTime() {
+        assertThatThrownBy(() -> new LoggingTemplate.Builder()
+                .requestTemplate("{{method}} {{urii}}")
+                .build())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("{{urii}}");
+    }
+
+    @Test
+    void shouldFormatTypedEvents() {
+        LoggingTemplate[] templates = new LoggingTemplate.Builder()
+            .requestTemplate("{{level}} {{method}} {{uri}} {{parameters}}")
+            .responseTemplate("{{level}} {{status}} {{duration}}ms {{body}}")
+            .build();
+
+        RequestLogEvent request = new RequestLogEvent();
+        request.setLevel("INFO");
+        request.setMethod("GET");
+        request.setUri("/api/test");
+        assertThat(templates[0].format(request)).isEqualTo("INFO GET /api/test ");
+
+        ResponseLogEvent response = new ResponseLogEvent();
+        response.setLevel("ERROR");
+        response.setAnsiColor(true);
+        response.setStatus(500);
+        response.setError("boom");
+        response.setDuration(42);
+        response.setBody("{}");
+        assertThat(templates[1].format(response))
+            .isEqualTo(LoggingUtils.ANSI_RED + "ERROR" + LoggingUtils.ANSI_RESET + " 500 (Error: boom) 42ms {}");
+
+        response.reset();
+        response.setStatus(200);
+        assertThat(templates[1].format(response)).isEqualTo(" 200 ms ");
+    }
+
+    @Test
+    void shouldFormatIntoBuilderAndByteBuffer() {
+        LoggingTemplate template = new LoggingTemplate("{{method}} {{uri}} \u00e9\u20ac");
+        RequestLogEvent event = new RequestLogEvent();
+        event.setMethod("GET");
+        event.setUri("/caf\u00e9");
+
+        StringBuilder builder = new StringBuilder("> ");
+        template.formatTo(event, builder);
+        assertThat(builder.toString()).isEqualTo("> GET /caf\u00e9 \u00e9\u20ac");
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        int written = template.formatTo(event, buffer);
+        buffer.flip();
+        assertThat(written).isEqualTo(buffer.remaining());
+        assertThat(StandardCharsets.UTF_8.decode(buffer).toString()).isEqualTo("GET /caf\u00e9 \u00e9\u20ac");
+
+        ByteBuffer tooSmall = ByteBuffer.allocate(4);
+        assertThatThrownBy(() -> template.formatTo(event, tooSmall)).isInstanceOf(BufferOverflowException.class);
+        assertThat(tooSmall.position()).isZero();
+    }
+
+    @Test
+    void shouldFormatNumericSlotsIntoAppendableAndByteBuffer() throws Exception {
+        LoggingTemplate template = new LoggingTemplate("{{status}} in {{duration}}ms \u00e9");
+        ResponseLogEvent event = new ResponseLogEvent();
+        event.setStatus(503);
+        event.setError("timeout");
+        event.setDuration(1234567);
+
+        StringWriter writer = new StringWriter();
+        template.formatTo(event, writer);
+        assertThat(writer.toString()).isEqualTo("503 (Error: timeout) in 1234567ms \u00e9");
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) '>');
+        int written = template.formatTo(event, buffer);
+        buffer.flip();
+        assertThat(written).isEqualTo(buffer.remaining() - 1);
+        assertThat(StandardCharsets.UTF_8.decode(buffer).toString())
+            .isEqualTo(">503 (Error: timeout) in 1234567ms \u00e9");
+    }
+
+    @Test
+    void shouldFormatExchangeAsSingleRecord() {
+        LoggingTemplate template = new LoggingTemplate.Builder()
+            .exchangeTemplate("[{{correlationId}}] {{method}} {{uri}} {{requestBody}} -> {{status}} {{responseBody}}")
+            .buildExchange();
+
+        ExchangeLogEvent event = new ExchangeLogEvent();
+        event.setCorrelationId("abc-123");
+        event.getRequest().setMethod("POST");
+        event.getRequest().setUri("/api/test");
+        event.getRequest().setBody("{\"in\":1}");
+        event.getResponse().setStatus(201);
+        event.getResponse().setBody("{\"out\":2}");
+
+        assertThat(template.format(event)).isEqualTo("[abc-123] POST /api/test {\"in\":1} -> 201 {\"out\":2}");
+        assertThatThrownBy(() -> new LoggingTemplate.Builder().exchangeTemplate("{{body}}").buildExchange())
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
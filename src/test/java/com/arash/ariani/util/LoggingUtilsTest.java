@@ -3,6 +3,8 @@ package com.arash.ariani.util;
 import com.arash.ariani.util.LoggingUtils;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -100,4 +102,25 @@ class LoggingUtilsTest {
         assertThat(LoggingUtils.formatContent(invalidXml, "application/xml"))
             .isEqualTo(invalidXml);
     }
-} 
\ No newline at end of file
+
+    @Test
+    void shouldEncodeUtf8LikeTheJdk() {
+        String text = "ascii \u00e9 \u20ac \uD83D\uDE00";
+        byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(LoggingUtils.utf8Length(text));
+        LoggingUtils.encodeUtf8(text, buffer);
+
+        assertThat(buffer.remaining()).isZero();
+        assertThat(buffer.array()).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldReusePooledStringBuilders() {
+        StringBuilder builder = LoggingUtils.acquireStringBuilder();
+        builder.append("leftover");
+        LoggingUtils.releaseStringBuilder(builder);
+
+        assertThat(LoggingUtils.acquireStringBuilder()).isEmpty();
+    }
+}